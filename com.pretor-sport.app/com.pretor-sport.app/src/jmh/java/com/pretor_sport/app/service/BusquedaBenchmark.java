@@ -0,0 +1,137 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.PretorSportBackendApplication;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.repository.ProductoFila;
+import com.pretor_sport.app.repository.ProductoRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//latencia de la busqueda con el indice en memoria frente al texto completo de postgresql sobre 100k productos
+//sinteticos (los mismos del calculo de memoria de IndiceBusquedaService). ejecutar con
+//mvn -Pjmh test-compile exec:exec contra una base de datos de pruebas: los productos se crean en una
+//categoria propia y se borran al terminar
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusquedaBenchmark {
+
+    private static final int PRODUCTOS = 100_000;
+    private static final PageRequest PAGINA = PageRequest.of(0, 20);
+
+    //de una palabra comun a tres con prefijo y sin acentos
+    private static final List<String> TERMINOS = List.of(
+        "zapatillas", "balon futbol", "nino", "camiseta roja", "padel", "chaqueta montana imperm"
+    );
+
+    private ConfigurableApplicationContext contexto;
+    private IndiceBusquedaService indiceBusqueda;
+    private ProductoService productoService;
+    private ProductoRepository productoRepository;
+    private JdbcTemplate jdbcTemplate;
+    private String categoria;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void cargarCatalogo() throws InterruptedException {
+        contexto = new SpringApplicationBuilder(PretorSportBackendApplication.class)
+            .web(WebApplicationType.NONE)
+            //como argumentos para que application.yml no los pise: sin el sql ni los logs de depuracion
+            //dentro de la medicion
+            .run("--spring.jpa.show-sql=false", "--logging.level.root=WARN",
+                "--logging.level.com.pretor_sport.app=WARN", "--logging.level.org.springframework=WARN",
+                "--logging.level.org.hibernate.SQL=WARN", "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        indiceBusqueda = contexto.getBean(IndiceBusquedaService.class);
+        productoService = contexto.getBean(ProductoService.class);
+        productoRepository = contexto.getBean(ProductoRepository.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+
+        categoria = "Benchmark " + UUID.randomUUID().toString().substring(0, 8);
+        jdbcTemplate.update("INSERT INTO categorias (nombre, tipo, orden, activa) VALUES (?, 'EQUIPAMIENTO', 0, true)",
+            categoria);
+
+        //nombre de 3 palabras, marca, modelo y descripcion de 12 palabras de un vocabulario deportivo;
+        //el trigger rellena search_vector
+        jdbcTemplate.update(
+            "WITH v AS (SELECT ARRAY['zapatillas','camiseta','balón','raqueta','pantalón','chaqueta','mochila'," +
+            "'guantes','calcetines','gorra','sudadera','mallas','botas','pala','red','casco','gafas','bicicleta'," +
+            "'running','fútbol','pádel','tenis','montaña','natación','ciclismo','baloncesto','niño','niña','mujer'," +
+            "'hombre','roja','azul','negra','blanca','verde','ligera','impermeable','transpirable','acolchada'," +
+            "'oficial','entrenamiento','competición','invierno','verano','algodón','poliéster','carbono'," +
+            "'térmica','reflectante','ajustable'] AS palabras) " +
+            "INSERT INTO productos (nombre, descripcion, precio, stock, activo, categoria_id, marca, modelo) " +
+            "SELECT palabras[1 + g % 18] || ' ' || palabras[19 + g % 12] || ' ' || palabras[31 + (g / 7) % 20], " +
+            "(SELECT string_agg(palabras[1 + (g * 31 + i * 17) % 50], ' ') FROM generate_series(1, 12) i), " +
+            "1 + g % 500, 1 + g % 50, true, c.id, 'Marca ' || (g % 300), 'M' || (g % 1000) " +
+            "FROM generate_series(1, ?) g, v, (SELECT id FROM categorias WHERE nombre = ?) c",
+            PRODUCTOS, categoria);
+        jdbcTemplate.execute("ANALYZE productos");
+
+        while (!indiceBusqueda.isListo()) {
+            Thread.sleep(100);
+        }
+        indiceBusqueda.reconstruir();
+    }
+
+    @TearDown(Level.Trial)
+    public void borrarCatalogo() {
+        jdbcTemplate.update("DELETE FROM productos WHERE categoria_id IN (SELECT id FROM categorias WHERE nombre = ?)",
+            categoria);
+        jdbcTemplate.update("DELETE FROM categorias WHERE nombre = ?", categoria);
+        contexto.close();
+    }
+
+    //solo el ranking del indice (hasta max-results ids), sin ir a la base de datos
+    @Benchmark
+    public List<IndiceBusquedaService.Resultado> indice() {
+        return indiceBusqueda.buscar(siguienteTermino(), true);
+    }
+
+    //lo que sirve /productos/buscar con el indice listo: ranking y carga de la pagina por id
+    @Benchmark
+    public Page<ProductoResponseDTO> indiceConPagina() {
+        return productoService.buscarProductos(siguienteTermino(), PAGINA);
+    }
+
+    //la alternativa sin indice: consulta tsquery con prefijos, pagina ordenada por ts_rank_cd y conteo
+    @Benchmark
+    public Page<ProductoFila> textoCompleto() {
+        return productoRepository.buscarFilasPorTextoCompleto(consultaTexto(siguienteTermino()), PAGINA);
+    }
+
+    private String siguienteTermino() {
+        return TERMINOS.get(siguiente++ % TERMINOS.size());
+    }
+
+    //igual que ProductoService.construirConsultaTexto
+    private static String consultaTexto(String termino) {
+        return Arrays.stream(termino.split(" "))
+            .map(palabra -> palabra + ":*")
+            .collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,24 @@
+package com.pretor_sport.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+//habilita @Async sobre el executor de tareas que configura spring boot (applicationTaskExecutor)
+@Configuration
+@EnableAsync
+public class AsyncConfig implements WebMvcConfigurer {
+
+    //las respuestas en streaming (exportacion del catalogo) pueden durar minutos; sin valor el contenedor corta a los 30 s
+    @Value("${spring.mvc.async.request-timeout:1h}")
+    private Duration tiempoMaximoAsincrono;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(tiempoMaximoAsincrono.toMillis());
+    }
+}
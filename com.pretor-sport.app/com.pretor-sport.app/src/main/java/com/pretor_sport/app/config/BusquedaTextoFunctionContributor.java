@@ -0,0 +1,39 @@
+package com.pretor_sport.app.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.sqm.function.SqmFunctionRegistry;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.spi.TypeConfiguration;
+
+//registra en hibernate las funciones de busqueda de texto completo de postgresql para usarlas en JPQL
+//search_vector no esta mapeada en Producto (la mantiene un trigger), por eso se referencia sin alias
+//registrado en META-INF/services/org.hibernate.boot.model.FunctionContributor
+public class BusquedaTextoFunctionContributor implements FunctionContributor {
+
+    public static final String CONFIGURACION_TEXTO = "pretor_es";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        SqmFunctionRegistry registry = functionContributions.getFunctionRegistry();
+        TypeConfiguration typeConfiguration = functionContributions.getTypeConfiguration();
+
+        BasicType<Boolean> booleanType = typeConfiguration.getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN);
+        BasicType<Double> doubleType = typeConfiguration.getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+
+        //fts_coincide(:consulta) -> el producto coincide con la consulta to_tsquery
+        registry.registerPattern(
+            "fts_coincide",
+            "(search_vector @@ to_tsquery('" + CONFIGURACION_TEXTO + "', cast(?1 as text)))",
+            booleanType
+        );
+
+        //fts_rango(:consulta) -> relevancia del producto para la consulta, ponderada por los pesos A-D del vector
+        registry.registerPattern(
+            "fts_rango",
+            "ts_rank_cd(search_vector, to_tsquery('" + CONFIGURACION_TEXTO + "', cast(?1 as text)))",
+            doubleType
+        );
+    }
+}
@@ -0,0 +1,151 @@
+package com.pretor_sport.app.config;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.util.Collection;
+import java.util.List;
+
+import static com.pretor_sport.app.config.BusquedaTextoFunctionContributor.CONFIGURACION_TEXTO;
+
+//prepara en postgresql la busqueda de texto completo de productos: columna tsvector, triggers que
+//la mantienen al escribir productos o sus caracteristicas, indice GIN y relleno de filas existentes.
+//ddl-auto solo crea tablas y columnas mapeadas, por eso este ddl se aplica aqui de forma idempotente
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BusquedaTextoInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.search.full-text-enabled:true}")
+    private boolean habilitada;
+
+    //true cuando el esquema de texto completo esta listo; mientras tanto se usa la busqueda LIKE
+    @Getter
+    private volatile boolean disponible = false;
+
+    //variable de la transaccion con la que las escrituras en bloque desactivan los triggers (ver diferirVectores)
+    private static final String VECTOR_DIFERIDO = "pretor.vector_diferido";
+
+    //pesos: A nombre, B marca y modelo, C descripcion, D caracteristicas
+    private static final String VECTOR_FUNCTION =
+        "CREATE OR REPLACE FUNCTION productos_vector(" +
+        "p_nombre text, p_marca text, p_modelo text, p_descripcion text, p_caracteristicas text) " +
+        "RETURNS tsvector LANGUAGE sql STABLE AS $$ SELECT " +
+        "setweight(to_tsvector('" + CONFIGURACION_TEXTO + "', coalesce(p_nombre, '')), 'A') || " +
+        "setweight(to_tsvector('" + CONFIGURACION_TEXTO + "', coalesce(p_marca, '') || ' ' || coalesce(p_modelo, '')), 'B') || " +
+        "setweight(to_tsvector('" + CONFIGURACION_TEXTO + "', coalesce(p_descripcion, '')), 'C') || " +
+        "setweight(to_tsvector('" + CONFIGURACION_TEXTO + "', coalesce(p_caracteristicas, '')), 'D') $$";
+
+    private static final String CALCULAR_VECTOR_FUNCTION =
+        "CREATE OR REPLACE FUNCTION productos_calcular_search_vector(" +
+        "p_id bigint, p_nombre text, p_marca text, p_modelo text, p_descripcion text) " +
+        "RETURNS tsvector LANGUAGE sql STABLE AS $$ SELECT productos_vector(p_nombre, p_marca, p_modelo, p_descripcion, " +
+        "(SELECT string_agg(c.caracteristica, ' ') FROM producto_caracteristicas c WHERE c.producto_id = p_id)) $$";
+
+    private static final String PRODUCTOS_TRIGGER_FUNCTION =
+        "CREATE OR REPLACE FUNCTION productos_search_vector_trigger() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN " +
+        "IF current_setting('" + VECTOR_DIFERIDO + "', true) = 'on' THEN RETURN NEW; END IF; " +
+        "NEW.search_vector := productos_calcular_search_vector(NEW.id, NEW.nombre, NEW.marca, NEW.modelo, NEW.descripcion); " +
+        "RETURN NEW; END $$";
+
+    private static final String CARACTERISTICAS_TRIGGER_FUNCTION =
+        "CREATE OR REPLACE FUNCTION producto_caracteristicas_search_vector_trigger() RETURNS trigger LANGUAGE plpgsql AS $$ " +
+        "DECLARE v_producto_id bigint; BEGIN " +
+        "IF current_setting('" + VECTOR_DIFERIDO + "', true) = 'on' THEN RETURN NULL; END IF; " +
+        "IF TG_OP = 'DELETE' THEN v_producto_id := OLD.producto_id; ELSE v_producto_id := NEW.producto_id; END IF; " +
+        "UPDATE productos p SET search_vector = productos_calcular_search_vector(p.id, p.nombre, p.marca, p.modelo, p.descripcion) " +
+        "WHERE p.id = v_producto_id; " +
+        "RETURN NULL; END $$";
+
+    private static final List<String> ESQUEMA = List.of(
+        "ALTER TABLE productos ADD COLUMN IF NOT EXISTS search_vector tsvector",
+        VECTOR_FUNCTION,
+        CALCULAR_VECTOR_FUNCTION,
+        PRODUCTOS_TRIGGER_FUNCTION,
+        CARACTERISTICAS_TRIGGER_FUNCTION,
+        "DROP TRIGGER IF EXISTS trg_productos_search_vector ON productos",
+        "CREATE TRIGGER trg_productos_search_vector BEFORE INSERT OR UPDATE OF nombre, marca, modelo, descripcion " +
+        "ON productos FOR EACH ROW EXECUTE FUNCTION productos_search_vector_trigger()",
+        "DROP TRIGGER IF EXISTS trg_producto_caracteristicas_search_vector ON producto_caracteristicas",
+        "CREATE TRIGGER trg_producto_caracteristicas_search_vector AFTER INSERT OR UPDATE OR DELETE " +
+        "ON producto_caracteristicas FOR EACH ROW EXECUTE FUNCTION producto_caracteristicas_search_vector_trigger()",
+        "UPDATE productos SET search_vector = productos_calcular_search_vector(id, nombre, marca, modelo, descripcion) " +
+        "WHERE search_vector IS NULL",
+        "CREATE INDEX IF NOT EXISTS idx_producto_search_vector ON productos USING GIN (search_vector)"
+    );
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (!habilitada) {
+            log.info("Búsqueda de texto completo deshabilitada, se usará la búsqueda LIKE");
+            return;
+        }
+
+        try {
+            crearConfiguracionTexto();
+            ESQUEMA.forEach(jdbcTemplate::execute);
+            disponible = true;
+            log.info("Búsqueda de texto completo de productos inicializada ({})", CONFIGURACION_TEXTO);
+        } catch (DataAccessException e) {
+            log.error("No se pudo inicializar la búsqueda de texto completo, se usará la búsqueda LIKE: {}", e.getMessage());
+        }
+    }
+
+    //recalculo de varios productos en una sola sentencia: las caracteristicas se agregan de una vez
+    private static final String RECALCULAR_VECTORES =
+        "WITH caracteristicas AS (SELECT producto_id, string_agg(caracteristica, ' ') AS texto " +
+        "FROM producto_caracteristicas WHERE producto_id = ANY(?) GROUP BY producto_id) " +
+        "UPDATE productos p SET search_vector = productos_vector(p.nombre, p.marca, p.modelo, p.descripcion, c.texto) " +
+        "FROM productos q LEFT JOIN caracteristicas c ON c.producto_id = q.id " +
+        "WHERE q.id = p.id AND p.id = ANY(?)";
+
+    //DESACTIVA LOS TRIGGERS DE search_vector HASTA EL FINAL DE LA TRANSACCION ACTUAL
+    //con muchas filas el trigger de caracteristicas recalcula el vector una vez por fila; quien escribe en bloque
+    //lo difiere y llama a recalcularVectores al terminar, dentro de la misma transaccion
+    public void diferirVectores() {
+        if (disponible) {
+            jdbcTemplate.queryForObject("SELECT set_config('" + VECTOR_DIFERIDO + "', 'on', true)", String.class);
+        }
+    }
+
+    //RECALCULA search_vector DE LOS PRODUCTOS INDICADOS
+    public void recalcularVectores(Collection<Long> productoIds) {
+        if (!disponible || productoIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(RECALCULAR_VECTORES, sentencia -> {
+            Array ids = sentencia.getConnection().createArrayOf("bigint", productoIds.toArray());
+            sentencia.setArray(1, ids);
+            sentencia.setArray(2, ids);
+        });
+    }
+
+    //copia la configuracion 'spanish' y, si la extension unaccent esta disponible, ignora los acentos ("nino" encuentra "NIÑO")
+    private void crearConfiguracionTexto() {
+        Integer existe = jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_ts_config WHERE cfgname = ?", Integer.class, CONFIGURACION_TEXTO);
+        if (existe != null && existe > 0) {
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TEXT SEARCH CONFIGURATION " + CONFIGURACION_TEXTO + " (COPY = spanish)");
+
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS unaccent");
+            jdbcTemplate.execute("ALTER TEXT SEARCH CONFIGURATION " + CONFIGURACION_TEXTO +
+                " ALTER MAPPING FOR hword, hword_part, word WITH unaccent, spanish_stem");
+        } catch (DataAccessException e) {
+            log.warn("Extensión unaccent no disponible, la búsqueda distinguirá acentos: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.pretor_sport.app.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pretor_sport.app.service.RespuestasJsonService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+//el interceptor de cache se ejecuta antes que el de transacciones: un acierto no abre
+//transaccion y las invalidaciones de @CacheEvict ocurren despues del commit
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String PRODUCTO = "producto";
+    public static final String PRODUCTOS_LISTADO = "productosListado";
+    public static final String PRODUCTOS_DESTACADOS = "productosDestacados";
+    public static final String PRODUCTOS_CONTEO = "productosConteo";
+    public static final String PRODUCTOS_FACETAS = "productosFacetas";
+    public static final String RESPUESTAS_JSON = "respuestasJson";
+
+    @Value("${cache.products.ttl:1800}") // 30 minutos por defecto
+    private Long productosTtl;
+
+    @Value("${cache.products.max-size:10000}")
+    private Long productosMaxSize;
+
+    //los totales aproximados de los listados se recalculan como mucho cada minuto por firma de filtros
+    @Value("${cache.products.count-ttl:60}")
+    private Long conteoTtl;
+
+    //respuestas ya serializadas: se limitan por tamaño en bytes, no por cantidad
+    @Value("${cache.products.json-max-mb:64}")
+    private Long respuestasJsonMaxMb;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+            PRODUCTO, PRODUCTOS_LISTADO, PRODUCTOS_DESTACADOS, PRODUCTOS_FACETAS
+        );
+
+        //caffeine usa W-TinyLFU para decidir que entradas conservar al llegar al limite
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+            .maximumSize(productosMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(productosTtl))
+            .recordStats());
+
+        cacheManager.registerCustomCache(PRODUCTOS_CONTEO, Caffeine.newBuilder()
+            .maximumSize(productosMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(conteoTtl))
+            .recordStats()
+            .build());
+
+        cacheManager.registerCustomCache(RESPUESTAS_JSON, Caffeine.newBuilder()
+            .maximumWeight(respuestasJsonMaxMb * 1024 * 1024)
+            .<Object, Object>weigher((clave, respuesta) -> ((RespuestasJsonService.RespuestaJson) respuesta).tamano())
+            .expireAfterWrite(Duration.ofSeconds(productosTtl))
+            .recordStats()
+            .build());
+
+        //no se guardan nulos (productos inexistentes) para no ocultar altas posteriores
+        cacheManager.setAllowNullValues(false);
+
+        //las invalidaciones hechas dentro de una transaccion se aplican tras el commit
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,131 @@
+package com.pretor_sport.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.resource.ResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//copia en memoria de las imagenes mas pedidas de /images/**. las imagenes subidas se nombran por su contenido y
+//no se modifican, asi que una entrada solo deja de valer cuando ImagenAlmacenService borra el fichero. la cache
+//esta limitada en bytes (LRU aproximado de caffeine) y un acierto se sirve sin tocar el disco: ni comprobaciones
+//de ruta ni lecturas del fichero
+@Component
+@Slf4j
+public class ImagenesEnMemoriaResolver implements ResourceResolver {
+
+    private final Cache<String, ImagenEnMemoria> imagenes;
+    private final long maximoBytes;
+    private final long maximoArchivo;
+
+    public ImagenesEnMemoriaResolver(
+            @Value("${app.images.cache.max-bytes:64MB}") DataSize maximoBytes,
+            @Value("${app.images.cache.max-file-size:2MB}") DataSize maximoArchivo) {
+        this.maximoBytes = maximoBytes.toBytes();
+        this.maximoArchivo = maximoArchivo.toBytes();
+        this.imagenes = Caffeine.newBuilder()
+            .maximumWeight(this.maximoBytes)
+            .weigher((String nombre, ImagenEnMemoria imagen) -> (int) Math.min(imagen.contentLength(), Integer.MAX_VALUE))
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public Resource resolveResource(HttpServletRequest request, String requestPath,
+                                    List<? extends Resource> locations, ResourceResolverChain chain) {
+        //solo se guardan rutas que ya validó PathResourceResolver, por eso se puede consultar antes de la cadena
+        ImagenEnMemoria enMemoria = imagenes.getIfPresent(requestPath);
+        if (enMemoria != null) {
+            return enMemoria;
+        }
+
+        Resource recurso = chain.resolveResource(request, requestPath, locations);
+        if (recurso == null) {
+            return null;
+        }
+        ImagenEnMemoria cargada = imagenes.get(requestPath, nombre -> cargar(recurso));
+        return cargada != null ? cargada : recurso;
+    }
+
+    @Override
+    public String resolveUrlPath(String resourcePath, List<? extends Resource> locations, ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourcePath, locations);
+    }
+
+    //LEE EL FICHERO COMPLETO SI CABE EN LA CACHE. null deja que se sirva desde el disco
+    private ImagenEnMemoria cargar(Resource recurso) {
+        try {
+            long tamano = recurso.contentLength();
+            if (tamano > maximoArchivo || tamano > maximoBytes) {
+                return null;
+            }
+            return new ImagenEnMemoria(recurso.getContentAsByteArray(), recurso.getFilename(), recurso.lastModified());
+        } catch (IOException e) {
+            log.warn("No se pudo cargar en memoria la imagen {}: {}", recurso.getFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    //QUITA UNA IMAGEN DE LA CACHE (se ha borrado del disco)
+    public void descartar(String nombre) {
+        imagenes.invalidate(nombre);
+    }
+
+    //ETag a partir del tamaño y la fecha de modificacion, sin leer el contenido
+    public static String etag(Resource recurso) {
+        try {
+            return Long.toHexString(recurso.lastModified()) + "-" + Long.toHexString(recurso.contentLength());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = imagenes.stats();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("entradas", imagenes.estimatedSize());
+        estadisticas.put("bytes", imagenes.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        estadisticas.put("maximoBytes", maximoBytes);
+        estadisticas.put("hits", stats.hitCount());
+        estadisticas.put("misses", stats.missCount());
+        estadisticas.put("hitRate", stats.hitRate());
+        estadisticas.put("evictions", stats.evictionCount());
+        return estadisticas;
+    }
+
+    //el contenido se escribe en la respuesta de una sola vez (ByteArrayInputStream.transferTo), sin buffers
+    //intermedios; los rangos saltan directamente al desplazamiento pedido
+    static final class ImagenEnMemoria extends ByteArrayResource {
+
+        private final String nombre;
+        private final long fechaModificacion;
+
+        ImagenEnMemoria(byte[] contenido, String nombre, long fechaModificacion) {
+            super(contenido, "imagen en memoria [" + nombre + "]");
+            this.nombre = nombre;
+            this.fechaModificacion = fechaModificacion;
+        }
+
+        @Override
+        public String getFilename() {
+            return nombre;
+        }
+
+        @Override
+        public long lastModified() {
+            return fechaModificacion;
+        }
+    }
+}
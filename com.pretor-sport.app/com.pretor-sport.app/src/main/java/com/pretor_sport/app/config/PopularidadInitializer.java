@@ -0,0 +1,41 @@
+package com.pretor_sport.app.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+//pasa la popularidad de la columna lineal "popularidad" a "popularidad_log2" (ver VentaService.sumarPopularidad).
+//ddl-auto crea la columna nueva con 0, que equivale a una unidad vendida en la epoca: se le suma el valor
+//anterior (en log2, como ProductoRepository.sumarPopularidad) sin perder las ventas que hayan llegado desde el
+//arranque, y se borra la columna vieja con su indice.
+//un solo bloque DO para que sea atomico; si la columna vieja ya no existe no hace nada
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PopularidadInitializer {
+
+    private static final String MIGRAR =
+        "DO $$ BEGIN " +
+        "IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema() " +
+        "AND table_name = 'productos' AND column_name = 'popularidad') THEN " +
+        "UPDATE productos SET popularidad_log2 = greatest(popularidad_log2, ln(popularidad) / ln(2)) + " +
+        "ln(1 + power(2, -least(abs(popularidad_log2 - ln(popularidad) / ln(2)), 64))) / ln(2) " +
+        "WHERE popularidad > 0; " +
+        "ALTER TABLE productos DROP COLUMN popularidad; " +
+        "END IF; END $$";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        try {
+            jdbcTemplate.execute(MIGRAR);
+        } catch (DataAccessException e) {
+            log.error("No se pudo migrar la popularidad a log2: {}", e.getMessage());
+        }
+    }
+}
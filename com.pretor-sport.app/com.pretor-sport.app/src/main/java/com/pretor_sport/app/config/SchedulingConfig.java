@@ -0,0 +1,10 @@
+package com.pretor_sport.app.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//habilita las tareas @Scheduled (reconciliacion de copias en memoria del catalogo)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
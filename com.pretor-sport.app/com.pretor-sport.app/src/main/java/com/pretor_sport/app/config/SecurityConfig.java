@@ -1,7 +1,9 @@
 package com.pretor_sport.app.config;
 
+import com.pretor_sport.app.security.BCryptEncoderLimitado;
 import com.pretor_sport.app.security.JwtAuthenticationFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,15 +14,17 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
@@ -29,8 +33,22 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final CorsConfigurationSource corsConfigurationSource;
 
+    @Value("${app.security.password.bcrypt-strength:12}")
+    private int costeBcrypt;
+
+    //hashes de contraseña calculados a la vez; el resto espera en una cola acotada o se rechaza con 429
+    @Value("${app.security.password.threads:2}")
+    private int hilosBcrypt;
+
+    @Value("${app.security.password.queue-capacity:50}")
+    private int colaBcrypt;
+
+    @Value("${app.security.password.max-wait:5s}")
+    private Duration esperaMaximaBcrypt;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -46,10 +64,11 @@ public class SecurityConfig {
                 .requestMatchers("/auth/health").permitAll()
                 .requestMatchers("/health").permitAll()
                 .requestMatchers("/public/**").permitAll()
-                .requestMatchers("/images/**").permitAll()  // Permitir acceso público a imágenes estáticas
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                 
+                .requestMatchers(HttpMethod.GET, "/productos/export").hasAnyRole("EMPLEADO", "ADMIN")
+                .requestMatchers(HttpMethod.GET, "/productos/estadisticas").hasAnyRole("EMPLEADO", "ADMIN")
                 .requestMatchers(HttpMethod.GET, "/productos/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/categorias/**").permitAll()
                 .requestMatchers(HttpMethod.POST, "/productos/**").hasAnyRole("EMPLEADO", "ADMIN")
@@ -114,11 +133,21 @@ public class SecurityConfig {
     }
 
 
+    //las imagenes estaticas son publicas e inmutables: no pasan por la cadena de filtros de seguridad.
+    //StaticResourceConfig les aplica el CORS y la cabecera nosniff
+    @Bean
+    public WebSecurityCustomizer webSecurityCustomizer() {
+        return web -> web.ignoring().requestMatchers(HttpMethod.GET, "/images/**")
+            .requestMatchers(HttpMethod.HEAD, "/images/**");
+    }
+
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        //rehace el hash en el login si se cambia app.security.password.bcrypt-strength
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return authProvider;
     }
 
@@ -129,8 +158,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public BCryptEncoderLimitado passwordEncoder() {
+        return new BCryptEncoderLimitado(costeBcrypt, hilosBcrypt, colaBcrypt, esperaMaximaBcrypt);
     }
 
 
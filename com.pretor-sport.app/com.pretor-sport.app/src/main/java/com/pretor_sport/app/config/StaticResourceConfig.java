@@ -1,37 +1,80 @@
 package com.pretor_sport.app.config;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
 
 import java.nio.file.Paths;
+import java.time.Duration;
 
 @Configuration
+@RequiredArgsConstructor
 public class StaticResourceConfig implements WebMvcConfigurer {
 
+    private final ImagenesEnMemoriaResolver imagenesEnMemoriaResolver;
+
     @Value("${app.images.upload-dir}")
     private String uploadDir;
 
+    //cada imagen se llama como el SHA-256 de su contenido (ImagenAlmacenService): un nombre siempre corresponde a los
+    //mismos bytes, asi que el navegador puede guardarlas como immutable sin revalidar
+    @Value("${app.images.cache-max-age:365d}")
+    private Duration cacheMaxAge;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         try {
             //la ruta del directorio de subidas de forma absoluta
             String absolutePath = Paths.get(uploadDir).toAbsolutePath().toString();
-            
+
             //verificar que el directorio existe
             java.io.File uploadDirectory = new java.io.File(absolutePath);
             if (!uploadDirectory.exists()) {
                 uploadDirectory.mkdirs();
             }
-            
+
             //mapear la url publica a la carpeta fisica
             // /images/** -> file:/ruta/absoluta/a/tu/proyecto/uploads/
+            //Range, If-None-Match e If-Modified-Since los resuelve ResourceHttpRequestHandler
             registry.addResourceHandler("/images/**")
-                    .addResourceLocations("file:" + absolutePath + "/");
+                    .addResourceLocations("file:" + absolutePath + "/")
+                    .setCacheControl(CacheControl.maxAge(cacheMaxAge).cachePublic().immutable())
+                    .setEtagGenerator(ImagenesEnMemoriaResolver::etag)
+                    .resourceChain(false)
+                    .addResolver(imagenesEnMemoriaResolver)
+                    .addResolver(new PathResourceResolver());
         } catch (Exception e) {
             //loggea un error pero no interrumpe el inicio
             System.err.println("Error configuring resource handlers: " + e.getMessage());
         }
     }
+
+    ///images/** no pasa por Spring Security (ver SecurityConfig), asi que el CORS y la cabecera nosniff se
+    //aplican aqui. son imagenes publicas: cualquier origen puede leerlas, sin credenciales
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/images/**")
+                .allowedOriginPatterns("*")
+                .allowedMethods("GET", "HEAD");
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.setHeader("X-Content-Type-Options", "nosniff");
+                return true;
+            }
+        }).addPathPatterns("/images/**");
+    }
 }
@@ -5,12 +5,17 @@ import com.pretor_sport.app.dto.request.LoginRequestDTO;
 import com.pretor_sport.app.dto.request.RefreshTokenRequestDTO;
 import com.pretor_sport.app.dto.response.AuthResponseDTO;
 import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.security.HashContrasenasSaturadoException;
+import com.pretor_sport.app.security.JwtAuthenticationFilter;
 import com.pretor_sport.app.security.JwtUtil;
+import com.pretor_sport.app.security.TokenJwt;
+import com.pretor_sport.app.security.TokensRevocados;
 import com.pretor_sport.app.service.AuthService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,6 +24,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/auth")
@@ -28,6 +34,7 @@ public class AuthController {
 
     private final AuthService authService;
     private final JwtUtil jwtUtil;
+    private final TokensRevocados tokensRevocados;
 
     //iniciar sesion
     @PostMapping("/login")
@@ -35,6 +42,8 @@ public class AuthController {
         try {
             AuthResponseDTO authResponse = authService.login(loginRequest);
             return ResponseEntity.ok(authResponse);
+        } catch (HashContrasenasSaturadoException e) {
+            return demasiadasPeticiones(e);
         } catch (Exception e) {
             log.error("Error en login: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -48,6 +57,8 @@ public class AuthController {
         try {
             AuthResponseDTO authResponse = authService.register(registroRequest);
             return ResponseEntity.status(HttpStatus.CREATED).body(authResponse);
+        } catch (HashContrasenasSaturadoException e) {
+            return demasiadasPeticiones(e);
         } catch (IllegalArgumentException e) {
             log.warn("Error en registro: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -81,8 +92,8 @@ public class AuthController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> logout(HttpServletRequest request) {
         try {
-            String authHeader = request.getHeader("Authorization");
-            String token = jwtUtil.extractTokenFromHeader(authHeader);
+            //el filtro JWT ya verifico el token de la peticion autenticada
+            TokenJwt token = (TokenJwt) request.getAttribute(JwtAuthenticationFilter.ATRIBUTO_TOKEN);
             
             if (token != null) {
                 authService.logout(token);
@@ -183,13 +194,15 @@ public class AuthController {
                     .body(Map.of("valid", false, "message", "Token no proporcionado"));
             }
             
-            boolean isValid = jwtUtil.validateTokenStructure(token);
-            Map<String, Object> tokenInfo = jwtUtil.getTokenInfo(token);
+            //reutiliza el token verificado por el filtro JWT; solo se parsea aqui si el filtro no lo hizo
+            TokenJwt verificado = (TokenJwt) request.getAttribute(JwtAuthenticationFilter.ATRIBUTO_TOKEN);
+            Optional<TokenJwt> tokenJwt = verificado != null ? Optional.of(verificado) : jwtUtil.verificar(token)
+                .filter(leido -> !tokensRevocados.estaRevocado(leido.id()));
             
-            if (isValid && tokenInfo != null) {
+            if (tokenJwt.isPresent() && !tokenJwt.get().isExpirado()) {
                 return ResponseEntity.ok(Map.of(
                     "valid", true,
-                    "tokenInfo", tokenInfo
+                    "tokenInfo", jwtUtil.getTokenInfo(tokenJwt.get())
                 ));
             } else {
                 return ResponseEntity.ok(Map.of(
@@ -236,4 +249,11 @@ public class AuthController {
         
         return ResponseEntity.ok(roles);
     }
+
+    //el pool de cifrado de contraseñas esta lleno: se rechaza sin esperar y el cliente reintenta
+    private ResponseEntity<?> demasiadasPeticiones(HashContrasenasSaturadoException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, "2")
+            .body(Map.of("error", "Demasiadas peticiones", "message", e.getMessage()));
+    }
 }
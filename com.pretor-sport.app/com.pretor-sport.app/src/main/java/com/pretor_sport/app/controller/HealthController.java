@@ -1,7 +1,20 @@
 package com.pretor_sport.app.controller;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pretor_sport.app.config.ImagenesEnMemoriaResolver;
+import com.pretor_sport.app.security.BCryptEncoderLimitado;
+import com.pretor_sport.app.security.EstadoUsuarioCache;
+import com.pretor_sport.app.security.TokensRevocados;
+import com.pretor_sport.app.service.DestacadosService;
+import com.pretor_sport.app.service.ImagenAlmacenService;
+import com.pretor_sport.app.service.ImagenVariantesService;
+import com.pretor_sport.app.service.IndiceBusquedaService;
+import com.pretor_sport.app.service.ProductoEstadisticasService;
+import com.pretor_sport.app.service.UltimoAccesoService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.info.BuildProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.env.Environment;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,6 +34,17 @@ public class HealthController {
 
     private final DataSource dataSource;
     private final Environment environment;
+    private final CacheManager cacheManager;
+    private final DestacadosService destacadosService;
+    private final ImagenVariantesService imagenVariantesService;
+    private final ImagenAlmacenService imagenAlmacenService;
+    private final ImagenesEnMemoriaResolver imagenesEnMemoriaResolver;
+    private final ProductoEstadisticasService productoEstadisticasService;
+    private final IndiceBusquedaService indiceBusquedaService;
+    private final EstadoUsuarioCache estadoUsuarioCache;
+    private final TokensRevocados tokensRevocados;
+    private final UltimoAccesoService ultimoAccesoService;
+    private final BCryptEncoderLimitado passwordEncoder;
 
     //endpoint basico de salud
     @GetMapping
@@ -89,6 +113,39 @@ public class HealthController {
             system.put("javaVersion", System.getProperty("java.version"));
             health.put("system", system);
             
+            //contadores de la cache del catalogo
+            health.put("cache", cacheStats());
+            
+            //refrescos del ranking de destacados
+            health.put("destacados", destacadosService.estadisticas());
+            
+            //refrescos de la instantanea de /productos/estadisticas
+            health.put("estadisticasProductos", productoEstadisticasService.estadisticas());
+            
+            //documentos vivos y eliminados del indice de busqueda en memoria
+            health.put("indiceBusqueda", indiceBusquedaService.estadisticas());
+            
+            //cola y tiempos del procesamiento de imagenes
+            health.put("imagenes", imagenVariantesService.estadisticas());
+            
+            //deduplicacion y limpieza de ficheros de imagen
+            health.put("imagenesAlmacen", imagenAlmacenService.estadisticas());
+            
+            //imagenes servidas desde memoria
+            health.put("imagenesCache", imagenesEnMemoriaResolver.estadisticas());
+            
+            //estado de usuarios usado para autenticar con JWT
+            health.put("estadoUsuarios", estadoUsuarioCache.estadisticas());
+            
+            //revocaciones de tokens (logout) en memoria
+            health.put("tokensRevocados", tokensRevocados.estadisticas());
+            
+            //escritura diferida del ultimo acceso de los usuarios
+            health.put("ultimoAcceso", ultimoAccesoService.estadisticas());
+            
+            //pool de cifrado de contraseñas: cola, espera y tiempo por hash
+            health.put("bcrypt", passwordEncoder.estadisticas());
+            
             return ResponseEntity.ok(health);
             
         } catch (Exception e) {
@@ -98,6 +155,26 @@ public class HealthController {
         }
     }
 
+    private Map<String, Object> cacheStats() {
+        Map<String, Object> caches = new HashMap<>();
+        
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+                CacheStats stats = nativeCache.stats();
+                Map<String, Object> cacheInfo = new HashMap<>();
+                cacheInfo.put("size", nativeCache.estimatedSize());
+                cacheInfo.put("hits", stats.hitCount());
+                cacheInfo.put("misses", stats.missCount());
+                cacheInfo.put("hitRate", stats.hitRate());
+                cacheInfo.put("evictions", stats.evictionCount());
+                caches.put(cacheName, cacheInfo);
+            }
+        }
+        
+        return caches;
+    }
+
     private boolean checkDatabaseHealth() {
         try (Connection connection = dataSource.getConnection()) {
             return connection.isValid(5); //timeout de 5 segundos
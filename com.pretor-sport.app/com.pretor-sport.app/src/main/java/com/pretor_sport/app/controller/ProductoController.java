@@ -3,23 +3,39 @@ package com.pretor_sport.app.controller;
 import com.pretor_sport.app.dto.request.ProductoFilterDTO;
 import com.pretor_sport.app.dto.request.ProductoRequestDTO;
 import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.service.CatalogoRevisionService;
+import com.pretor_sport.app.service.ProductoEstadisticasService;
+import com.pretor_sport.app.service.ProductoExportacionService;
+import com.pretor_sport.app.service.ProductoImportacionService;
 import com.pretor_sport.app.service.ProductoService;
+import com.pretor_sport.app.service.RespuestasJsonService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/productos")
@@ -28,10 +44,17 @@ import java.util.Map;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final CatalogoRevisionService catalogoRevision;
+    private final RespuestasJsonService respuestasJson;
+    private final ProductoImportacionService productoImportacionService;
+    private final ProductoExportacionService productoExportacionService;
+    private final ProductoEstadisticasService productoEstadisticasService;
 
     //lista todos los productos con filtros y paginacion
+    //con el parametro cursor (vacio en la primera pagina) pagina por cursor y devuelve next_cursor en lugar del total
+    //con total=aproximado o total=ninguno devuelve la pagina sin hacer COUNT de los filtros
     @GetMapping
-    public ResponseEntity<Page<ProductoResponseDTO>> listarProductos(
+    public ResponseEntity<?> listarProductos(
             @RequestParam(required = false) String busqueda,
             @RequestParam(required = false) List<Long> categoriaIds,
             @RequestParam(required = false) String marca,
@@ -47,7 +70,10 @@ public class ProductoController {
             @RequestParam(defaultValue = "nombre") String ordenarPor,
             @RequestParam(defaultValue = "asc") String direccion,
             @RequestParam(defaultValue = "0") Integer pagina,
-            @RequestParam(defaultValue = "20") Integer tamanoPagina) {
+            @RequestParam(defaultValue = "20") Integer tamanoPagina,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "exacto") String total,
+            WebRequest request) {
         
         try {
             log.debug("Listando productos con filtros - página: {}, tamaño: {}", pagina, tamanoPagina);
@@ -70,11 +96,28 @@ public class ProductoController {
             filtros.setDireccion(direccion);
             filtros.setPagina(pagina);
             filtros.setTamanoPagina(tamanoPagina);
+            filtros.setCursor(cursor);
+            filtros.setTotal(total);
             
-            Page<ProductoResponseDTO> productos = productoService.listarProductos(filtros);
+            if (cursor != null) {
+                return conRevision(request, null, () -> productoService.listarProductosPorCursor(filtros));
+            }
             
-            return ResponseEntity.ok(productos);
+            if (!"exacto".equals(total)) {
+                if (!"aproximado".equals(total) && !"ninguno".equals(total)) {
+                    throw new IllegalArgumentException("El total debe ser: exacto, aproximado o ninguno");
+                }
+                return conRevision(request, null, () -> productoService.listarProductosSinConteo(filtros));
+            }
+            
+            //la primera pagina de cada combinacion de filtros es la mas pedida: se sirve ya serializada
+            String claveJson = pagina == 0 ? "listado|" + filtros.firma() : null;
+            return conRevision(request, claveJson, () -> productoService.listarProductos(filtros));
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros no válidos al listar productos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Parámetros no válidos", "message", e.getMessage()));
         } catch (Exception e) {
             log.error("Error al listar productos: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -82,14 +125,74 @@ public class ProductoController {
         }
     }
 
+    //conteos por faceta para los filtros actuales (mismos parametros que el listado)
+    @GetMapping("/facetas")
+    public ResponseEntity<?> obtenerFacetas(
+            @RequestParam(required = false) String busqueda,
+            @RequestParam(required = false) List<Long> categoriaIds,
+            @RequestParam(required = false) String marca,
+            @RequestParam(required = false) String precioMin,
+            @RequestParam(required = false) String precioMax,
+            @RequestParam(required = false) List<String> tallas,
+            @RequestParam(required = false) List<String> colores,
+            @RequestParam(required = false) String genero,
+            @RequestParam(required = false) List<String> materiales,
+            @RequestParam(defaultValue = "true") Boolean soloDisponibles,
+            @RequestParam(required = false) String pesoMin,
+            @RequestParam(required = false) String pesoMax,
+            WebRequest request) {
+        
+        try {
+            ProductoFilterDTO filtros = new ProductoFilterDTO();
+            filtros.setBusqueda(busqueda);
+            filtros.setCategoriaIds(categoriaIds);
+            filtros.setMarca(marca);
+            filtros.setPrecioMin(precioMin != null ? new java.math.BigDecimal(precioMin) : null);
+            filtros.setPrecioMax(precioMax != null ? new java.math.BigDecimal(precioMax) : null);
+            filtros.setTallas(tallas);
+            filtros.setColores(colores);
+            filtros.setGenero(genero);
+            filtros.setMateriales(materiales);
+            filtros.setSoloDisponibles(soloDisponibles);
+            filtros.setPesoMin(pesoMin != null ? new java.math.BigDecimal(pesoMin) : null);
+            filtros.setPesoMax(pesoMax != null ? new java.math.BigDecimal(pesoMax) : null);
+            
+            return conRevision(request, null, () -> productoService.obtenerFacetas(filtros));
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Parámetros no válidos al obtener facetas: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Parámetros no válidos", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error al obtener facetas: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Error interno", "message", e.getMessage()));
+        }
+    }
+
     //obtiene un producto por su id
+    //ETag y Last-Modified salen de las fechas de actualizacion: un If-None-Match o If-Modified-Since vigente
+    //se responde con 304 sin cargar ni serializar el producto
     @GetMapping("/{id}")
-    public ResponseEntity<?> obtenerProducto(@PathVariable Long id) {
+    public ResponseEntity<?> obtenerProducto(@PathVariable Long id, WebRequest request) {
         try {
             log.debug("Obteniendo producto con ID: {}", id);
             
-            return productoService.obtenerProductoPorId(id)
-                .map(producto -> ResponseEntity.ok(producto))
+            Optional<ProductoService.VersionProducto> version = productoService.obtenerVersionProducto(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = version.get().etag();
+            long ultimaModificacion = version.get().ultimaModificacion();
+            if (request.checkNotModified(etag, ultimaModificacion)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+            }
+            
+            return respuestasJson.obtener("producto|" + id, () -> productoService.obtenerProductoPorId(id).orElse(null))
+                .map(producto -> cuerpoJson(request, ResponseEntity.ok()
+                    .eTag(etag)
+                    .lastModified(ultimaModificacion)
+                    .cacheControl(CacheControl.noCache()), producto))
                 .orElse(ResponseEntity.notFound().build());
                 
         } catch (Exception e) {
@@ -121,6 +224,56 @@ public class ProductoController {
         }
     }
 
+    //importa productos en bloque desde CSV (primera fila con los nombres de los campos) o NDJSON (un producto por linea)
+    //el cuerpo se lee en streaming y se guarda por lotes; la respuesta detalla los errores por fila
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasAnyRole('EMPLEADO', 'ADMIN')")
+    public ResponseEntity<?> importarProductos(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream cuerpo) {
+        try {
+            ProductoImportacionService.Formato formato = "csv".equalsIgnoreCase(MediaType.parseMediaType(contentType).getSubtype())
+                ? ProductoImportacionService.Formato.CSV
+                : ProductoImportacionService.Formato.NDJSON;
+            log.info("Importando productos en formato {}", formato);
+            
+            return ResponseEntity.ok(productoImportacionService.importar(cuerpo, formato));
+            
+        } catch (IOException e) {
+            log.warn("Error de lectura al importar productos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Error de lectura", "message", "No se pudo leer el archivo de importación"));
+        } catch (Exception e) {
+            log.error("Error inesperado al importar productos: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Error interno", "message", "Error inesperado al importar productos"));
+        }
+    }
+
+    //exporta el catalogo completo (activos e inactivos) en CSV o NDJSON, ordenado por id
+    //la respuesta se escribe en streaming a medida que se leen los productos, sin paginar ni contar
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('EMPLEADO', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportarProductos(@RequestParam(defaultValue = "csv") String format) {
+        ProductoExportacionService.Formato formato;
+        try {
+            formato = ProductoExportacionService.Formato.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Formato de exportación no válido: " + format + " (csv o ndjson)");
+        }
+        log.info("Exportando catálogo de productos en formato {}", formato);
+
+        StreamingResponseBody cuerpo = salida -> productoExportacionService.exportar(salida, formato);
+        String extension = formato == ProductoExportacionService.Formato.CSV ? "csv" : "ndjson";
+        return ResponseEntity.ok()
+            .contentType(formato == ProductoExportacionService.Formato.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("productos." + extension).build().toString())
+            .body(cuerpo);
+    }
+
     //actualiza un producto existente
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('EMPLEADO', 'ADMIN')")
@@ -170,13 +323,12 @@ public class ProductoController {
 
     //obtiene productos por categoria
     @GetMapping("/categoria/{categoriaId}")
-    public ResponseEntity<?> obtenerProductosPorCategoria(@PathVariable Long categoriaId) {
+    public ResponseEntity<?> obtenerProductosPorCategoria(@PathVariable Long categoriaId, WebRequest request) {
         try {
             log.debug("Obteniendo productos para categoría ID: {}", categoriaId);
             
-            List<ProductoResponseDTO> productos = productoService.obtenerProductosPorCategoria(categoriaId);
-            
-            return ResponseEntity.ok(productos);
+            return conRevision(request, "categoria|" + categoriaId,
+                () -> productoService.obtenerProductosPorCategoria(categoriaId));
             
         } catch (Exception e) {
             log.error("Error al obtener productos por categoría {}: {}", categoriaId, e.getMessage());
@@ -188,13 +340,12 @@ public class ProductoController {
     //obtiene productos destacados
     @GetMapping("/destacados")
     public ResponseEntity<?> obtenerProductosDestacados(
-            @RequestParam(defaultValue = "8") Integer limite) {
+            @RequestParam(defaultValue = "8") Integer limite,
+            WebRequest request) {
         try {
             log.debug("Obteniendo {} productos destacados", limite);
             
-            List<ProductoResponseDTO> productos = productoService.obtenerProductosDestacados(limite);
-            
-            return ResponseEntity.ok(productos);
+            return conRevision(request, "destacados|" + limite, () -> productoService.obtenerProductosDestacados(limite));
             
         } catch (Exception e) {
             log.error("Error al obtener productos destacados: {}", e.getMessage());
@@ -231,14 +382,8 @@ public class ProductoController {
         try {
             log.debug("Obteniendo estadísticas de productos");
             
-            //inplementar estadisticas de productos aqui
-            
-            Map<String, Object> estadisticas = Map.of(
-                "totalProductos", 0, //implementar en el servicio
-                "productosActivos", 0,
-                "productosConStockBajo", 0,
-                "categoriasConProductos", 0
-            );
+            //instantanea en memoria, se recalcula en segundo plano cuando cambian los productos
+            Map<String, Object> estadisticas = productoEstadisticasService.obtener();
             
             return ResponseEntity.ok(estadisticas);
             
@@ -287,4 +432,33 @@ public class ProductoController {
             "timestamp", System.currentTimeMillis()
         ));
     }
+
+    //respuesta de un listado con la revision del catalogo como ETag; si el cliente ya tiene esa revision
+    //se responde 304 sin calcular el listado. la revision se lee antes del cuerpo para no asociarla a datos anteriores.
+    //con claveJson el cuerpo se sirve desde la cache de respuestas serializadas
+    private ResponseEntity<?> conRevision(WebRequest request, String claveJson, Supplier<?> cuerpo) {
+        String etag = catalogoRevision.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+        }
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache());
+        if (claveJson == null) {
+            return respuesta.body(cuerpo.get());
+        }
+        return respuestasJson.obtener(claveJson, cuerpo)
+            .map(json -> cuerpoJson(request, respuesta, json))
+            .orElseGet(() -> respuesta.body(null));
+    }
+
+    //escribe los bytes ya serializados (comprimidos si el cliente acepta gzip) sin pasar por Jackson
+    private ResponseEntity<?> cuerpoJson(WebRequest request, ResponseEntity.BodyBuilder respuesta,
+                                        RespuestasJsonService.RespuestaJson json) {
+        respuesta.contentType(MediaType.APPLICATION_JSON).varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (json.gzip() != null && RespuestasJsonService.aceptaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(json.gzip());
+        }
+        return respuesta.body(json.json());
+    }
 }
@@ -2,16 +2,23 @@ package com.pretor_sport.app.controller;
 
 import com.pretor_sport.app.model.Usuario;
 import com.pretor_sport.app.service.UsuarioService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.validation.Valid;
+import java.util.Map;
 
 @Controller
 public class UsuarioController {
@@ -60,4 +67,18 @@ public class UsuarioController {
         redirectAttributes.addFlashAttribute("perfilActualizado", "Tu perfil ha sido actualizado exitosamente.");
         return "redirect:/perfil";
     }
+
+    //desactiva una cuenta (solo administradores): no puede volver a iniciar sesion y sus tokens dejan de
+    //aceptarse en cuanto se confirma, sin esperar a que caduque el estado cacheado del usuario
+    @DeleteMapping("/usuarios/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> desactivarUsuario(@PathVariable Long id) {
+        try {
+            usuarioService.desactivarUsuario(id);
+            return ResponseEntity.ok(Map.of("message", "Usuario desactivado exitosamente"));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Usuario no encontrado", "message", e.getMessage()));
+        }
+    }
 }
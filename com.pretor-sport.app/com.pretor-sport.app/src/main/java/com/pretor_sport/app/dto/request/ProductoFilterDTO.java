@@ -7,14 +7,18 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductoFilterDTO {
     
+    private static final String NULO = "-"; //los valores presentes siempre llevan "longitud:" delante
+    
     @Size(max = 100, message = "El término de búsqueda no puede exceder los 100 caracteres")
-    private String busqueda; //busqueda por nombre o descripción
+    private String busqueda; //busqueda de texto completo por nombre, marca, modelo, descripción y características
     
     private List<Long> categoriaIds; //filtrar por categorías
     
@@ -49,8 +53,8 @@ public class ProductoFilterDTO {
     
     //parametros de ordenamiento y paginación
     @Pattern(
-        regexp = "^(nombre|precio|fechaCreacion|popularidad|descuento)$",
-        message = "El campo de ordenamiento debe ser: nombre, precio, fechaCreacion, popularidad o descuento"
+        regexp = "^(nombre|precio|fechaCreacion|popularidad|descuento|relevancia)$",
+        message = "El campo de ordenamiento debe ser: nombre, precio, fechaCreacion, popularidad, descuento o relevancia"
     )
     private String ordenarPor = "nombre";
     
@@ -67,6 +71,15 @@ public class ProductoFilterDTO {
     @Max(value = 100, message = "El tamaño de página no puede ser mayor a 100")
     private Integer tamanoPagina = 20;
     
+    @Pattern(
+        regexp = "^(exacto|aproximado|ninguno)$",
+        message = "El total debe ser: exacto, aproximado o ninguno"
+    )
+    private String total = "exacto"; //exacto hace COUNT en cada pagina; aproximado y ninguno devuelven un slice
+    
+    @Size(max = 500, message = "El cursor no es válido")
+    private String cursor; //paginacion por cursor: vacio para la primera pagina, luego el next_cursor recibido
+    
     //validacion personalizada para el rango de precios
     @AssertTrue(message = "El precio máximo debe ser mayor que el precio mínimo")
     public boolean isPrecioRangeValid() {
@@ -84,4 +97,75 @@ public class ProductoFilterDTO {
         }
         return true;
     }
+    
+    //firma normalizada de la consulta completa (filtros, orden y pagina), usada como clave de cache
+    public String firma() {
+        return String.join("|",
+            firmaFiltros(),
+            campo(ordenarPor),
+            campo(direccion != null ? direccion.toLowerCase() : null),
+            campo(pagina),
+            campo(tamanoPagina),
+            campo(total),
+            campo(cursor)
+        );
+    }
+    
+    //firma normalizada solo de los filtros (listas ordenadas, numeros sin ceros de sobra): misma firma, mismas filas.
+    //cada valor va precedido de su longitud y el nulo es "-", que ningun valor produce: marca=null (texto) no comparte
+    //clave con el catalogo sin filtrar ni tallas=["a,b"] con tallas=["a","b"]
+    public String firmaFiltros() {
+        return String.join("|",
+            campo(busqueda),
+            normalizarLista(categoriaIds),
+            campo(marca),
+            normalizarNumero(precioMin),
+            normalizarNumero(precioMax),
+            normalizarLista(tallas),
+            normalizarLista(colores),
+            campo(genero != null ? genero.toUpperCase() : null),
+            normalizarLista(materiales),
+            campo(soloDisponibles),
+            normalizarNumero(pesoMin),
+            normalizarNumero(pesoMax)
+        );
+    }
+    
+    //true si solo se filtra por disponibilidad (el listado general del catalogo)
+    public boolean sinFiltros() {
+        return (busqueda == null || busqueda.isEmpty())
+            && (categoriaIds == null || categoriaIds.isEmpty())
+            && (marca == null || marca.isEmpty())
+            && precioMin == null && precioMax == null
+            && (tallas == null || tallas.isEmpty())
+            && (colores == null || colores.isEmpty())
+            && genero == null
+            && (materiales == null || materiales.isEmpty())
+            && pesoMin == null && pesoMax == null;
+    }
+    
+    private static String normalizarLista(List<?> valores) {
+        if (valores == null) {
+            return NULO;
+        }
+        return valores.stream()
+            .filter(Objects::nonNull)
+            .map(String::valueOf)
+            .sorted()
+            .distinct()
+            .map(ProductoFilterDTO::campo)
+            .collect(Collectors.joining(",", "[", "]"));
+    }
+    
+    private static String normalizarNumero(BigDecimal valor) {
+        return campo(valor != null ? valor.stripTrailingZeros().toPlainString() : null);
+    }
+    
+    private static String campo(Object valor) {
+        if (valor == null) {
+            return NULO;
+        }
+        String texto = String.valueOf(valor);
+        return texto.length() + ":" + texto;
+    }
 }
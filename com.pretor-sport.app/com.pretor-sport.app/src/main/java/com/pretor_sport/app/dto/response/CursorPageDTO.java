@@ -0,0 +1,19 @@
+package com.pretor_sport.app.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//pagina de la paginacion por cursor: en lugar del total devuelve el cursor de la pagina siguiente
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+    private Integer size;
+    private String nextCursor; //null en la ultima pagina
+    private boolean hasNext;
+}
@@ -0,0 +1,50 @@
+package com.pretor_sport.app.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+//conteos por faceta para la barra lateral del catalogo; cada faceta se cuenta sin su propio filtro
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetasResponseDTO {
+
+    private List<CategoriaFacetaDTO> categorias = new ArrayList<>();
+    private List<ValorFacetaDTO> marcas = new ArrayList<>();
+    private List<ValorFacetaDTO> tallas = new ArrayList<>();
+    private List<ValorFacetaDTO> colores = new ArrayList<>();
+    private List<ValorFacetaDTO> materiales = new ArrayList<>();
+    private List<ValorFacetaDTO> generos = new ArrayList<>();
+    private List<RangoPrecioFacetaDTO> precios = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ValorFacetaDTO {
+        private String valor;
+        private Long cantidad;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoriaFacetaDTO {
+        private Long id;
+        private String nombre;
+        private Long cantidad;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RangoPrecioFacetaDTO {
+        private BigDecimal desde; //incluido; null en el primer rango
+        private BigDecimal hasta; //excluido; null en el ultimo rango
+        private Long cantidad;
+    }
+}
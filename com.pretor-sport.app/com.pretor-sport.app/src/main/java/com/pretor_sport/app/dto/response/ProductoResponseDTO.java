@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -18,6 +19,8 @@ public class ProductoResponseDTO {
     private BigDecimal precio;
     private Integer stock;
     private String imagenUrl;
+    //solo las variantes ya generadas: tamaño -> formato -> URL
+    private Map<String, Map<String, String>> imagenVariantes;
     private CategoriaSimpleDTO categoria;
     private ProveedorSimpleDTO proveedor;
     
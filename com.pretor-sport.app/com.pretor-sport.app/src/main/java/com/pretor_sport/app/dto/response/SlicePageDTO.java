@@ -0,0 +1,21 @@
+package com.pretor_sport.app.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//pagina sin COUNT: indica si hay pagina siguiente y, si se pidio, un total aproximado
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlicePageDTO<T> {
+
+    private List<T> content;
+    private Integer number;
+    private Integer size;
+    private boolean hasNext;
+    private Long totalElements; //null con total=ninguno
+    private String tipoTotal; //exacto, aproximado (estimacion del planificador), cacheado (conteo reciente) o ninguno
+}
@@ -0,0 +1,20 @@
+package com.pretor_sport.app.event;
+
+import java.util.Set;
+
+//evento publicado cuando cambian uno o varios productos; los listeners con
+//@TransactionalEventListener lo reciben despues del commit
+public record ProductoCambiadoEvent(Set<Long> productoIds, Tipo tipo) {
+
+    public enum Tipo {
+        CREADO,
+        ACTUALIZADO,
+        ELIMINADO,
+        IMAGEN,
+        STOCK
+    }
+
+    public static ProductoCambiadoEvent de(Long productoId, Tipo tipo) {
+        return new ProductoCambiadoEvent(Set.of(productoId), tipo);
+    }
+}
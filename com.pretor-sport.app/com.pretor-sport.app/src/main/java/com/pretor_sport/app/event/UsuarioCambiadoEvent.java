@@ -0,0 +1,12 @@
+package com.pretor_sport.app.event;
+
+//evento publicado cuando cambian los datos o el estado de un usuario; EstadoUsuarioCache lo recibe
+//despues del commit para descartar el estado que tenga guardado
+public record UsuarioCambiadoEvent(Long usuarioId, Tipo tipo) {
+
+    public enum Tipo {
+        ACTUALIZADO,
+        EMAIL_VERIFICADO,
+        DESACTIVADO
+    }
+}
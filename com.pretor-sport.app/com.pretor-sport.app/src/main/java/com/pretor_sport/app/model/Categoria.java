@@ -1,5 +1,6 @@
 package com.pretor_sport.app.model;
 
+import com.pretor_sport.app.service.ReferenciasCatalogoListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -21,7 +22,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, ReferenciasCatalogoListener.class})
 public class Categoria {
 
     @Id
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -18,7 +19,14 @@ import java.util.List;
     @Index(name = "idx_producto_categoria", columnList = "categoria_id"),
     @Index(name = "idx_producto_precio", columnList = "precio"),
     @Index(name = "idx_producto_marca", columnList = "marca"),
-    @Index(name = "idx_producto_genero", columnList = "genero")
+    @Index(name = "idx_producto_genero", columnList = "genero"),
+    @Index(name = "idx_producto_talla_color", columnList = "talla, color"),
+    @Index(name = "idx_producto_popularidad_log2", columnList = "popularidad_log2")
+})
+//grafo de los listados: categoria y proveedor en la misma consulta (convertirADTO los lee siempre)
+@NamedEntityGraph(name = Producto.GRAFO_LISTADO, attributeNodes = {
+    @NamedAttributeNode("categoria"),
+    @NamedAttributeNode("proveedor")
 })
 @Data
 @NoArgsConstructor
@@ -26,6 +34,8 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class Producto {
 
+    public static final String GRAFO_LISTADO = "Producto.listado";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -49,6 +59,10 @@ public class Producto {
     @Column(name = "imagen_url", length = 255)
     private String imagenUrl;
 
+    //variantes ya generadas de la imagen ("thumbnail.webp,thumbnail.jpg,..."), ver ImagenVariantesService
+    @Column(name = "imagen_variantes", length = 255)
+    private String imagenVariantes;
+
     //campos específicos para artículos deportivos
     @Column(length = 50)
     private String marca;
@@ -74,13 +88,21 @@ public class Producto {
 
     @ElementCollection
     @CollectionTable(name = "producto_caracteristicas", 
-                    joinColumns = @JoinColumn(name = "producto_id"))
+                    joinColumns = @JoinColumn(name = "producto_id"),
+                    indexes = @Index(name = "idx_producto_caracteristicas_producto", columnList = "producto_id"))
     @Column(name = "caracteristica")
+    @BatchSize(size = 100) //al recorrer una pagina se cargan las caracteristicas de hasta 100 productos por consulta
     private List<String> caracteristicas;
 
     @Column(name = "activo", nullable = false)
     private Boolean activo = true;
 
+    //ventas con decaimiento exponencial, guardadas a escala creciente y en log2 (ver VentaService.sumarPopularidad)
+    //para que ordenar por la columna equivalga a ordenar por ventas recientes sin recalcularla. solo la modifica
+    //VentaService con un UPDATE atomico, por eso la entidad nunca la escribe
+    @Column(name = "popularidad_log2", updatable = false, columnDefinition = "double precision not null default 0")
+    private double popularidad;
+
     @CreatedDate
     @Column(name = "fecha_creacion", updatable = false)
     private LocalDateTime fechaCreacion;
@@ -1,5 +1,6 @@
 package com.pretor_sport.app.model;
 
+import com.pretor_sport.app.service.ReferenciasCatalogoListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,6 +11,7 @@ import lombok.AllArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(ReferenciasCatalogoListener.class)
 public class Proveedor {
 
     @Id
@@ -0,0 +1,33 @@
+package com.pretor_sport.app.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+//token JWT revocado (logout) identificado por su jti. solo hace falta guardarlo hasta que caduca: a partir de
+//ahi la verificacion de la firma ya lo rechaza y la fila se borra
+@Entity
+@Table(name = "tokens_revocados", indexes = {
+    @Index(name = "idx_token_revocado_expiracion", columnList = "expiracion"),
+    @Index(name = "idx_token_revocado_fecha", columnList = "fecha_revocacion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocado {
+
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    @Column(name = "usuario_id")
+    private Long usuarioId;
+
+    @Column(nullable = false)
+    private LocalDateTime expiracion;
+
+    @Column(name = "fecha_revocacion", nullable = false)
+    private LocalDateTime fechaRevocacion;
+}
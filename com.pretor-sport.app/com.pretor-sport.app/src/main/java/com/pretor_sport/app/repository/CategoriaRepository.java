@@ -2,9 +2,16 @@ package com.pretor_sport.app.repository;
 
 import com.pretor_sport.app.model.Categoria;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
+
+    //id y nombre de todos, para resolver referencias en la importacion de productos
+    @Query("SELECT c.id, c.nombre FROM Categoria c")
+    List<Object[]> findIdsYNombres();
 }
 
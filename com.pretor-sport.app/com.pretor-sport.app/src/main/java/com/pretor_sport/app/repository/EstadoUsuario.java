@@ -0,0 +1,19 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.model.Usuario;
+
+//proyeccion minima de un usuario para autenticar peticiones con JWT: identidad, rol y si puede entrar.
+//se construye directamente desde la consulta, sin cargar la entidad
+public record EstadoUsuario(
+    Long id,
+    String email,
+    Usuario.Rol rol,
+    boolean activo,
+    boolean emailVerificado
+) {
+
+    //mismas condiciones que UserDetailsServiceImpl: activo (no bloqueado) y con el email verificado (habilitado)
+    public boolean puedeAutenticarse() {
+        return activo && emailVerificado;
+    }
+}
@@ -0,0 +1,66 @@
+package com.pretor_sport.app.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+//agregados del inventario en una sola consulta: GROUPING SETS devuelve en el mismo recorrido de productos una fila
+//por categoria y la fila del total (la de categoria_id agrupado). productos cuenta todas las filas; el stock y el
+//valor del inventario solo los productos activos (los eliminados se desactivan, no se borran)
+@Repository
+@RequiredArgsConstructor
+public class ProductoEstadisticasRepository {
+
+    private static final String AGREGADOS =
+        "SELECT GROUPING(p.categoria_id) = 1 AS total, p.categoria_id, MAX(c.nombre) AS categoria, " +
+        "COUNT(*) AS productos, " +
+        "COUNT(*) FILTER (WHERE p.activo) AS activos, " +
+        "COUNT(*) FILTER (WHERE p.activo AND p.stock = 0) AS sin_stock, " +
+        "COUNT(*) FILTER (WHERE p.activo AND p.stock > 0 AND p.stock <= :umbralBajo) AS stock_bajo, " +
+        "COUNT(*) FILTER (WHERE p.activo AND p.stock > :umbralBajo AND p.stock <= :umbralMedio) AS stock_medio, " +
+        "COUNT(*) FILTER (WHERE p.activo AND p.stock > :umbralMedio) AS stock_alto, " +
+        "COALESCE(SUM(p.precio * p.stock) FILTER (WHERE p.activo), 0) AS valor_inventario " +
+        "FROM productos p " +
+        "LEFT JOIN categorias c ON c.id = p.categoria_id " +
+        "GROUP BY GROUPING SETS ((p.categoria_id), ())";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    //categoriaId y categoria son null en la fila del total
+    public record Agregado(
+        boolean total,
+        Long categoriaId,
+        String categoria,
+        long productos,
+        long activos,
+        long sinStock,
+        long stockBajo,
+        long stockMedio,
+        long stockAlto,
+        BigDecimal valorInventario
+    ) {
+    }
+
+    //stock bajo: 1..umbralBajo, medio: umbralBajo+1..umbralMedio, alto: por encima de umbralMedio
+    public List<Agregado> agregar(int umbralBajo, int umbralMedio) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+            .addValue("umbralBajo", umbralBajo)
+            .addValue("umbralMedio", umbralMedio);
+        return jdbcTemplate.query(AGREGADOS, parametros, (resultado, fila) -> new Agregado(
+            resultado.getBoolean("total"),
+            resultado.getObject("categoria_id", Long.class),
+            resultado.getString("categoria"),
+            resultado.getLong("productos"),
+            resultado.getLong("activos"),
+            resultado.getLong("sin_stock"),
+            resultado.getLong("stock_bajo"),
+            resultado.getLong("stock_medio"),
+            resultado.getLong("stock_alto"),
+            resultado.getBigDecimal("valor_inventario")
+        ));
+    }
+}
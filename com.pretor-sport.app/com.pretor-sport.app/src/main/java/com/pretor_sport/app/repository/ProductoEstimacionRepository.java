@@ -0,0 +1,28 @@
+package com.pretor_sport.app.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//estimaciones de conteo a partir de las estadisticas del planificador de postgresql (sin recorrer la tabla)
+@Repository
+@RequiredArgsConstructor
+public class ProductoEstimacionRepository {
+
+    private static final Pattern FILAS = Pattern.compile("rows=(\\d+)");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //filas estimadas del catalogo sin filtros; la precision depende del ultimo ANALYZE de productos
+    public long estimarProductos(boolean soloDisponibles) {
+        String consulta = "EXPLAIN SELECT 1 FROM productos" + (soloDisponibles ? " WHERE activo AND stock > 0" : "");
+        List<String> plan = jdbcTemplate.queryForList(consulta, String.class);
+
+        Matcher filas = FILAS.matcher(plan.isEmpty() ? "" : plan.get(0));
+        return filas.find() ? Long.parseLong(filas.group(1)) : 0L;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pretor_sport.app.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+//lectura del catalogo completo para la exportacion con un cursor de solo avance. el driver trae las filas de
+//tamanoFetch en tamanoFetch (en postgresql solo dentro de una transaccion) y cada una se entrega al consumidor
+//sin crear entidades, asi la memoria usada no depende del tamaño del catalogo. array_agg conserva los nulos:
+//una caracteristica nula cortaria la exportacion ya empezada, asi que se descartan en la consulta
+@Repository
+@RequiredArgsConstructor
+public class ProductoExportacionRepository {
+
+    private static final String PRODUCTOS =
+        "SELECT p.id, p.nombre, p.descripcion, p.precio, p.stock, p.imagen_url, p.marca, p.modelo, p.talla, p.color, " +
+        "p.genero, p.material, p.peso, p.activo, p.categoria_id, c.nombre AS categoria, p.proveedor_id, " +
+        "pr.nombre AS proveedor, " +
+        "(SELECT array_agg(pc.caracteristica) FILTER (WHERE pc.caracteristica IS NOT NULL) " +
+        "FROM producto_caracteristicas pc WHERE pc.producto_id = p.id) AS caracteristicas, " +
+        "p.fecha_creacion, p.fecha_actualizacion " +
+        "FROM productos p " +
+        "LEFT JOIN categorias c ON c.id = p.categoria_id " +
+        "LEFT JOIN proveedores pr ON pr.id = p.proveedor_id " +
+        "ORDER BY p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //los nombres de los campos coinciden con los de la importacion (en snake_case al serializar)
+    public record Fila(
+        Long id,
+        String nombre,
+        String descripcion,
+        BigDecimal precio,
+        Integer stock,
+        String imagenUrl,
+        String marca,
+        String modelo,
+        String talla,
+        String color,
+        String genero,
+        String material,
+        BigDecimal peso,
+        Boolean activo,
+        Long categoriaId,
+        String categoria,
+        Long proveedorId,
+        String proveedor,
+        List<String> caracteristicas,
+        LocalDateTime fechaCreacion,
+        LocalDateTime fechaActualizacion
+    ) {
+    }
+
+    //RECORRE TODOS LOS PRODUCTOS POR ORDEN DE ID
+    public void recorrer(int tamanoFetch, Consumer<Fila> consumidor) {
+        jdbcTemplate.query(conexion -> {
+            PreparedStatement sentencia = conexion.prepareStatement(PRODUCTOS,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            sentencia.setFetchSize(tamanoFetch);
+            return sentencia;
+        }, (RowCallbackHandler) resultado -> consumidor.accept(fila(resultado)));
+    }
+
+    private static Fila fila(ResultSet resultado) throws SQLException {
+        return new Fila(
+            resultado.getLong("id"),
+            resultado.getString("nombre"),
+            resultado.getString("descripcion"),
+            resultado.getBigDecimal("precio"),
+            resultado.getObject("stock", Integer.class),
+            resultado.getString("imagen_url"),
+            resultado.getString("marca"),
+            resultado.getString("modelo"),
+            resultado.getString("talla"),
+            resultado.getString("color"),
+            resultado.getString("genero"),
+            resultado.getString("material"),
+            resultado.getBigDecimal("peso"),
+            resultado.getObject("activo", Boolean.class),
+            resultado.getObject("categoria_id", Long.class),
+            resultado.getString("categoria"),
+            resultado.getObject("proveedor_id", Long.class),
+            resultado.getString("proveedor"),
+            caracteristicas(resultado.getArray("caracteristicas")),
+            fecha(resultado.getTimestamp("fecha_creacion")),
+            fecha(resultado.getTimestamp("fecha_actualizacion"))
+        );
+    }
+
+    private static List<String> caracteristicas(Array array) throws SQLException {
+        if (array == null) {
+            return null;
+        }
+        try {
+            return List.of((String[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+
+    private static LocalDateTime fecha(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,171 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.pretor_sport.app.config.BusquedaTextoFunctionContributor.CONFIGURACION_TEXTO;
+
+//conteos de la navegacion por facetas en una sola consulta (GROUPING SETS, un recorrido de productos).
+//cada faceta se cuenta con los demas filtros pero sin el suyo, para que el cliente pueda ampliar la seleccion;
+//la busqueda, la disponibilidad y el peso se aplican a todas
+@Repository
+@RequiredArgsConstructor
+public class ProductoFacetasRepository {
+
+    //faceta -> columna agrupada (de la subconsulta f)
+    private static final Map<String, String> FACETAS = new LinkedHashMap<>();
+
+    static {
+        FACETAS.put("categoria", "f.categoria_id");
+        FACETAS.put("marca", "f.marca");
+        FACETAS.put("talla", "f.talla");
+        FACETAS.put("color", "f.color");
+        FACETAS.put("material", "f.material");
+        FACETAS.put("genero", "f.genero");
+        FACETAS.put("precio", "f.rango_precio");
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record Conteo(String faceta, String valor, long cantidad) {
+    }
+
+    //busquedaLike, consultaTexto e idsBusqueda son excluyentes, como en ProductoSpecifications.conFiltros.
+    //limitesPrecio ordenados: el rango i va de limitesPrecio[i-1] (incluido) a limitesPrecio[i] (excluido)
+    public List<Conteo> contarFacetas(ProductoFilterDTO filtros,
+                                      String genero,
+                                      String busquedaLike,
+                                      String consultaTexto,
+                                      Collection<Long> idsBusqueda,
+                                      List<BigDecimal> limitesPrecio) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource();
+
+        //filtros comunes a todas las facetas
+        List<String> comunes = new ArrayList<>();
+        if (busquedaLike != null) {
+            comunes.add("(p.nombre LIKE :busqueda OR p.descripcion LIKE :busqueda)");
+            parametros.addValue("busqueda", busquedaLike);
+        }
+        if (consultaTexto != null) {
+            comunes.add("p.search_vector @@ to_tsquery('" + CONFIGURACION_TEXTO + "', :consultaTexto)");
+            parametros.addValue("consultaTexto", consultaTexto);
+        }
+        if (idsBusqueda != null) {
+            comunes.add("p.id IN (:idsBusqueda)");
+            parametros.addValue("idsBusqueda", idsBusqueda);
+        }
+        if (!Boolean.FALSE.equals(filtros.getSoloDisponibles())) {
+            comunes.add("p.activo AND p.stock > 0");
+        }
+        if (filtros.getPesoMin() != null) {
+            comunes.add("p.peso >= :pesoMin");
+            parametros.addValue("pesoMin", filtros.getPesoMin());
+        }
+        if (filtros.getPesoMax() != null) {
+            comunes.add("p.peso <= :pesoMax");
+            parametros.addValue("pesoMax", filtros.getPesoMax());
+        }
+
+        //filtro propio de cada faceta
+        Map<String, String> propios = new LinkedHashMap<>();
+        if (noVacia(filtros.getCategoriaIds())) {
+            propios.put("categoria", "f.categoria_id IN (:categoriaIds)");
+            parametros.addValue("categoriaIds", filtros.getCategoriaIds());
+        }
+        if (filtros.getMarca() != null && !filtros.getMarca().isEmpty()) {
+            propios.put("marca", "f.marca = :marca");
+            parametros.addValue("marca", filtros.getMarca());
+        }
+        if (noVacia(filtros.getTallas())) {
+            propios.put("talla", "f.talla IN (:tallas)");
+            parametros.addValue("tallas", filtros.getTallas());
+        }
+        if (noVacia(filtros.getColores())) {
+            propios.put("color", "f.color IN (:colores)");
+            parametros.addValue("colores", filtros.getColores());
+        }
+        if (noVacia(filtros.getMateriales())) {
+            propios.put("material", "f.material IN (:materiales)");
+            parametros.addValue("materiales", filtros.getMateriales());
+        }
+        if (genero != null) {
+            propios.put("genero", "f.genero = :genero");
+            parametros.addValue("genero", genero);
+        }
+        List<String> precio = new ArrayList<>();
+        if (filtros.getPrecioMin() != null) {
+            precio.add("f.precio >= :precioMin");
+            parametros.addValue("precioMin", filtros.getPrecioMin());
+        }
+        if (filtros.getPrecioMax() != null) {
+            precio.add("f.precio <= :precioMax");
+            parametros.addValue("precioMax", filtros.getPrecioMax());
+        }
+        if (!precio.isEmpty()) {
+            propios.put("precio", String.join(" AND ", precio));
+        }
+
+        StringBuilder rangoPrecio = new StringBuilder("CASE");
+        for (int i = 0; i < limitesPrecio.size(); i++) {
+            rangoPrecio.append(" WHEN p.precio < :limitePrecio").append(i).append(" THEN ").append(i);
+            parametros.addValue("limitePrecio" + i, limitesPrecio.get(i));
+        }
+        rangoPrecio.append(" ELSE ").append(limitesPrecio.size()).append(" END");
+
+        List<String> columnas = new ArrayList<>(FACETAS.values());
+        List<String> select = new ArrayList<>();
+        List<String> conjuntos = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<String, String> faceta : FACETAS.entrySet()) {
+            select.add(faceta.getValue() + " AS valor" + i);
+            List<String> otros = propios.entrySet().stream()
+                .filter(propio -> !propio.getKey().equals(faceta.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+            select.add(otros.isEmpty()
+                ? "count(*) AS cantidad" + i
+                : "count(*) FILTER (WHERE " + String.join(" AND ", otros) + ") AS cantidad" + i);
+            conjuntos.add("(" + faceta.getValue() + ")");
+            i++;
+        }
+        select.add("GROUPING(" + String.join(", ", columnas) + ") AS conjunto");
+
+        String sql = "SELECT " + String.join(", ", select) +
+            " FROM (SELECT p.categoria_id, p.marca, p.talla, p.color, p.material, p.genero, p.precio, " +
+            rangoPrecio + " AS rango_precio FROM productos p" +
+            (comunes.isEmpty() ? "" : " WHERE " + String.join(" AND ", comunes)) + ") f" +
+            " GROUP BY GROUPING SETS (" + String.join(", ", conjuntos) + ")";
+
+        List<String> nombres = new ArrayList<>(FACETAS.keySet());
+        List<Conteo> conteos = new ArrayList<>();
+        jdbcTemplate.query(sql, parametros, fila -> {
+            //GROUPING devuelve un bit por columna (la primera es el bit mas alto); 0 = columna agrupada en esta fila
+            int conjunto = fila.getInt("conjunto");
+            for (int faceta = 0; faceta < nombres.size(); faceta++) {
+                if ((conjunto >> (nombres.size() - 1 - faceta) & 1) == 0) {
+                    Object valor = fila.getObject("valor" + faceta);
+                    long cantidad = fila.getLong("cantidad" + faceta);
+                    if (valor != null && cantidad > 0) {
+                        conteos.add(new Conteo(nombres.get(faceta), valor.toString(), cantidad));
+                    }
+                    break;
+                }
+            }
+        });
+        return conteos;
+    }
+
+    private static boolean noVacia(Collection<?> lista) {
+        return lista != null && !lista.isEmpty();
+    }
+}
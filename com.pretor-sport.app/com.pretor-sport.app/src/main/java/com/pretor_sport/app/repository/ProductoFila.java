@@ -0,0 +1,41 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+
+import java.math.BigDecimal;
+
+//proyeccion de solo lectura de un producto con su categoria y proveedor para los listados del catalogo.
+//se construye directamente desde la consulta: sin entidades gestionadas, snapshots ni proxies.
+//las caracteristicas se cargan aparte con ProductoRepository.findCaracteristicasByProductoIds
+public record ProductoFila(
+    Long id,
+    String nombre,
+    String descripcion,
+    BigDecimal precio,
+    int stock,
+    String imagenUrl,
+    String imagenVariantes,
+    String marca,
+    String modelo,
+    String talla,
+    String color,
+    Producto.Genero genero,
+    String material,
+    BigDecimal peso,
+    Boolean activo,
+    Long categoriaId,
+    String categoriaNombre,
+    Categoria.TipoCategoria categoriaTipo,
+    String categoriaIconoUrl,
+    Long proveedorId,
+    String proveedorNombre,
+    String proveedorEmail
+) {
+
+    //select y joins comunes de las consultas JPQL que devuelven ProductoFila (alias p, c y pr)
+    public static final String CONSULTA = "SELECT new com.pretor_sport.app.repository.ProductoFila(" +
+        "p.id, p.nombre, p.descripcion, p.precio, p.stock, p.imagenUrl, p.imagenVariantes, p.marca, p.modelo, p.talla, p.color, " +
+        "p.genero, p.material, p.peso, p.activo, c.id, c.nombre, c.tipo, c.iconoUrl, pr.id, pr.nombre, pr.email) " +
+        "FROM Producto p JOIN p.categoria c LEFT JOIN p.proveedor pr ";
+}
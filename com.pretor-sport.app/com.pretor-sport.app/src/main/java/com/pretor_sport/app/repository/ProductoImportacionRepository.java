@@ -0,0 +1,79 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.dto.request.ProductoRequestDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//insercion de productos en bloque con lotes JDBC reales. con ids IDENTITY hibernate inserta fila a fila para
+//conocer cada id; aqui los ids se reservan antes en una sola consulta a la secuencia de la columna y el lote
+//se envia completo. los tipos SQL se indican para que el driver no consulte los metadatos de cada parametro nulo
+@Repository
+@RequiredArgsConstructor
+public class ProductoImportacionRepository {
+
+    private static final String RESERVAR_IDS =
+        "SELECT nextval(pg_get_serial_sequence('productos', 'id')) FROM generate_series(1, ?)";
+
+    private static final String INSERTAR_PRODUCTO =
+        "INSERT INTO productos (id, nombre, descripcion, precio, stock, imagen_url, marca, modelo, talla, color, " +
+        "genero, material, peso, activo, categoria_id, proveedor_id, fecha_creacion, fecha_actualizacion) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true, ?, ?, ?, ?)";
+
+    private static final int[] TIPOS_PRODUCTO = {
+        Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.INTEGER, Types.VARCHAR, Types.VARCHAR,
+        Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.BIGINT,
+        Types.BIGINT, Types.TIMESTAMP, Types.TIMESTAMP
+    };
+
+    private static final String INSERTAR_CARACTERISTICA =
+        "INSERT INTO producto_caracteristicas (producto_id, caracteristica) VALUES (?, ?)";
+
+    private static final int[] TIPOS_CARACTERISTICA = {Types.BIGINT, Types.VARCHAR};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //inserta los productos (ya validados) y devuelve sus ids en el mismo orden
+    public List<Long> insertar(List<ProductoRequestDTO> productos) {
+        if (productos.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = jdbcTemplate.queryForList(RESERVAR_IDS, Long.class, productos.size());
+        Timestamp fecha = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> filas = new ArrayList<>(productos.size());
+        List<Object[]> caracteristicas = new ArrayList<>();
+        for (int i = 0; i < productos.size(); i++) {
+            ProductoRequestDTO producto = productos.get(i);
+            Long id = ids.get(i);
+            filas.add(new Object[]{
+                id, producto.getNombre(), producto.getDescripcion(), producto.getPrecio(), producto.getStock(),
+                producto.getImagenUrl(), producto.getMarca(), producto.getModelo(), producto.getTalla(),
+                producto.getColor(), producto.getGenero(), producto.getMaterial(), producto.getPeso(),
+                producto.getCategoriaId(), producto.getProveedorId(), fecha, fecha
+            });
+
+            //como en el alta con JPA, los elementos nulos no se guardan; tampoco los vacios (igual que en el CSV)
+            if (producto.getCaracteristicas() != null) {
+                for (String caracteristica : producto.getCaracteristicas()) {
+                    if (caracteristica != null && !caracteristica.isBlank()) {
+                        caracteristicas.add(new Object[]{id, caracteristica});
+                    }
+                }
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERTAR_PRODUCTO, filas, TIPOS_PRODUCTO);
+        if (!caracteristicas.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERTAR_CARACTERISTICA, caracteristicas, TIPOS_CARACTERISTICA);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,113 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Proveedor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+//listados filtrados con ProductoSpecifications proyectados a ProductoFila (select new con criteria),
+//para no materializar entidades Producto solo para copiarlas a un DTO
+@Repository
+@RequiredArgsConstructor
+public class ProductoListadoRepository {
+
+    private final EntityManager entityManager;
+
+    //pagina de filas; el conteo es una consulta aparte y se omite si la pagina ya indica el total
+    public Page<ProductoFila> buscar(Specification<Producto> especificacion, Pageable pageable) {
+        TypedQuery<ProductoFila> consulta = consulta(especificacion, pageable);
+        if (pageable.isPaged()) {
+            consulta.setFirstResult((int) pageable.getOffset());
+            consulta.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(consulta.getResultList(), pageable, () -> contar(especificacion));
+    }
+
+    //todas las filas que cumplen la especificacion, en el orden que fije ella misma
+    public List<ProductoFila> buscar(Specification<Producto> especificacion) {
+        return consulta(especificacion, Pageable.unpaged()).getResultList();
+    }
+
+    //ids de las filas que cumplen la especificacion, sin leer el resto de columnas
+    public List<Long> buscarIds(Specification<Producto> especificacion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Producto> p = query.from(Producto.class);
+        query.select(p.get("id"));
+        Predicate predicado = especificacion.toPredicate(p, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    //id y relevancia de texto completo de las primeras filas, en el orden que fije la especificacion
+    public List<IdRango> buscarRangos(Specification<Producto> especificacion, String consultaTexto, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<IdRango> query = cb.createQuery(IdRango.class);
+        Root<Producto> p = query.from(Producto.class);
+        query.select(cb.construct(IdRango.class,
+            p.get("id"), cb.function("fts_rango", Double.class, cb.literal(consultaTexto))));
+        Predicate predicado = especificacion.toPredicate(p, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+
+    public record IdRango(Long id, Double rango) {
+    }
+
+    private TypedQuery<ProductoFila> consulta(Specification<Producto> especificacion, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductoFila> query = cb.createQuery(ProductoFila.class);
+        Root<Producto> p = query.from(Producto.class);
+        Join<Producto, Categoria> c = p.join("categoria");
+        Join<Producto, Proveedor> pr = p.join("proveedor", JoinType.LEFT);
+
+        query.select(cb.construct(ProductoFila.class,
+            p.get("id"), p.get("nombre"), p.get("descripcion"), p.get("precio"), p.get("stock"), p.get("imagenUrl"),
+            p.get("imagenVariantes"), p.get("marca"), p.get("modelo"), p.get("talla"), p.get("color"), p.get("genero"), p.get("material"),
+            p.get("peso"), p.get("activo"), c.get("id"), c.get("nombre"), c.get("tipo"), c.get("iconoUrl"),
+            pr.get("id"), pr.get("nombre"), pr.get("email")
+        ));
+
+        //la especificacion puede fijar su propio orden (relevancia); el Sort del pageable tiene prioridad
+        Predicate predicado = especificacion.toPredicate(p, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), p, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private long contar(Specification<Producto> especificacion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Producto> p = query.from(Producto.class);
+        query.select(cb.count(p));
+        Predicate predicado = especificacion.toPredicate(p, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
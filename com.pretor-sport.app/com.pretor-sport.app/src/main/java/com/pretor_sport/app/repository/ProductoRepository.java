@@ -3,61 +3,124 @@ package com.pretor_sport.app.repository;
 import com.pretor_sport.app.model.Producto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+//los filtros combinados del catalogo se construyen con ProductoSpecifications.
+//las consultas de listados cargan categoria y proveedor con el grafo Producto.listado (el conteo de la pagina
+//sigue siendo una consulta aparte sin joins) y las caracteristicas por lotes (@BatchSize en Producto)
+public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto> {
+    
+    @Override
+    @EntityGraph(Producto.GRAFO_LISTADO)
+    Page<Producto> findAll(Specification<Producto> spec, Pageable pageable);
+    
+    @Override
+    @EntityGraph(Producto.GRAFO_LISTADO)
+    List<Producto> findAll(Specification<Producto> spec);
+    
+    @Override
+    @EntityGraph(Producto.GRAFO_LISTADO)
+    <S extends Producto, R> R findBy(Specification<Producto> spec, Function<? super SpecificationFluentQuery<S>, R> queryFunction);
+    
+    @Override
+    @EntityGraph(Producto.GRAFO_LISTADO)
+    List<Producto> findAllById(Iterable<Long> ids);
     
     //busca productos cuyo nombre contenga el termino de búsqueda, ignorando mayusculas y minusculas
     Page<Producto> findByNombreContainingIgnoreCase(String nombre, Pageable pageable);
     
-    //busca productos activos cuyo nombre contenga el termino de busqueda
-    Page<Producto> findByNombreContainingIgnoreCaseAndActivoTrue(String nombre, Pageable pageable);
-    
-    //obtiene productos por categoría y que esten activos
-    List<Producto> findByCategoriaIdAndActivoTrue(Long categoriaId);
-    
-    //obtiene productos destacados
-    @Query("SELECT p FROM Producto p WHERE p.activo = true ORDER BY p.fechaCreacion DESC")
-    List<Producto> findProductosDestacados(Pageable pageable);
-    
-    //metodo personalizado para filtrar productos con multiples criterios
-    @Query("SELECT p FROM Producto p WHERE " +
-           "(:busqueda IS NULL OR p.nombre LIKE :busqueda OR p.descripcion LIKE :busqueda) AND " +
-           "(:categoriaIds IS NULL OR p.categoria.id IN :categoriaIds) AND " +
-           "(:marca IS NULL OR p.marca LIKE :marca) AND " +
-           "(:precioMin IS NULL OR p.precio >= :precioMin) AND " +
-           "(:precioMax IS NULL OR p.precio <= :precioMax) AND " +
-           "(:tallas IS NULL OR p.talla IN :tallas) AND " +
-           "(:colores IS NULL OR p.color IN :colores) AND " +
-           "(:genero IS NULL OR p.genero = :genero) AND " +
-           "(:materiales IS NULL OR p.material IN :materiales) AND " +
-           "(:soloDisponibles = false OR (p.activo = true AND p.stock > 0)) AND " +
-           "(:pesoMin IS NULL OR p.peso >= :pesoMin) AND " +
-           "(:pesoMax IS NULL OR p.peso <= :pesoMax)")
-    Page<Producto> findProductosConFiltros(
-            @Param("busqueda") String busqueda,
-            @Param("categoriaIds") List<Long> categoriaIds,
-            @Param("marca") String marca,
-            @Param("precioMin") BigDecimal precioMin,
-            @Param("precioMax") BigDecimal precioMax,
-            @Param("tallas") List<String> tallas,
-            @Param("colores") List<String> colores,
-            @Param("genero") Producto.Genero genero,
-            @Param("materiales") List<String> materiales,
-            @Param("soloDisponibles") Boolean soloDisponibles,
-            @Param("pesoMin") BigDecimal pesoMin,
-            @Param("pesoMax") BigDecimal pesoMax,
-            Pageable pageable);
-    
-    //metodo simplificado para obtener productos destacados con limite
-    @Query(value = "SELECT * FROM productos WHERE activo = true ORDER BY fecha_creacion DESC LIMIT :limite", 
-           nativeQuery = true)
-    List<Producto> findProductosDestacados(@Param("limite") int limite);
+    //LISTADOS DE SOLO LECTURA PROYECTADOS A ProductoFila (sin entidades gestionadas)
+    
+    @Query(ProductoFila.CONSULTA + "WHERE p.id IN :ids")
+    List<ProductoFila> findFilasByIds(@Param("ids") Collection<Long> ids);
+    
+    //productos activos de una categoría
+    @Query(ProductoFila.CONSULTA + "WHERE c.id = :categoriaId AND p.activo = true")
+    List<ProductoFila> findFilasActivasByCategoriaId(@Param("categoriaId") Long categoriaId);
+    
+    //suma ventas a la popularidad en la base de datos, sin carreras entre ventas simultaneas. los dos valores
+    //estan en log2: log2(2^a + 2^b) = max(a, b) + log2(1 + 2^-|a - b|), sin calcular nunca 2^a. la diferencia
+    //se limita a 64 porque power da error de underflow y 1 + 2^-64 ya es 1 en double precision
+    @Modifying
+    @Query("UPDATE Producto p SET p.popularidad = greatest(p.popularidad, :incrementoLog2) + " +
+           "ln(1 + power(2, -least(abs(p.popularidad - :incrementoLog2), 64))) / ln(2) WHERE p.id = :id")
+    int sumarPopularidad(@Param("id") Long id, @Param("incrementoLog2") double incrementoLog2);
+    
+    @Query("SELECT p.imagenUrl FROM Producto p WHERE p.id = :id")
+    Optional<String> findImagenUrlById(@Param("id") Long id);
+    
+    //registra las variantes generadas solo si la imagen no ha cambiado mientras se procesaba
+    @Transactional
+    @Modifying
+    @Query("UPDATE Producto p SET p.imagenVariantes = :variantes, p.fechaActualizacion = CURRENT_TIMESTAMP " +
+           "WHERE p.id = :id AND p.imagenUrl = :imagenUrl")
+    int actualizarImagenVariantes(@Param("id") Long id, @Param("imagenUrl") String imagenUrl,
+                                  @Param("variantes") String variantes);
+
+    //cuantos productos apuntan a cada imagen (referencias para borrar los ficheros huerfanos)
+    @Query("SELECT p.imagenUrl, COUNT(p) FROM Producto p WHERE p.imagenUrl IS NOT NULL GROUP BY p.imagenUrl")
+    List<Object[]> contarReferenciasImagen();
+    
+    //datos para puntuar los destacados: id, stock, fechaCreacion de los productos activos
+    @Query("SELECT p.id, p.stock, p.fechaCreacion FROM Producto p WHERE p.activo = true")
+    List<Object[]> findDatosDestacados();
+    
+    //productos destacados mas recientes (el limite va en el Pageable); respaldo mientras no hay ranking
+    @Query(ProductoFila.CONSULTA + "WHERE p.activo = true ORDER BY p.fechaCreacion DESC")
+    List<ProductoFila> findFilasDestacadas(Pageable pageable);
+    
+    //productos activos cuyo nombre coincide con el patron LIKE (en minusculas; la barra invertida escapa % y _)
+    @Query(value = ProductoFila.CONSULTA + "WHERE p.activo = true AND lower(p.nombre) LIKE :patron ESCAPE '\\'",
+           countQuery = "SELECT count(p) FROM Producto p WHERE p.activo = true AND lower(p.nombre) LIKE :patron ESCAPE '\\'")
+    Page<ProductoFila> buscarFilasPorNombre(@Param("patron") String patron, Pageable pageable);
+    
+    //busqueda de texto completo (indice GIN sobre search_vector) ordenada por relevancia
+    @Query(value = ProductoFila.CONSULTA + "WHERE p.activo = true AND fts_coincide(:consulta) " +
+                   "ORDER BY fts_rango(:consulta) DESC, p.id",
+           countQuery = "SELECT count(p) FROM Producto p WHERE p.activo = true AND fts_coincide(:consulta)")
+    Page<ProductoFila> buscarFilasPorTextoCompleto(@Param("consulta") String consulta, Pageable pageable);
+    
+    //datos de texto para el indice de busqueda en memoria: id, nombre, marca, modelo, descripcion, activo
+    @Query("SELECT p.id, p.nombre, p.marca, p.modelo, p.descripcion, p.activo FROM Producto p " +
+           "WHERE p.id > :desdeId ORDER BY p.id")
+    List<Object[]> findDatosBusqueda(@Param("desdeId") Long desdeId, Pageable pageable);
+    
+    @Query("SELECT p.id, p.nombre, p.marca, p.modelo, p.descripcion, p.activo FROM Producto p WHERE p.id IN :ids")
+    List<Object[]> findDatosBusquedaByIds(@Param("ids") Collection<Long> ids);
+    
+    //atributos filtrables y ordenables para el catalogo columnar en memoria:
+    //id, categoria, marca, talla, color, material, genero, precio, peso, stock, activo, nombre, modelo, fechaCreacion
+    @Query("SELECT p.id, p.categoria.id, p.marca, p.talla, p.color, p.material, p.genero, p.precio, p.peso, " +
+           "p.stock, p.activo, p.nombre, p.modelo, p.fechaCreacion FROM Producto p WHERE p.id > :desdeId ORDER BY p.id")
+    List<Object[]> findDatosCatalogo(@Param("desdeId") Long desdeId, Pageable pageable);
+    
+    @Query("SELECT p.id, p.categoria.id, p.marca, p.talla, p.color, p.material, p.genero, p.precio, p.peso, " +
+           "p.stock, p.activo, p.nombre, p.modelo, p.fechaCreacion FROM Producto p WHERE p.id IN :ids")
+    List<Object[]> findDatosCatalogoByIds(@Param("ids") Collection<Long> ids);
+    
+    //collation por defecto de la base de datos, con la que se ordenan las columnas de texto de productos
+    @Query(value = "SELECT datcollate FROM pg_database WHERE datname = current_database()", nativeQuery = true)
+    String findCollationTexto();
+    
+    //fechas de actualizacion del producto y de su categoria: version del detalle para ETag y Last-Modified
+    @Query("SELECT p.fechaActualizacion, c.fechaActualizacion FROM Producto p JOIN p.categoria c WHERE p.id = :id")
+    List<Object[]> findFechasActualizacionById(@Param("id") Long id);
+    
+    //caracteristicas de varios productos en una sola consulta: id del producto, caracteristica
+    @Query("SELECT p.id, c FROM Producto p JOIN p.caracteristicas c WHERE p.id IN :ids")
+    List<Object[]> findCaracteristicasByProductoIds(@Param("ids") Collection<Long> ids);
 }
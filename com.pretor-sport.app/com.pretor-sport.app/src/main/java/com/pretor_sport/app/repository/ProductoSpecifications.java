@@ -0,0 +1,149 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+//filtros del catalogo como Specification: solo se agregan los predicados que vienen informados,
+//asi postgresql planifica cada combinacion de filtros por separado y puede usar los indices de productos
+public final class ProductoSpecifications {
+
+    //columnas de ordenamiento que pueden ser nulas; postgresql deja los nulos al final en ASC y al principio en DESC
+    private static final Set<String> CAMPOS_CON_NULOS = Set.of("marca", "modelo", "fechaCreacion", "genero", "peso");
+
+    private ProductoSpecifications() {
+    }
+
+    //busquedaLike, consultaTexto e idsBusqueda son excluyentes: los prepara ProductoService segun el motor disponible
+    public static Specification<Producto> conFiltros(ProductoFilterDTO filtros,
+                                                     Producto.Genero genero,
+                                                     String busquedaLike,
+                                                     String consultaTexto,
+                                                     Collection<Long> idsBusqueda) {
+        return (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>();
+
+            if (busquedaLike != null) {
+                predicados.add(cb.or(
+                    cb.like(root.get("nombre"), busquedaLike),
+                    cb.like(root.get("descripcion"), busquedaLike)
+                ));
+            }
+            if (consultaTexto != null) {
+                predicados.add(cb.isTrue(cb.function("fts_coincide", Boolean.class, cb.literal(consultaTexto))));
+            }
+            if (idsBusqueda != null) {
+                predicados.add(root.get("id").in(idsBusqueda));
+            }
+            if (noVacia(filtros.getCategoriaIds())) {
+                predicados.add(root.get("categoria").get("id").in(filtros.getCategoriaIds()));
+            }
+            if (filtros.getMarca() != null && !filtros.getMarca().isEmpty()) {
+                predicados.add(cb.equal(root.get("marca"), filtros.getMarca()));
+            }
+            if (filtros.getPrecioMin() != null) {
+                predicados.add(cb.greaterThanOrEqualTo(root.get("precio"), filtros.getPrecioMin()));
+            }
+            if (filtros.getPrecioMax() != null) {
+                predicados.add(cb.lessThanOrEqualTo(root.get("precio"), filtros.getPrecioMax()));
+            }
+            if (noVacia(filtros.getTallas())) {
+                predicados.add(root.get("talla").in(filtros.getTallas()));
+            }
+            if (noVacia(filtros.getColores())) {
+                predicados.add(root.get("color").in(filtros.getColores()));
+            }
+            if (genero != null) {
+                predicados.add(cb.equal(root.get("genero"), genero));
+            }
+            if (noVacia(filtros.getMateriales())) {
+                predicados.add(root.get("material").in(filtros.getMateriales()));
+            }
+            if (!Boolean.FALSE.equals(filtros.getSoloDisponibles())) {
+                predicados.add(cb.isTrue(root.get("activo")));
+                predicados.add(cb.greaterThan(root.get("stock"), 0));
+            }
+            if (filtros.getPesoMin() != null) {
+                predicados.add(cb.greaterThanOrEqualTo(root.get("peso"), filtros.getPesoMin()));
+            }
+            if (filtros.getPesoMax() != null) {
+                predicados.add(cb.lessThanOrEqualTo(root.get("peso"), filtros.getPesoMax()));
+            }
+
+            return cb.and(predicados.toArray(Predicate[]::new));
+        };
+    }
+
+    //ordena por relevancia de texto completo (y por id para desempatar); se usa con un Pageable sin orden
+    public static Specification<Producto> ordenadoPorRelevancia(String consultaTexto) {
+        return (root, query, cb) -> {
+            //la consulta de conteo de la pagina no admite ORDER BY
+            if (!Long.class.equals(query.getResultType())) {
+                query.orderBy(
+                    cb.desc(cb.function("fts_rango", Double.class, cb.literal(consultaTexto))),
+                    cb.asc(root.get("id"))
+                );
+            }
+            return null;
+        };
+    }
+
+    //ordena por relevancia de texto completo y, si hay cursor, continua despues de la fila (rango, id) sin OFFSET
+    public static Specification<Producto> relevanciaDespuesDe(String consultaTexto, Double rango, Long id) {
+        return (root, query, cb) -> {
+            Expression<Double> expresion = cb.function("fts_rango", Double.class, cb.literal(consultaTexto));
+            Expression<Long> expresionId = root.get("id");
+            query.orderBy(cb.desc(expresion), cb.asc(expresionId));
+            if (id == null) {
+                return null;
+            }
+            return cb.or(
+                cb.lessThan(expresion, rango),
+                cb.and(cb.equal(expresion, rango), cb.greaterThan(expresionId, id))
+            );
+        };
+    }
+
+    //ordena por (campo, id) y, si hay cursor, continua despues de la fila (valor, id) sin OFFSET.
+    //el limite inferior redundante (campo >= valor) permite recorrer el indice del campo desde el cursor
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Producto> ordenadoDespuesDe(String campo, boolean descendente, Comparable valor, Long id) {
+        return (root, query, cb) -> {
+            Expression<Comparable> expresion = root.get(campo);
+            Expression<Long> expresionId = root.get("id");
+            query.orderBy(
+                descendente ? cb.desc(expresion) : cb.asc(expresion),
+                descendente ? cb.desc(expresionId) : cb.asc(expresionId)
+            );
+            if (id == null) {
+                return null;
+            }
+
+            if (valor == null) {
+                Predicate mismoNuloSiguiente = cb.and(cb.isNull(expresion),
+                    descendente ? cb.lessThan(expresionId, id) : cb.greaterThan(expresionId, id));
+                //en DESC los nulos van primero, despues de ellos siguen todos los valores
+                return descendente ? cb.or(mismoNuloSiguiente, cb.isNotNull(expresion)) : mismoNuloSiguiente;
+            }
+
+            Predicate siguiente = descendente
+                ? cb.and(cb.lessThanOrEqualTo(expresion, valor),
+                    cb.or(cb.lessThan(expresion, valor), cb.lessThan(expresionId, id)))
+                : cb.and(cb.greaterThanOrEqualTo(expresion, valor),
+                    cb.or(cb.greaterThan(expresion, valor), cb.greaterThan(expresionId, id)));
+            //en ASC los nulos van al final, despues de cualquier valor
+            return !descendente && CAMPOS_CON_NULOS.contains(campo) ? cb.or(siguiente, cb.isNull(expresion)) : siguiente;
+        };
+    }
+
+    private static boolean noVacia(Collection<?> lista) {
+        return lista != null && !lista.isEmpty();
+    }
+}
@@ -2,9 +2,15 @@ package com.pretor_sport.app.repository;
 
 import com.pretor_sport.app.model.Proveedor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ProveedorRepository extends JpaRepository<Proveedor, Long> {
 
+    //id y nombre de todos, para resolver referencias en la importacion de productos
+    @Query("SELECT pr.id, pr.nombre FROM Proveedor pr")
+    List<Object[]> findIdsYNombres();
 }
\ No newline at end of file
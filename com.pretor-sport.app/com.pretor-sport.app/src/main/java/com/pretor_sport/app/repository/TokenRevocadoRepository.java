@@ -0,0 +1,25 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.model.TokenRevocado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocadoRepository extends JpaRepository<TokenRevocado, String> {
+
+    //revocaciones que siguen vigentes (para reconstruir el filtro al arrancar)
+    List<TokenRevocado> findByExpiracionAfter(LocalDateTime fecha);
+
+    //revocaciones hechas desde la ultima sincronizacion (p. ej. en otro nodo)
+    List<TokenRevocado> findByFechaRevocacionAfterAndExpiracionAfter(LocalDateTime desde, LocalDateTime fecha);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocado t WHERE t.expiracion < :fecha")
+    int eliminarCaducados(@Param("fecha") LocalDateTime fecha);
+}
@@ -0,0 +1,32 @@
+package com.pretor_sport.app.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+//escritura en lote de usuarios.ultimo_acceso: un solo batch JDBC para todos los accesos acumulados.
+//nunca retrocede la fecha (otra instancia puede haber escrito un acceso posterior)
+@Repository
+@RequiredArgsConstructor
+public class UltimoAccesoRepository {
+
+    private static final String ACTUALIZAR =
+        "UPDATE usuarios SET ultimo_acceso = :fecha " +
+        "WHERE id = :id AND (ultimo_acceso IS NULL OR ultimo_acceso < :fecha)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public int[] actualizar(Map<Long, LocalDateTime> accesos) {
+        SqlParameterSource[] lote = accesos.entrySet().stream()
+            .map(acceso -> new MapSqlParameterSource()
+                .addValue("id", acceso.getKey())
+                .addValue("fecha", acceso.getValue()))
+            .toArray(SqlParameterSource[]::new);
+        return jdbcTemplate.batchUpdate(ACTUALIZAR, lote);
+    }
+}
@@ -24,6 +24,10 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     
     Optional<Usuario> findByTokenVerificacion(String token);
     
+    @Query("SELECT new com.pretor_sport.app.repository.EstadoUsuario(u.id, u.email, u.rol, u.activo, u.emailVerificado) " +
+           "FROM Usuario u WHERE u.id = :id")
+    Optional<EstadoUsuario> findEstadoById(@Param("id") Long id);
+    
     List<Usuario> findByRol(Usuario.Rol rol);
     
     Page<Usuario> findByActivoAndRol(Boolean activo, Usuario.Rol rol, Pageable pageable);
@@ -45,6 +49,10 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     void updateUltimoAcceso(@Param("email") String email, 
                            @Param("fechaAcceso") LocalDateTime fechaAcceso);
     
+    @Modifying
+    @Query("UPDATE Usuario u SET u.password = :password WHERE u.email = :email")
+    int actualizarPassword(@Param("email") String email, @Param("password") String password);
+    
     @Modifying
     @Query("UPDATE Usuario u SET u.emailVerificado = true, u.tokenVerificacion = null WHERE u.tokenVerificacion = :token")
     int verificarEmail(@Param("token") String token);
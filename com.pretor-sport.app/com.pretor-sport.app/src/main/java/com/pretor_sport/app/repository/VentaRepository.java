@@ -3,6 +3,8 @@ package com.pretor_sport.app.repository;
 import com.pretor_sport.app.model.Usuario;
 import com.pretor_sport.app.model.Venta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,4 +16,9 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
 
     //busca todas las venetas realizadas dentro de un rango de fechas
     List<Venta> findByFechaVentaBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin);
+
+    //unidades vendidas de cada producto desde una fecha: producto id, unidades
+    @Query("SELECT d.producto.id, SUM(d.cantidad) FROM Venta v JOIN v.pedido pe JOIN pe.detalles d " +
+           "WHERE v.fechaVenta >= :desde GROUP BY d.producto.id")
+    List<Object[]> sumarUnidadesVendidasDesde(@Param("desde") LocalDateTime desde);
 }
\ No newline at end of file
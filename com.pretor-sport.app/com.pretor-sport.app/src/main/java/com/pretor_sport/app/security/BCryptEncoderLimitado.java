@@ -0,0 +1,151 @@
+package com.pretor_sport.app.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//BCrypt con el trabajo aislado en un pool propio y limitado. cada hash cuesta cientos de ms de CPU: con el calculo
+//en los hilos de tomcat una racha de logins deja sin CPU al catalogo. aqui solo se calculan 'hilos' hashes a la
+//vez, con una cola acotada; si esta llena la peticion se rechaza al momento con HashContrasenasSaturadoException.
+//upgradeEncoding devuelve true si el hash guardado tiene otro coste que el configurado, y DaoAuthenticationProvider
+//lo rehace en el siguiente login correcto
+@Slf4j
+public class BCryptEncoderLimitado implements PasswordEncoder {
+
+    private static final Pattern COSTE_BCRYPT = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int coste;
+    private final ThreadPoolExecutor executor;
+    private final long esperaMaximaMs;
+
+    //metricas: espera en cola y tiempo de calculo por operacion
+    private final AtomicLong cifrados = new AtomicLong();
+    private final AtomicLong verificaciones = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong agotadas = new AtomicLong();
+    private final AtomicLong esperaTotalMs = new AtomicLong();
+    private final AtomicLong esperaMaximaObservadaMs = new AtomicLong();
+    private final AtomicLong hashTotalMs = new AtomicLong();
+    private final AtomicLong hashMaximoMs = new AtomicLong();
+
+    public BCryptEncoderLimitado(int coste, int hilos, int capacidadCola, Duration esperaMaxima) {
+        this.bcrypt = new BCryptPasswordEncoder(coste);
+        this.coste = coste;
+        this.esperaMaximaMs = esperaMaxima.toMillis();
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadCola), new CustomizableThreadFactory("bcrypt-"),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        String cifrada = ejecutar(() -> bcrypt.encode(rawPassword));
+        cifrados.incrementAndGet();
+        return cifrada;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        boolean coincide = ejecutar(() -> bcrypt.matches(rawPassword, encodedPassword));
+        verificaciones.incrementAndGet();
+        return coincide;
+    }
+
+    //solo lee la cabecera del hash, no hace falta pasar por el pool
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = COSTE_BCRYPT.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != coste;
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        long total = cifrados.get() + verificaciones.get();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("coste", coste);
+        estadisticas.put("hilos", executor.getMaximumPoolSize());
+        estadisticas.put("activos", executor.getActiveCount());
+        estadisticas.put("enCola", executor.getQueue().size());
+        estadisticas.put("cifrados", cifrados.get());
+        estadisticas.put("verificaciones", verificaciones.get());
+        estadisticas.put("rechazadas", rechazadas.get());
+        estadisticas.put("agotadas", agotadas.get());
+        estadisticas.put("esperaMediaMs", total > 0 ? esperaTotalMs.get() / total : 0);
+        estadisticas.put("esperaMaximaMs", esperaMaximaObservadaMs.get());
+        estadisticas.put("hashMedioMs", total > 0 ? hashTotalMs.get() / total : 0);
+        estadisticas.put("hashMaximoMs", hashMaximoMs.get());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    //ejecuta la operacion en el pool y espera el resultado como mucho esperaMaximaMs
+    private <T> T ejecutar(Callable<T> operacion) {
+        long encolado = System.nanoTime();
+        Future<T> resultado;
+        try {
+            resultado = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                registrar(esperaTotalMs, esperaMaximaObservadaMs, inicio - encolado);
+                try {
+                    return operacion.call();
+                } finally {
+                    registrar(hashTotalMs, hashMaximoMs, System.nanoTime() - inicio);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazadas.incrementAndGet();
+            log.warn("Cola de cifrado de contraseñas llena ({} en cola), se rechaza la petición", executor.getQueue().size());
+            throw new HashContrasenasSaturadoException("Demasiadas peticiones de autenticación, inténtalo de nuevo en unos segundos");
+        }
+
+        try {
+            return resultado.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            //si aun estaba en cola ya no se calcula
+            resultado.cancel(false);
+            agotadas.incrementAndGet();
+            log.warn("Cifrado de contraseña sin terminar tras {} ms", esperaMaximaMs);
+            throw new HashContrasenasSaturadoException("Demasiadas peticiones de autenticación, inténtalo de nuevo en unos segundos");
+        } catch (InterruptedException e) {
+            resultado.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cifrado de contraseña interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Error al cifrar la contraseña", e.getCause());
+        }
+    }
+
+    private static void registrar(AtomicLong total, AtomicLong maximo, long nanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        total.addAndGet(ms);
+        maximo.accumulateAndGet(ms, Math::max);
+    }
+}
@@ -0,0 +1,68 @@
+package com.pretor_sport.app.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pretor_sport.app.event.UsuarioCambiadoEvent;
+import com.pretor_sport.app.repository.EstadoUsuario;
+import com.pretor_sport.app.repository.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+//estado de los usuarios (activo, email verificado, rol) para autenticar las peticiones con JWT sin consultar la
+//base de datos en cada una. las entradas caducan a los pocos segundos, y los cambios hechos por UsuarioService y
+//AuthService las descartan tras el commit, asi que una desactivacion se aplica en la siguiente peticion.
+//los usuarios inexistentes tambien se guardan (Optional vacio) para que un token de un usuario borrado no
+//consulte la base en cada peticion
+@Component
+@Slf4j
+public class EstadoUsuarioCache {
+
+    private final LoadingCache<Long, Optional<EstadoUsuario>> estados;
+    private final Duration ttl;
+
+    public EstadoUsuarioCache(UsuarioRepository usuarioRepository,
+                              @Value("${app.security.user-status.ttl:30s}") Duration ttl,
+                              @Value("${app.security.user-status.max-size:10000}") long maximo) {
+        this.ttl = ttl;
+        this.estados = Caffeine.newBuilder()
+            .maximumSize(maximo)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build(usuarioRepository::findEstadoById);
+    }
+
+    public Optional<EstadoUsuario> obtener(Long usuarioId) {
+        return estados.get(usuarioId);
+    }
+
+    //DESCARTA EL ESTADO GUARDADO (tras el commit del cambio). si hay una carga en curso para el mismo usuario,
+    //caffeine espera a que termine y la descarta, asi que no sobrevive un estado leido antes del commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsuarioCambiado(UsuarioCambiadoEvent evento) {
+        estados.invalidate(evento.usuarioId());
+        if (evento.tipo() == UsuarioCambiadoEvent.Tipo.DESACTIVADO) {
+            log.info("Usuario {} desactivado: sus tokens dejan de aceptarse", evento.usuarioId());
+        }
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = estados.stats();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("entradas", estados.estimatedSize());
+        estadisticas.put("ttlSegundos", ttl.toSeconds());
+        estadisticas.put("hits", stats.hitCount());
+        estadisticas.put("misses", stats.missCount());
+        estadisticas.put("hitRate", stats.hitRate());
+        estadisticas.put("evictions", stats.evictionCount());
+        return estadisticas;
+    }
+}
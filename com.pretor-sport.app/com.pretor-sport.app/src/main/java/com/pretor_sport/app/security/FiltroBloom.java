@@ -0,0 +1,74 @@
+package com.pretor_sport.app.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//filtro de Bloom de tamaño fijo para cadenas (los jti de los tokens revocados). no da falsos negativos: si dice
+//que no contiene un valor, seguro que no se añadio; si dice que puede contenerlo hay que confirmarlo aparte.
+//no admite borrados, asi que se reconstruye entero cuando se eliminan valores. las lecturas no bloquean
+final class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final int numeroBits;
+    private final int numeroHashes;
+
+    //tamaño optimo para 'capacidad' valores con la probabilidad de falso positivo indicada
+    FiltroBloom(int capacidad, double falsosPositivos) {
+        int n = Math.max(capacidad, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsosPositivos) / (Math.log(2) * Math.log(2)));
+        this.numeroBits = (int) Math.min(Math.max(m, 64), Integer.MAX_VALUE - 63);
+        this.numeroHashes = Math.max(1, (int) Math.round((double) numeroBits / n * Math.log(2)));
+        this.bits = new AtomicLongArray((numeroBits + 63) / 64);
+    }
+
+    void anadir(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numeroHashes; i++) {
+            int bit = posicion(h1 + i * h2);
+            long mascara = 1L << bit;
+            int palabra = bit >>> 6;
+            long actual;
+            do {
+                actual = bits.get(palabra);
+            } while ((actual & mascara) == 0 && !bits.compareAndSet(palabra, actual, actual | mascara));
+        }
+    }
+
+    boolean puedeContener(String valor) {
+        long hash = hash64(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numeroHashes; i++) {
+            int bit = posicion(h1 + i * h2);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int numeroBits() {
+        return numeroBits;
+    }
+
+    int numeroHashes() {
+        return numeroHashes;
+    }
+
+    private int posicion(int combinado) {
+        return (combinado & Integer.MAX_VALUE) % numeroBits;
+    }
+
+    //FNV-1a de 64 bits con una mezcla final (la de splitmix64) para repartir bien las dos mitades
+    private static long hash64(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            hash ^= valor.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
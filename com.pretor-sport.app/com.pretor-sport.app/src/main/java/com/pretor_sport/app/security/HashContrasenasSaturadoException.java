@@ -0,0 +1,9 @@
+package com.pretor_sport.app.security;
+
+//el pool de cifrado de contraseñas esta lleno: la peticion se rechaza al momento (429) en lugar de esperar
+public class HashContrasenasSaturadoException extends RuntimeException {
+
+    public HashContrasenasSaturadoException(String message) {
+        super(message);
+    }
+}
@@ -4,10 +4,13 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.pretor_sport.app.repository.EstadoUsuario;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -15,14 +18,25 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 @Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    //atributo de la peticion con el TokenJwt ya verificado, para que los controladores no lo vuelvan a parsear
+    public static final String ATRIBUTO_TOKEN = JwtAuthenticationFilter.class.getName() + ".token";
+
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final EstadoUsuarioCache estadoUsuarioCache;
+    private final TokensRevocados tokensRevocados;
+
+    //con true el principal se construye con los claims del token y el estado de EstadoUsuarioCache, sin cargar
+    //el usuario de la base de datos en cada peticion; con false se usa UserDetailsService como antes
+    @Value("${app.security.jwt.claims-auth:true}")
+    private boolean autenticacionPorClaims;
 
 
     @Override
@@ -33,8 +47,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userEmail;
 
         //si no hay header Authorization o no empieza con Bearer, continua con la cadena de filtros
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -42,51 +54,61 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        //extrae el token JWT del header
-        jwt = jwtUtil.extractTokenFromHeader(authHeader);
-        
         try {
-            //extrae el email del usuario del token
-            userEmail = jwtUtil.extractUsername(jwt);
+            //verifica firma y caducidad una sola vez; el resto de comprobaciones usan los claims ya leidos
+            Optional<TokenJwt> verificado = jwtUtil.verificar(jwtUtil.extractTokenFromHeader(authHeader));
+            if (verificado.isEmpty()) {
+                log.debug("Token JWT inválido o expirado en {}", request.getServletPath());
+                filterChain.doFilter(request, response);
+                return;
+            }
+            TokenJwt token = verificado.get();
+            String userEmail = token.username();
+
+            //tokens cerrados con logout: se comprueba en memoria, sin consultar la base de datos
+            if (tokensRevocados.estaRevocado(token.id())) {
+                log.debug("Token JWT revocado para usuario: {}", userEmail);
+                filterChain.doFilter(request, response);
+                return;
+            }
+            request.setAttribute(ATRIBUTO_TOKEN, token);
 
             //si tenemos un email y no hay autenticacion en el contexto de seguridad
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                
-                //carga los detalles del usuario
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-                //valida el token
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    
-                    //verifica que no sea un refresh token
-                    if (!jwtUtil.isRefreshToken(jwt)) {
-                        if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
-                            log.warn("Usuario no habilitado para autenticación JWT: {}", userEmail);
-                            filterChain.doFilter(request, response);
-                            return;
-                        }
-
-                        //crea el token de autenticacion
-                        UsernamePasswordAuthenticationToken authToken = 
-                            new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null,
-                                userDetails.getAuthorities()
-                            );
-                        
-                        //añade detalles adicionales a la autenticacion
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        
-                        //establece la autenticacion en el contexto de seguridad
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                        
-                        log.debug("Usuario autenticado: {} con rol: {}", 
-                            userEmail, userDetails.getAuthorities());
-                    } else {
-                        log.warn("Intento de usar refresh token como access token para usuario: {}", userEmail);
-                    }
-                } else {
+
+                //verifica que no sea un refresh token
+                if (token.isRefresh()) {
+                    log.warn("Intento de usar refresh token como access token para usuario: {}", userEmail);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+
+                //detalles del usuario: desde los claims (los tokens anteriores a userId se cargan de la base)
+                UserDetails userDetails = autenticacionPorClaims && token.userId() != null
+                    ? desdeClaims(token)
+                    : this.userDetailsService.loadUserByUsername(userEmail);
+
+                if (userDetails == null || !userEmail.equals(userDetails.getUsername())) {
                     log.warn("Token JWT inválido para usuario: {}", userEmail);
+                } else if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
+                    log.warn("Usuario no habilitado para autenticación JWT: {}", userEmail);
+                } else {
+                    //crea el token de autenticacion
+                    UsernamePasswordAuthenticationToken authToken =
+                        new UsernamePasswordAuthenticationToken(
+                            userDetails,
+                            null,
+                            userDetails.getAuthorities()
+                        );
+
+                    //añade detalles adicionales a la autenticacion
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                    //establece la autenticacion en el contexto de seguridad
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+
+                    log.debug("Usuario autenticado: {} con rol: {}",
+                        userEmail, userDetails.getAuthorities());
                 }
             }
         } catch (Exception e) {
@@ -98,6 +120,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    //principal con el email y el rol del token. el estado cacheado tiene que seguir correspondiendo al token:
+    //mismo email y mismo rol (un cambio de rol obliga a iniciar sesion de nuevo); null si no es asi
+    private UserDetails desdeClaims(TokenJwt token) {
+        EstadoUsuario estado = estadoUsuarioCache.obtener(token.userId()).orElse(null);
+        if (estado == null
+                || !estado.email().equals(token.username())
+                || !estado.rol().name().equals(token.rol())) {
+            return null;
+        }
+        return User.withUsername(token.username())
+                .password("")
+                .authorities(token.rol())
+                .accountLocked(!estado.activo())
+                .disabled(!estado.emailVerificado())
+                .build();
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request){
         String path = request.getServletPath();
@@ -111,6 +150,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 path.startsWith("/auth/health") ||
                 path.startsWith("/health") ||
                 path.startsWith("/public") ||
+                path.startsWith("/images/") ||
                 path.startsWith("/swagger-ui") ||
                 path.startsWith("/v3/api-docs");
     }
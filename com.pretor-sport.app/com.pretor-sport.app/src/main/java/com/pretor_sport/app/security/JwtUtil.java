@@ -2,6 +2,7 @@ package com.pretor_sport.app.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,6 +14,8 @@ import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -28,8 +31,38 @@ public class JwtUtil {
     @Value("${app.jwt.refresh-expiration:604800}") // 7 días por defecto
     private Long refreshExpiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    //la clave y el parser no cambian en toda la vida de la aplicacion: se construyen una vez y el parser de jjwt
+    //es inmutable y seguro entre hilos
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    //VERIFICA FIRMA Y CADUCIDAD UNA SOLA VEZ Y DEVUELVE LOS CLAIMS YA LEIDOS. vacio si el token no es valido
+    public Optional<TokenJwt> verificar(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Claims claims = extractAllClaims(token);
+            return Optional.of(new TokenJwt(
+                    claims.getId(),
+                    claims.getSubject(),
+                    claims.get("userId", Long.class),
+                    claims.get("rol", String.class),
+                    claims.get("type", String.class),
+                    claims.getIssuedAt(),
+                    claims.getExpiration()
+            ));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     public String extractUsername(String token) {
@@ -55,11 +88,7 @@ public class JwtUtil {
 
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return parser.parseSignedClaims(token).getPayload();
         } catch (JwtException e) {
             log.error("Error al parsear JWT: {}", e.getMessage());
             throw e;
@@ -74,7 +103,7 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
         claims.put("rol", rol);
-        claims.put("type", "ACCESS");
+        claims.put("type", TokenJwt.TIPO_ACCESS);
         return createToken(claims, userDetails.getUsername(), jwtExpiration);
     }
 
@@ -82,7 +111,7 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
         claims.put("rol", rol);
-        claims.put("type", "REFRESH");
+        claims.put("type", TokenJwt.TIPO_REFRESH);
         return createToken(claims, userDetails.getUsername(), refreshExpiration);
     }
 
@@ -92,10 +121,11 @@ public class JwtUtil {
 
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(Date.from(now))
                 .expiration(Date.from(expiryDate))
-                .signWith(getSigningKey(), Jwts.SIG.HS512)
+                .signWith(signingKey, Jwts.SIG.HS512)
                 .compact();
     }
 
@@ -115,7 +145,7 @@ public class JwtUtil {
     public Boolean isRefreshToken(String token) {
         try {
             String type = extractClaim(token, claims -> claims.get("type", String.class));
-            return "REFRESH".equals(type);
+            return TokenJwt.TIPO_REFRESH.equals(type);
         } catch (JwtException e) {
             log.error("Error al verificar tipo de token: {}", e.getMessage());
             return false;
@@ -133,20 +163,22 @@ public class JwtUtil {
     }
 
     public String refreshAccessToken(String refreshToken) {
-        if (!isRefreshToken(refreshToken) || !validateTokenStructure(refreshToken)) {
+        return refreshAccessToken(verificar(refreshToken)
+                .orElseThrow(() -> new IllegalArgumentException("Token de refresh inválido")));
+    }
+
+    //nuevo access token a partir de un refresh token ya verificado
+    public String refreshAccessToken(TokenJwt refreshToken) {
+        if (!refreshToken.isRefresh() || refreshToken.isExpirado()) {
             throw new IllegalArgumentException("Token de refresh inválido");
         }
 
-        String username = extractUsername(refreshToken);
-        Long userId = extractUserId(refreshToken);
-        String rol = extractRole(refreshToken);
-
         Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", userId);
-        claims.put("rol", rol);
-        claims.put("type", "ACCESS");
+        claims.put("userId", refreshToken.userId());
+        claims.put("rol", refreshToken.rol());
+        claims.put("type", TokenJwt.TIPO_ACCESS);
 
-        return createToken(claims, username, jwtExpiration);
+        return createToken(claims, refreshToken.username(), jwtExpiration);
     }
 
     //metodo para extraer el token del header Authorization
@@ -159,20 +191,18 @@ public class JwtUtil {
 
     //metodo para obtener informacion sensible sobre el token
     public Map<String, Object> getTokenInfo(String token) {
-        try {
-            Claims claims = extractAllClaims(token);
-            Map<String, Object> info = new HashMap<>();
-            info.put("username", claims.getSubject());
-            info.put("userId", claims.get("userId"));
-            info.put("rol", claims.get("rol"));
-            info.put("type", claims.get("type"));
-            info.put("issuedAt", claims.getIssuedAt());
-            info.put("expiration", claims.getExpiration());
-            info.put("expired", isTokenExpired(token));
-            return info;
-        } catch (JwtException e) {
-            log.error("Error al obtener información del token: {}", e.getMessage());
-            return null;
-        }
+        return verificar(token).map(this::getTokenInfo).orElse(null);
+    }
+
+    public Map<String, Object> getTokenInfo(TokenJwt token) {
+        Map<String, Object> info = new HashMap<>();
+        info.put("username", token.username());
+        info.put("userId", token.userId());
+        info.put("rol", token.rol());
+        info.put("type", token.tipo());
+        info.put("issuedAt", token.emitido());
+        info.put("expiration", token.expiracion());
+        info.put("expired", token.isExpirado());
+        return info;
     }
 }
@@ -0,0 +1,28 @@
+package com.pretor_sport.app.security;
+
+import java.util.Date;
+
+//token JWT ya verificado (firma y caducidad) por JwtUtil.verificar. se parsea una sola vez por peticion y el
+//filtro, AuthController y AuthService leen los claims de aqui en lugar de volver a verificar la firma.
+//id es el jti, con el que se revoca el token en el logout
+public record TokenJwt(
+    String id,
+    String username,
+    Long userId,
+    String rol,
+    String tipo,
+    Date emitido,
+    Date expiracion
+) {
+
+    public static final String TIPO_ACCESS = "ACCESS";
+    public static final String TIPO_REFRESH = "REFRESH";
+
+    public boolean isRefresh() {
+        return TIPO_REFRESH.equals(tipo);
+    }
+
+    public boolean isExpirado() {
+        return expiracion != null && expiracion.before(new Date());
+    }
+}
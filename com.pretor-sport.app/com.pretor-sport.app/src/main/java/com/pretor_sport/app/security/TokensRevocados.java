@@ -0,0 +1,186 @@
+package com.pretor_sport.app.security;
+
+import com.pretor_sport.app.model.TokenRevocado;
+import com.pretor_sport.app.repository.TokenRevocadoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//revocacion de tokens JWT por jti sin consultar la base de datos en cada peticion. las revocaciones se guardan en
+//tokens_revocados y cada nodo mantiene en memoria un filtro de Bloom con el conjunto exacto de jtis revocados que
+//aun no han caducado: casi todas las comprobaciones terminan en el filtro (unos pocos accesos a memoria) y solo
+//los positivos se confirman en el conjunto. se reconstruye al arrancar, recoge cada pocos segundos las
+//revocaciones hechas en otros nodos y se poda cuando los tokens caducan
+@Component
+@Slf4j
+public class TokensRevocados {
+
+    //margen al pedir revocaciones nuevas: relojes desajustados y transacciones que confirman tarde
+    private static final long MARGEN_SINCRONIZACION_SEGUNDOS = 60;
+
+    private final TokenRevocadoRepository tokenRevocadoRepository;
+    private final int capacidadMinima;
+    private final double falsosPositivos;
+
+    //se sustituye entero al podar; las escrituras se serializan con synchronized y las lecturas no bloquean
+    private volatile Revocaciones revocaciones;
+    private LocalDateTime ultimaSincronizacion;
+
+    //metricas
+    private final LongAdder comprobaciones = new LongAdder();
+    private final LongAdder positivosFiltro = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+    private volatile LocalDateTime ultimaPoda;
+
+    private record Revocaciones(FiltroBloom filtro, int capacidad, Map<String, LocalDateTime> jtis) {
+    }
+
+    public TokensRevocados(TokenRevocadoRepository tokenRevocadoRepository,
+                           @Value("${app.security.revocation.expected-size:10000}") int capacidadMinima,
+                           @Value("${app.security.revocation.false-positive-rate:0.01}") double falsosPositivos) {
+        this.tokenRevocadoRepository = tokenRevocadoRepository;
+        this.capacidadMinima = capacidadMinima;
+        this.falsosPositivos = falsosPositivos;
+        this.revocaciones = construir(Map.of());
+    }
+
+    //CARGA LAS REVOCACIONES VIGENTES ANTES DE QUE EL FILTRO JWT ATIENDA PETICIONES
+    @PostConstruct
+    synchronized void cargar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<String, LocalDateTime> vigentes = new HashMap<>();
+        for (TokenRevocado revocado : tokenRevocadoRepository.findByExpiracionAfter(ahora)) {
+            vigentes.put(revocado.getJti(), revocado.getExpiracion());
+        }
+        revocaciones = construir(vigentes);
+        ultimaSincronizacion = ahora;
+        log.info("Tokens revocados cargados: {}", vigentes.size());
+    }
+
+    //COMPROBACION POR PETICION: sin sql ni bloqueos. los tokens sin jti (emitidos antes) no se pueden revocar
+    public boolean estaRevocado(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        comprobaciones.increment();
+        Revocaciones actual = revocaciones;
+        if (!actual.filtro().puedeContener(jti)) {
+            return false;
+        }
+        positivosFiltro.increment();
+        if (!actual.jtis().containsKey(jti)) {
+            return false;
+        }
+        rechazados.increment();
+        return true;
+    }
+
+    //REVOCA EL TOKEN HASTA SU CADUCIDAD. se aplica en este nodo al momento y en los demas en la siguiente sincronizacion
+    @Transactional
+    public void revocar(TokenJwt token) {
+        if (token.id() == null || token.expiracion() == null) {
+            log.warn("Token sin jti para el usuario {}, no se puede revocar", token.username());
+            return;
+        }
+        LocalDateTime expiracion = LocalDateTime.ofInstant(token.expiracion().toInstant(), ZoneId.systemDefault());
+        tokenRevocadoRepository.save(new TokenRevocado(token.id(), token.userId(), expiracion, LocalDateTime.now()));
+        anadir(Map.of(token.id(), expiracion));
+    }
+
+    //RECOGE LAS REVOCACIONES HECHAS DESDE LA ULTIMA SINCRONIZACION (otros nodos)
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-ms:10000}",
+               initialDelayString = "${app.security.revocation.sync-ms:10000}")
+    public void sincronizar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime desde;
+        synchronized (this) {
+            desde = ultimaSincronizacion.minusSeconds(MARGEN_SINCRONIZACION_SEGUNDOS);
+        }
+        try {
+            Map<String, LocalDateTime> nuevas = new HashMap<>();
+            for (TokenRevocado revocado : tokenRevocadoRepository.findByFechaRevocacionAfterAndExpiracionAfter(desde, ahora)) {
+                nuevas.put(revocado.getJti(), revocado.getExpiracion());
+            }
+            anadir(nuevas);
+            synchronized (this) {
+                ultimaSincronizacion = ahora;
+            }
+        } catch (RuntimeException e) {
+            //se vuelve a pedir desde la misma fecha en la siguiente sincronizacion
+            log.error("No se pudieron sincronizar los tokens revocados: {}", e.getMessage());
+        }
+    }
+
+    //QUITA LOS TOKENS YA CADUCADOS DEL CONJUNTO Y DE LA TABLA Y RECONSTRUYE EL FILTRO (no admite borrados)
+    @Scheduled(fixedDelayString = "${app.security.revocation.prune-ms:3600000}",
+               initialDelayString = "${app.security.revocation.prune-ms:3600000}")
+    @Transactional
+    public void podar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        int borradas = tokenRevocadoRepository.eliminarCaducados(ahora);
+        int antes;
+        int despues;
+        synchronized (this) {
+            Map<String, LocalDateTime> vigentes = new HashMap<>(revocaciones.jtis());
+            antes = vigentes.size();
+            vigentes.values().removeIf(expiracion -> !expiracion.isAfter(ahora));
+            despues = vigentes.size();
+            revocaciones = construir(vigentes);
+        }
+        ultimaPoda = ahora;
+        log.debug("Poda de tokens revocados: {} filas borradas, {} -> {} en memoria", borradas, antes, despues);
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        Revocaciones actual = revocaciones;
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("revocados", actual.jtis().size());
+        estadisticas.put("capacidadFiltro", actual.capacidad());
+        estadisticas.put("bitsFiltro", actual.filtro().numeroBits());
+        estadisticas.put("hashesFiltro", actual.filtro().numeroHashes());
+        estadisticas.put("comprobaciones", comprobaciones.sum());
+        estadisticas.put("falsosPositivos", positivosFiltro.sum() - rechazados.sum());
+        estadisticas.put("rechazados", rechazados.sum());
+        estadisticas.put("ultimaSincronizacion", ultimaSincronizacion);
+        estadisticas.put("ultimaPoda", ultimaPoda);
+        return estadisticas;
+    }
+
+    //el conjunto se actualiza antes que el filtro: un positivo del filtro siempre encuentra el jti en el conjunto
+    private synchronized void anadir(Map<String, LocalDateTime> nuevas) {
+        if (nuevas.isEmpty()) {
+            return;
+        }
+        Revocaciones actual = revocaciones;
+        if (actual.jtis().size() + nuevas.size() > actual.capacidad()) {
+            //por encima de la capacidad subirian los falsos positivos: se reconstruye con el doble
+            Map<String, LocalDateTime> todas = new HashMap<>(actual.jtis());
+            todas.putAll(nuevas);
+            revocaciones = construir(todas);
+            return;
+        }
+        nuevas.forEach((jti, expiracion) -> {
+            actual.jtis().put(jti, expiracion);
+            actual.filtro().anadir(jti);
+        });
+    }
+
+    private Revocaciones construir(Map<String, LocalDateTime> jtis) {
+        int capacidad = Math.max(capacidadMinima, jtis.size() * 2);
+        FiltroBloom filtro = new FiltroBloom(capacidad, falsosPositivos);
+        jtis.keySet().forEach(filtro::anadir);
+        return new Revocaciones(filtro, capacidad, new ConcurrentHashMap<>(jtis));
+    }
+}
@@ -0,0 +1,29 @@
+package com.pretor_sport.app.security;
+
+import com.pretor_sport.app.model.Usuario;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+//UserDetails que devuelve UserDetailsServiceImpl con el usuario ya cargado. tras authenticate() el principal es
+//este objeto, asi el login usa el mismo Usuario que comprobo la contraseña en lugar de volver a buscarlo
+public class UsuarioAutenticado extends User {
+
+    private final transient Usuario usuario;
+
+    public UsuarioAutenticado(Usuario usuario, Collection<? extends GrantedAuthority> authorities) {
+        super(usuario.getEmail(),
+              usuario.getPassword(),
+              usuario.getEmailVerificado(),
+              true,
+              true,
+              usuario.getActivo(),
+              authorities);
+        this.usuario = usuario;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+}
@@ -3,18 +3,23 @@ package com.pretor_sport.app.service;
 import com.pretor_sport.app.dto.request.UsuarioRequestDTO;
 import com.pretor_sport.app.dto.request.LoginRequestDTO;
 import com.pretor_sport.app.dto.response.AuthResponseDTO;
+import com.pretor_sport.app.event.UsuarioCambiadoEvent;
 import com.pretor_sport.app.model.Usuario;
 import com.pretor_sport.app.repository.UsuarioRepository;
+import com.pretor_sport.app.security.HashContrasenasSaturadoException;
 import com.pretor_sport.app.security.JwtUtil;
+import com.pretor_sport.app.security.TokenJwt;
+import com.pretor_sport.app.security.TokensRevocados;
+import com.pretor_sport.app.security.UsuarioAutenticado;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,8 +35,10 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final UsuarioRepository usuarioRepository;
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TokensRevocados tokensRevocados;
+    private final UltimoAccesoService ultimoAccesoService;
 
     @Value("${app.jwt.expiration:86400}")
     private Long jwtExpiration;
@@ -39,26 +46,27 @@ public class AuthService {
     @Value("${app.frontend.url:http://localhost:4200}")
     private String frontendUrl;
 
-    @Transactional
+    //el usuario se carga una sola vez (en authenticate, via UserDetailsServiceImpl) y el ultimo acceso se anota
+    //en UltimoAccesoService, asi que el login no abre una transaccion de escritura
     public AuthResponseDTO login(LoginRequestDTO loginRequest) {
         try {
-            authenticationManager.authenticate(
+            Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                     loginRequest.getEmail(),
                     loginRequest.getPassword()
                 )
             );
 
-            Usuario usuario = usuarioRepository.findByEmailAndActivo(loginRequest.getEmail(), true)
-                .orElseThrow(() -> new BadCredentialsException("Usuario no encontrado o inactivo"));
+            UsuarioAutenticado userDetails = (UsuarioAutenticado) authentication.getPrincipal();
+            Usuario usuario = userDetails.getUsuario();
 
             if (!usuario.getEmailVerificado()) {
                 throw new DisabledException("Email no verificado. Por favor, verifica tu email antes de continuar.");
             }
 
-            usuarioRepository.updateUltimoAcceso(usuario.getEmail(), LocalDateTime.now());
+            LocalDateTime ahora = LocalDateTime.now();
+            ultimoAccesoService.registrar(usuario.getId(), ahora);
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(usuario.getEmail());
             String accessToken = jwtUtil.generateToken(userDetails, usuario.getId(), usuario.getRol().name());
             String refreshToken = jwtUtil.generateRefreshToken(userDetails, usuario.getId(), usuario.getRol().name());
 
@@ -74,7 +82,7 @@ public class AuthService {
                 usuario.getEmail(),
                 usuario.getRol().name(),
                 usuario.getEmailVerificado(),
-                LocalDateTime.now()
+                ahora
             );
 
         } catch (BadCredentialsException e) {
@@ -83,6 +91,8 @@ public class AuthService {
         } catch (DisabledException e) {
             log.warn("Intento de login con cuenta deshabilitada: {}", loginRequest.getEmail());
             throw e;
+        } catch (HashContrasenasSaturadoException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error durante la autenticación para email: {}", loginRequest.getEmail(), e);
             throw new RuntimeException("Error interno durante la autenticación");
@@ -123,11 +133,13 @@ public class AuthService {
 
     public AuthResponseDTO refreshToken(String refreshToken) {
         try {
-            if (!jwtUtil.isRefreshToken(refreshToken) || !jwtUtil.validateTokenStructure(refreshToken)) {
-                throw new IllegalArgumentException("Refresh token inválido");
-            }
+            //una sola verificacion de la firma para todo el refresco
+            TokenJwt token = jwtUtil.verificar(refreshToken)
+                .filter(verificado -> verificado.isRefresh() && !verificado.isExpirado())
+                .filter(verificado -> !tokensRevocados.estaRevocado(verificado.id()))
+                .orElseThrow(() -> new IllegalArgumentException("Refresh token inválido"));
 
-            String username = jwtUtil.extractUsername(refreshToken);
+            String username = token.username();
 
             Usuario usuario = usuarioRepository.findByEmailAndActivo(username, true)
                 .orElseThrow(() -> new BadCredentialsException("Usuario no encontrado o inactivo"));
@@ -136,7 +148,7 @@ public class AuthService {
                 throw new DisabledException("Cuenta no verificada. Verifica tu email para renovar sesión.");
             }
 
-            String newAccessToken = jwtUtil.refreshAccessToken(refreshToken);
+            String newAccessToken = jwtUtil.refreshAccessToken(token);
 
             log.debug("Token renovado para usuario: {}", username);
 
@@ -161,8 +173,10 @@ public class AuthService {
 
     @Transactional
     public boolean verificarEmail(String token) {
+        Long usuarioId = usuarioRepository.findByTokenVerificacion(token).map(Usuario::getId).orElse(null);
         int updated = usuarioRepository.verificarEmail(token);
         if (updated > 0) {
+            eventPublisher.publishEvent(new UsuarioCambiadoEvent(usuarioId, UsuarioCambiadoEvent.Tipo.EMAIL_VERIFICADO));
             log.info("Email verificado exitosamente para token: {}", token);
             return true;
         }
@@ -201,12 +215,9 @@ public class AuthService {
         return verificationUrl;
     }
 
-    public void logout(String accessToken) {
-        try {
-            String username = jwtUtil.extractUsername(accessToken);
-            log.info("Usuario desconectado: {}", username);
-        } catch (Exception e) {
-            log.warn("Error al procesar logout: {}", e.getMessage());
-        }
+    //el access token deja de aceptarse aunque no haya caducado
+    public void logout(TokenJwt accessToken) {
+        tokensRevocados.revocar(accessToken);
+        log.info("Usuario desconectado: {}", accessToken.username());
     }
 }
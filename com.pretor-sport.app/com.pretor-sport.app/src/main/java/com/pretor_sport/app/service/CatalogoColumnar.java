@@ -0,0 +1,515 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.repository.ProductoFacetasRepository;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//copia columnar en memoria de los atributos filtrables de productos. cada fila tiene un id interno (doc);
+//los atributos de texto se codifican con diccionario y cada valor tiene un bitmap comprimido con sus docs,
+//precio y peso se guardan en unidades enteras y cada campo de ordenamiento tiene una permutacion ordenada.
+//la usa CatalogoColumnarService; no es thread-safe fuera de los metodos publicos (que toman el lock).
+//el texto se ordena como la collation de la base de datos (ver ordenTexto) para que nombre, marca y modelo
+//salgan en el mismo orden que en las consultas SQL
+final class CatalogoColumnar {
+
+    static final List<String> CAMPOS_ORDEN = List.of(
+        "nombre", "precio", "marca", "modelo", "fechaCreacion", "stock", "genero", "peso"
+    );
+
+    //valor ausente en precio y peso
+    private static final long NULO = Long.MIN_VALUE;
+    private static final BigDecimal MAXIMO_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+    private static final BigDecimal MINIMO_LONG = BigDecimal.valueOf(Long.MIN_VALUE + 1);
+
+    //con pocos resultados se ordenan directamente; con muchos se recorre la permutacion del campo
+    private static final int DIVISOR_ORDEN_DIRECTO = 8;
+
+    //fila tal como la devuelve ProductoRepository.findDatosCatalogo
+    record Fila(Long id, Long categoriaId, String marca, String talla, String color, String material, String genero,
+                BigDecimal precio, BigDecimal peso, int stock, boolean activo, String nombre, String modelo,
+                LocalDateTime fechaCreacion) {
+
+        static Fila de(Object[] datos) {
+            return new Fila(
+                (Long) datos[0], (Long) datos[1], (String) datos[2], (String) datos[3], (String) datos[4],
+                (String) datos[5], datos[6] != null ? ((Enum<?>) datos[6]).name() : null,
+                (BigDecimal) datos[7], (BigDecimal) datos[8], ((Number) datos[9]).intValue(),
+                Boolean.TRUE.equals(datos[10]), (String) datos[11], (String) datos[12], (LocalDateTime) datos[13]
+            );
+        }
+    }
+
+    record Listado(List<Long> productoIds, long total) {
+    }
+
+    //columna codificada con diccionario: un bitmap de docs por valor
+    private static final class Columna {
+        private final Map<Object, Integer> codigos = new HashMap<>();
+        private final List<Object> valores = new ArrayList<>();
+        private final List<RoaringBitmap> docs = new ArrayList<>();
+        private int[] codigoPorDoc = new int[0];
+
+        void asegurarCapacidad(int capacidad) {
+            int anterior = codigoPorDoc.length;
+            if (capacidad > anterior) {
+                codigoPorDoc = Arrays.copyOf(codigoPorDoc, capacidad);
+                Arrays.fill(codigoPorDoc, anterior, capacidad, -1);
+            }
+        }
+
+        void asignar(int doc, Object valor) {
+            int anterior = codigoPorDoc[doc];
+            if (anterior >= 0) {
+                docs.get(anterior).remove(doc);
+            }
+            if (valor == null) {
+                codigoPorDoc[doc] = -1;
+                return;
+            }
+            int codigo = codigos.computeIfAbsent(valor, nuevo -> {
+                valores.add(nuevo);
+                docs.add(new RoaringBitmap());
+                return valores.size() - 1;
+            });
+            docs.get(codigo).add(doc);
+            codigoPorDoc[doc] = codigo;
+        }
+
+        //docs con cualquiera de los valores dados
+        RoaringBitmap conValores(Collection<?> buscados) {
+            RoaringBitmap resultado = new RoaringBitmap();
+            for (Object valor : buscados) {
+                Integer codigo = codigos.get(valor);
+                if (codigo != null) {
+                    resultado.or(docs.get(codigo));
+                }
+            }
+            return resultado;
+        }
+
+        //cantidad de docs de la mascara por cada valor de la columna
+        void contar(String faceta, RoaringBitmap mascara, List<ProductoFacetasRepository.Conteo> conteos) {
+            for (int codigo = 0; codigo < valores.size(); codigo++) {
+                long cantidad = RoaringBitmap.andCardinality(docs.get(codigo), mascara);
+                if (cantidad > 0) {
+                    conteos.add(new ProductoFacetasRepository.Conteo(faceta, valores.get(codigo).toString(), cantidad));
+                }
+            }
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Comparator<String> ordenTexto;
+    private final List<BigDecimal> limitesPrecio;
+
+    private final Map<Long, Integer> docs = new HashMap<>();
+    private int filas;
+    private long[] productoIds = new long[0];
+    private String[] nombres = new String[0];
+    private String[] modelos = new String[0];
+    private String[] marcas = new String[0];
+    private String[] generos = new String[0];
+    private LocalDateTime[] fechasCreacion = new LocalDateTime[0];
+    private long[] preciosCentimos = new long[0];
+    private long[] pesosGramos = new long[0];
+    private int[] stocks = new int[0];
+
+    private final Columna categorias = new Columna();
+    private final Columna columnaMarcas = new Columna();
+    private final Columna tallas = new Columna();
+    private final Columna colores = new Columna();
+    private final Columna materiales = new Columna();
+    private final Columna columnaGeneros = new Columna();
+    private final Columna rangosPrecio = new Columna();
+
+    private final RoaringBitmap disponibles = new RoaringBitmap(); //activo y con stock
+
+    //docs ordenados por cada campo en orden ascendente (nulos al final, como postgresql); DESC la recorre al reves
+    private final Map<String, int[]> permutaciones = new HashMap<>();
+
+    CatalogoColumnar(List<BigDecimal> limitesPrecio, String collation) {
+        this.limitesPrecio = List.copyOf(limitesPrecio);
+        this.ordenTexto = ordenTexto(collation);
+    }
+
+    //ORDEN DE TEXTO EQUIVALENTE A UNA COLLATION DE POSTGRESQL (datcollate o nombre ICU)
+    //C, POSIX y C.UTF-8 comparan bytes UTF-8, que es el orden de code points. las de idioma (es_ES.UTF-8,
+    //es-x-icu) se aproximan con el Collator de java: coinciden en mayusculas, acentos y ñ, pero glibc e ICU
+    //pueden diferir en detalles como espacios y signos de puntuacion
+    static Comparator<String> ordenTexto(String collation) {
+        String idioma = collation != null ? collation.replaceFirst("[.@].*$", "").replaceFirst("-x-icu$", "") : "";
+        if (idioma.isEmpty() || idioma.equals("C") || idioma.equals("POSIX") || idioma.equals("ucs_basic")) {
+            return CatalogoColumnar::compararCodePoints;
+        }
+        Collator collator = Collator.getInstance(Locale.forLanguageTag(idioma.replace('_', '-')));
+        return collator::compare;
+    }
+
+    private static int compararCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    //CARGA INICIAL: agrega las filas sin mantener las permutaciones y las ordena una sola vez al final
+    void cargar(List<Fila> datos) {
+        lock.writeLock().lock();
+        try {
+            datos.forEach(this::escribir);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void ordenar() {
+        lock.writeLock().lock();
+        try {
+            for (String campo : CAMPOS_ORDEN) {
+                Integer[] orden = new Integer[filas];
+                for (int doc = 0; doc < filas; doc++) {
+                    orden[doc] = doc;
+                }
+                Arrays.sort(orden, comparador(campo));
+                permutaciones.put(campo, Arrays.stream(orden).mapToInt(Integer::intValue).toArray());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //ACTUALIZACION INCREMENTAL: reescribe las filas y recoloca sus docs en cada permutacion. se hace una mezcla
+    //por campo para todo el lote, no una copia de la permutacion por fila (una importacion trae cientos)
+    void actualizar(List<Fila> datos) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap cambiados = new RoaringBitmap();
+            datos.forEach(fila -> cambiados.add(escribir(fila)));
+            permutaciones.replaceAll((campo, orden) -> recolocar(orden, cambiados, comparador(campo)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //escribe la fila en su doc (uno nuevo si el producto no estaba) y lo devuelve; no toca las permutaciones
+    private int escribir(Fila fila) {
+        Integer existente = docs.get(fila.id());
+        int doc = existente != null ? existente : filas;
+        if (existente == null) {
+            asegurarCapacidad(filas + 1);
+            filas++;
+            docs.put(fila.id(), doc);
+        }
+
+        productoIds[doc] = fila.id();
+        nombres[doc] = fila.nombre();
+        modelos[doc] = fila.modelo();
+        marcas[doc] = fila.marca();
+        generos[doc] = fila.genero();
+        fechasCreacion[doc] = fila.fechaCreacion();
+        preciosCentimos[doc] = fila.precio() != null ? fila.precio().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact() : NULO;
+        pesosGramos[doc] = fila.peso() != null ? fila.peso().movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact() : NULO;
+        stocks[doc] = fila.stock();
+
+        categorias.asignar(doc, fila.categoriaId());
+        columnaMarcas.asignar(doc, fila.marca());
+        tallas.asignar(doc, fila.talla());
+        colores.asignar(doc, fila.color());
+        materiales.asignar(doc, fila.material());
+        columnaGeneros.asignar(doc, fila.genero());
+        rangosPrecio.asignar(doc, fila.precio() != null ? rangoPrecio(fila.precio()) : null);
+
+        if (fila.activo() && fila.stock() > 0) {
+            disponibles.add(doc);
+        } else {
+            disponibles.remove(doc);
+        }
+        return doc;
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (capacidad <= productoIds.length) {
+            return;
+        }
+        int nueva = Math.max(capacidad, productoIds.length * 2);
+        productoIds = Arrays.copyOf(productoIds, nueva);
+        nombres = Arrays.copyOf(nombres, nueva);
+        modelos = Arrays.copyOf(modelos, nueva);
+        marcas = Arrays.copyOf(marcas, nueva);
+        generos = Arrays.copyOf(generos, nueva);
+        fechasCreacion = Arrays.copyOf(fechasCreacion, nueva);
+        preciosCentimos = Arrays.copyOf(preciosCentimos, nueva);
+        pesosGramos = Arrays.copyOf(pesosGramos, nueva);
+        stocks = Arrays.copyOf(stocks, nueva);
+        for (Columna columna : List.of(categorias, columnaMarcas, tallas, colores, materiales, columnaGeneros, rangosPrecio)) {
+            columna.asegurarCapacidad(nueva);
+        }
+    }
+
+    //quita los docs cambiados de la permutacion y los vuelve a intercalar ya ordenados. la posicion de cada uno se
+    //busca en binario a partir de la del anterior, asi las comparaciones de texto no dependen del catalogo
+    private static int[] recolocar(int[] orden, RoaringBitmap cambiados, Comparator<Integer> comparador) {
+        Integer[] nuevos = new Integer[cambiados.getCardinality()];
+        int k = 0;
+        for (int doc : cambiados) {
+            nuevos[k++] = doc;
+        }
+        Arrays.sort(nuevos, comparador);
+
+        int[] resto = new int[orden.length];
+        int quedan = 0;
+        for (int doc : orden) {
+            if (!cambiados.contains(doc)) {
+                resto[quedan++] = doc;
+            }
+        }
+
+        int[] resultado = new int[quedan + nuevos.length];
+        int n = 0;
+        int desde = 0;
+        for (int doc : nuevos) {
+            int posicion = desde;
+            int hasta = quedan;
+            while (posicion < hasta) {
+                int medio = (posicion + hasta) >>> 1;
+                if (comparador.compare(resto[medio], doc) < 0) {
+                    posicion = medio + 1;
+                } else {
+                    hasta = medio;
+                }
+            }
+            System.arraycopy(resto, desde, resultado, n, posicion - desde);
+            n += posicion - desde;
+            resultado[n++] = doc;
+            desde = posicion;
+        }
+        System.arraycopy(resto, desde, resultado, n, quedan - desde);
+        return resultado;
+    }
+
+    private String rangoPrecio(BigDecimal precio) {
+        int rango = 0;
+        while (rango < limitesPrecio.size() && precio.compareTo(limitesPrecio.get(rango)) >= 0) {
+            rango++;
+        }
+        return String.valueOf(rango);
+    }
+
+    //orden ascendente por campo con nulos al final; desempata por id de producto
+    private Comparator<Integer> comparador(String campo) {
+        Comparator<Integer> porCampo = switch (campo) {
+            case "nombre" -> porTexto(nombres);
+            case "marca" -> porTexto(marcas);
+            case "modelo" -> porTexto(modelos);
+            case "genero" -> porTexto(generos);
+            case "precio" -> porNumero(preciosCentimos);
+            case "peso" -> porNumero(pesosGramos);
+            case "stock" -> Comparator.comparingInt(doc -> stocks[doc]);
+            case "fechaCreacion" -> (a, b) -> Comparator.<LocalDateTime>nullsLast(Comparator.naturalOrder())
+                .compare(fechasCreacion[a], fechasCreacion[b]);
+            default -> throw new IllegalArgumentException("Campo de ordenamiento no soportado: " + campo);
+        };
+        return porCampo.thenComparingLong(doc -> productoIds[doc]);
+    }
+
+    private Comparator<Integer> porTexto(String[] columna) {
+        return (a, b) -> Comparator.nullsLast(ordenTexto).compare(columna[a], columna[b]);
+    }
+
+    private static Comparator<Integer> porNumero(long[] columna) {
+        return (a, b) -> {
+            boolean nuloA = columna[a] == NULO;
+            boolean nuloB = columna[b] == NULO;
+            if (nuloA || nuloB) {
+                return Boolean.compare(nuloA, nuloB);
+            }
+            return Long.compare(columna[a], columna[b]);
+        };
+    }
+
+    //LISTADO: filtra con bitmaps y devuelve los ids de la pagina pedida y el total.
+    //idsBusqueda restringe a los resultados del indice de busqueda; rangoIndice (productoId -> posicion
+    //en su ranking) ordena por relevancia en lugar de por ordenarPor
+    Listado listar(ProductoFilterDTO filtros, String genero, Collection<Long> idsBusqueda, Map<Long, Integer> rangoIndice,
+                   String ordenarPor, boolean descendente, int pagina, int tamano) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap resultado = filtrar(filtros, genero, idsBusqueda);
+            int total = resultado.getCardinality();
+            long desde = (long) pagina * tamano;
+            if (desde >= total) {
+                return new Listado(List.of(), total);
+            }
+
+            List<Long> ids = new ArrayList<>(tamano);
+            if (rangoIndice != null || total <= filas / DIVISOR_ORDEN_DIRECTO) {
+                Comparator<Integer> orden = rangoIndice != null
+                    ? Comparator.comparing(doc -> rangoIndice.get(productoIds[doc]))
+                    : descendente ? comparador(ordenarPor).reversed() : comparador(ordenarPor);
+                Integer[] candidatos = resultado.stream().boxed().toArray(Integer[]::new);
+                Arrays.sort(candidatos, orden);
+                for (long i = desde; i < Math.min(desde + tamano, total); i++) {
+                    ids.add(productoIds[candidatos[(int) i]]);
+                }
+            } else {
+                int[] orden = permutaciones.get(ordenarPor);
+                long vistos = 0;
+                for (int i = 0; i < orden.length && ids.size() < tamano; i++) {
+                    int doc = orden[descendente ? orden.length - 1 - i : i];
+                    if (resultado.contains(doc) && vistos++ >= desde) {
+                        ids.add(productoIds[doc]);
+                    }
+                }
+            }
+            return new Listado(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //FACETAS: cada faceta se cuenta con los demas filtros pero sin el suyo (igual que ProductoFacetasRepository)
+    List<ProductoFacetasRepository.Conteo> contarFacetas(ProductoFilterDTO filtros, String genero, Collection<Long> idsBusqueda) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap comunes = filtrarComunes(filtros, idsBusqueda);
+
+            Map<String, RoaringBitmap> propios = filtrosPropios(filtros, genero, comunes);
+            Map<String, Columna> columnas = new LinkedHashMap<>();
+            columnas.put("categoria", categorias);
+            columnas.put("marca", columnaMarcas);
+            columnas.put("talla", tallas);
+            columnas.put("color", colores);
+            columnas.put("material", materiales);
+            columnas.put("genero", columnaGeneros);
+            columnas.put("precio", rangosPrecio);
+
+            List<ProductoFacetasRepository.Conteo> conteos = new ArrayList<>();
+            for (Map.Entry<String, Columna> columna : columnas.entrySet()) {
+                RoaringBitmap mascara = comunes.clone();
+                propios.forEach((faceta, docs) -> {
+                    if (!faceta.equals(columna.getKey())) {
+                        mascara.and(docs);
+                    }
+                });
+                columna.getValue().contar(columna.getKey(), mascara, conteos);
+            }
+            return conteos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int filas() {
+        return filas;
+    }
+
+    private RoaringBitmap filtrar(ProductoFilterDTO filtros, String genero, Collection<Long> idsBusqueda) {
+        RoaringBitmap resultado = filtrarComunes(filtros, idsBusqueda);
+        filtrosPropios(filtros, genero, resultado).values().forEach(resultado::and);
+        return resultado;
+    }
+
+    //busqueda, disponibilidad y peso
+    private RoaringBitmap filtrarComunes(ProductoFilterDTO filtros, Collection<Long> idsBusqueda) {
+        RoaringBitmap resultado;
+        if (idsBusqueda != null) {
+            resultado = new RoaringBitmap();
+            for (Long id : idsBusqueda) {
+                Integer doc = docs.get(id);
+                if (doc != null) {
+                    resultado.add(doc);
+                }
+            }
+        } else {
+            resultado = RoaringBitmap.bitmapOfRange(0, filas);
+        }
+
+        if (!Boolean.FALSE.equals(filtros.getSoloDisponibles())) {
+            resultado.and(disponibles);
+        }
+        if (filtros.getPesoMin() != null || filtros.getPesoMax() != null) {
+            resultado.and(enRango(resultado, pesosGramos, filtros.getPesoMin(), filtros.getPesoMax(), 3));
+        }
+        return resultado;
+    }
+
+    //filtro propio de cada faceta; el de precio se evalua solo sobre los docs que pasan los filtros comunes
+    private Map<String, RoaringBitmap> filtrosPropios(ProductoFilterDTO filtros, String genero, RoaringBitmap comunes) {
+        Map<String, RoaringBitmap> propios = new LinkedHashMap<>();
+        if (noVacia(filtros.getCategoriaIds())) {
+            propios.put("categoria", categorias.conValores(filtros.getCategoriaIds()));
+        }
+        if (filtros.getMarca() != null && !filtros.getMarca().isEmpty()) {
+            propios.put("marca", columnaMarcas.conValores(List.of(filtros.getMarca())));
+        }
+        if (noVacia(filtros.getTallas())) {
+            propios.put("talla", tallas.conValores(filtros.getTallas()));
+        }
+        if (noVacia(filtros.getColores())) {
+            propios.put("color", colores.conValores(filtros.getColores()));
+        }
+        if (noVacia(filtros.getMateriales())) {
+            propios.put("material", materiales.conValores(filtros.getMateriales()));
+        }
+        if (genero != null) {
+            propios.put("genero", columnaGeneros.conValores(List.of(genero)));
+        }
+        if (filtros.getPrecioMin() != null || filtros.getPrecioMax() != null) {
+            propios.put("precio", enRango(comunes, preciosCentimos, filtros.getPrecioMin(), filtros.getPrecioMax(), 2));
+        }
+        return propios;
+    }
+
+    //docs de candidatos cuyo valor (en unidades enteras con la escala dada) esta en [minimo, maximo]
+    private static RoaringBitmap enRango(RoaringBitmap candidatos, long[] columna, BigDecimal minimo, BigDecimal maximo, int escala) {
+        long desde = minimo != null ? aEntero(minimo, escala, RoundingMode.CEILING) : Long.MIN_VALUE + 1;
+        long hasta = maximo != null ? aEntero(maximo, escala, RoundingMode.FLOOR) : Long.MAX_VALUE;
+        RoaringBitmap resultado = new RoaringBitmap();
+        candidatos.forEach((int doc) -> {
+            long valor = columna[doc];
+            if (valor != NULO && valor >= desde && valor <= hasta) {
+                resultado.add(doc);
+            }
+        });
+        return resultado;
+    }
+
+    //los limites vienen del cliente: fuera del rango de long se recortan en lugar de fallar, como en la consulta SQL.
+    //se comprueba antes de mover la coma para que exponentes enormes no desborden la escala.
+    //Long.MIN_VALUE es NULO, asi que el minimo es Long.MIN_VALUE + 1
+    private static long aEntero(BigDecimal valor, int escala, RoundingMode redondeo) {
+        if (valor.compareTo(MAXIMO_LONG) >= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (valor.compareTo(MINIMO_LONG) <= 0) {
+            return Long.MIN_VALUE + 1;
+        }
+        BigDecimal unidades = valor.movePointRight(escala).setScale(0, redondeo);
+        if (unidades.compareTo(MAXIMO_LONG) >= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (unidades.compareTo(MINIMO_LONG) <= 0) {
+            return Long.MIN_VALUE + 1;
+        }
+        return unidades.longValue();
+    }
+
+    private static boolean noVacia(Collection<?> lista) {
+        return lista != null && !lista.isEmpty();
+    }
+}
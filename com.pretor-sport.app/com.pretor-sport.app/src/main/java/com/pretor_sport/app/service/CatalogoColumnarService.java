@@ -0,0 +1,158 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.ProductoFacetasRepository;
+import com.pretor_sport.app.repository.ProductoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+//motor de filtrado en memoria del catalogo: resuelve el listado y las facetas con bitmaps sin ir a la base de datos.
+//se construye al iniciar, se actualiza con cada ProductoCambiadoEvent y se reconstruye periodicamente para corregir
+//cualquier cambio que no haya pasado por los servicios. mientras no esta listo, ProductoService usa las consultas SQL
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogoColumnarService {
+
+    private static final int TAMANO_LOTE = 1000;
+
+    private final ProductoRepository productoRepository;
+
+    @Value("${app.catalog.columnar.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${app.catalog.facets.price-limits:50,100,200,500}")
+    private List<BigDecimal> limitesPrecio;
+
+    private volatile CatalogoColumnar catalogo;
+
+    //ids modificados mientras se reconstruye el catalogo; se vuelven a aplicar al terminar
+    private Set<Long> pendientes;
+
+    public record ResultadoListado(List<Long> productoIds, long total) {
+    }
+
+    public boolean isListo() {
+        return catalogo != null;
+    }
+
+    //LISTA IDS DE PRODUCTOS FILTRADOS Y ORDENADOS (vacio si el catalogo no esta listo)
+    //idsBusqueda y rangoIndice vienen del indice de busqueda; con rangoIndice se ordena por relevancia
+    public Optional<ResultadoListado> listar(ProductoFilterDTO filtros, String genero, Collection<Long> idsBusqueda,
+                                             Map<Long, Integer> rangoIndice, String ordenarPor, boolean descendente) {
+        CatalogoColumnar actual = catalogo;
+        if (actual == null || (rangoIndice == null && !CatalogoColumnar.CAMPOS_ORDEN.contains(ordenarPor))) {
+            return Optional.empty();
+        }
+        CatalogoColumnar.Listado listado = actual.listar(filtros, genero, idsBusqueda, rangoIndice, ordenarPor,
+            descendente, filtros.getPagina(), filtros.getTamanoPagina());
+        return Optional.of(new ResultadoListado(listado.productoIds(), listado.total()));
+    }
+
+    //CUENTA LAS FACETAS CON LOS MISMOS CRITERIOS QUE ProductoFacetasRepository (vacio si el catalogo no esta listo)
+    public Optional<List<ProductoFacetasRepository.Conteo>> contarFacetas(ProductoFilterDTO filtros, String genero,
+                                                                          Collection<Long> idsBusqueda) {
+        CatalogoColumnar actual = catalogo;
+        if (actual == null) {
+            return Optional.empty();
+        }
+        return Optional.of(actual.contarFacetas(filtros, genero, idsBusqueda));
+    }
+
+    //CONSTRUYE EL CATALOGO EN SEGUNDO PLANO AL ARRANCAR LA APLICACION
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        if (!habilitado) {
+            log.info("Catálogo columnar en memoria deshabilitado");
+            return;
+        }
+        reconstruir();
+    }
+
+    //RECONCILIACION PERIODICA CON LA BASE DE DATOS
+    @Scheduled(fixedDelayString = "${app.catalog.columnar.reconcile-ms:600000}",
+               initialDelayString = "${app.catalog.columnar.reconcile-ms:600000}")
+    public void reconciliar() {
+        if (habilitado && catalogo != null) {
+            reconstruir();
+        }
+    }
+
+    //RECONSTRUYE EL CATALOGO COMPLETO DESDE LA BASE DE DATOS Y LO PUBLICA DE FORMA ATOMICA
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        synchronized (this) {
+            pendientes = new HashSet<>();
+        }
+
+        try {
+            CatalogoColumnar nuevo = new CatalogoColumnar(limitesPrecio, productoRepository.findCollationTexto());
+            Long ultimoId = 0L;
+            List<Object[]> lote;
+            do {
+                lote = productoRepository.findDatosCatalogo(ultimoId, PageRequest.of(0, TAMANO_LOTE));
+                if (!lote.isEmpty()) {
+                    nuevo.cargar(lote.stream().map(CatalogoColumnar.Fila::de).toList());
+                    ultimoId = (Long) lote.get(lote.size() - 1)[0];
+                }
+            } while (lote.size() == TAMANO_LOTE);
+            nuevo.ordenar();
+
+            synchronized (this) {
+                catalogo = nuevo;
+                if (!pendientes.isEmpty()) {
+                    actualizar(pendientes);
+                }
+                pendientes = null;
+            }
+
+            log.info("Catálogo columnar construido: {} productos en {} ms", nuevo.filas(), System.currentTimeMillis() - inicio);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendientes = null;
+            }
+            log.error("No se pudo construir el catálogo columnar, se usarán las consultas SQL: {}", e.getMessage());
+        }
+    }
+
+    //MANTIENE EL CATALOGO AL DIA CON LAS ESCRITURAS DE ProductoService Y VentaService (tras el commit)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        //la imagen no es filtrable
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.IMAGEN) {
+            return;
+        }
+        synchronized (this) {
+            if (pendientes != null) {
+                pendientes.addAll(evento.productoIds());
+            }
+            if (catalogo != null) {
+                actualizar(evento.productoIds());
+            }
+        }
+    }
+
+    private void actualizar(Collection<Long> productoIds) {
+        List<CatalogoColumnar.Fila> filas = productoRepository.findDatosCatalogoByIds(productoIds).stream()
+            .map(CatalogoColumnar.Fila::de)
+            .toList();
+        catalogo.actualizar(filas);
+        log.debug("Catálogo columnar actualizado para productos: {}", productoIds);
+    }
+}
@@ -0,0 +1,61 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//revision del catalogo: contador en memoria que sube con cada cambio de productos, categorias o proveedores.
+//los listados la usan como ETag, asi una peticion condicional se responde con 304 sin consultar la base de datos.
+//las caches de listados y respuestas JSON llevan la revision en la clave, leida antes de calcular el valor: un
+//listado calculado antes de un cambio queda guardado con la revision anterior y nunca se sirve con la nueva
+@Service
+public class CatalogoRevisionService {
+
+    //prefijo SpEL para las claves de @Cacheable: la clave se evalua antes de ejecutar el metodo
+    public static final String PREFIJO_CLAVE = "@catalogoRevisionService.revision() + '|' + ";
+
+    //distingue las revisiones de distintos arranques de la aplicacion
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong revision = new AtomicLong();
+
+    public long revision() {
+        return revision.get();
+    }
+
+    //ETag fuerte de los listados para la revision actual
+    public String etag() {
+        return "\"c" + arranque + "-" + revision.get() + "\"";
+    }
+
+    //AFTER_COMPLETION se ejecuta despues del commit: quien lee la revision nueva ya lee los datos confirmados.
+    //un rollback solo provoca un 200 de más
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        avanzar();
+    }
+
+    //nueva revision para cambios en los listados que no vienen de un producto (p. ej. el ranking de destacados)
+    public void avanzar() {
+        revision.incrementAndGet();
+    }
+
+    //avanza al terminar la transaccion en curso, o ya si no hay ninguna
+    public void avanzarTrasCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            avanzar();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                avanzar();
+            }
+        });
+    }
+}
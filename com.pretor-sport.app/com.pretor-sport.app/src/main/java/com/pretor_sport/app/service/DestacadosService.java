@@ -0,0 +1,214 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.CacheConfig;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.ProductoRepository;
+import com.pretor_sport.app.repository.VentaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//ranking de productos destacados calculado en segundo plano: puntua los productos activos por unidades vendidas
+//en los ultimos dias, estado del stock y antiguedad, y publica la lista ordenada de ids con un intercambio atomico.
+//ProductoService la lee en memoria; si aun no hay ranking o no alcanza para el limite pedido usa la consulta SQL
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DestacadosService {
+
+    private final ProductoRepository productoRepository;
+    private final VentaRepository ventaRepository;
+    private final CatalogoRevisionService catalogoRevision;
+    private final CacheManager cacheManager;
+
+    @Value("${app.catalog.featured.enabled:true}")
+    private boolean habilitado;
+
+    //cantidad de productos que se guardan en el ranking
+    @Value("${app.catalog.featured.size:50}")
+    private int tamano;
+
+    //ventana de ventas que se tiene en cuenta
+    @Value("${app.catalog.featured.sales-days:30}")
+    private int diasVentas;
+
+    //la puntuacion por novedad se reduce a la mitad cada tantos dias
+    @Value("${app.catalog.featured.recency-half-life-days:15}")
+    private double vidaMediaNovedad;
+
+    @Value("${app.catalog.featured.weight.sales:1.0}")
+    private double pesoVentas;
+
+    @Value("${app.catalog.featured.weight.stock:0.3}")
+    private double pesoStock;
+
+    @Value("${app.catalog.featured.weight.recency:0.5}")
+    private double pesoNovedad;
+
+    private final AtomicReference<List<Long>> ranking = new AtomicReference<>();
+
+    //metricas de los refrescos
+    private final AtomicLong refrescos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong duracionTotalMs = new AtomicLong();
+    private final AtomicLong duracionMaximaMs = new AtomicLong();
+    private volatile long ultimaDuracionMs;
+    private volatile LocalDateTime ultimoRefresco;
+
+    private record Candidato(Long id, double puntos, LocalDateTime fechaCreacion) {
+    }
+
+    //IDS DE LOS PRIMEROS 'limite' DESTACADOS (vacio si no hay ranking o no tiene suficientes productos)
+    public Optional<List<Long>> obtener(int limite) {
+        List<Long> actual = ranking.get();
+        if (actual == null || actual.size() < limite) {
+            return Optional.empty();
+        }
+        return Optional.of(actual.subList(0, limite));
+    }
+
+    //CALCULA EL RANKING EN SEGUNDO PLANO AL ARRANCAR LA APLICACION
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void calcularAlIniciar() {
+        if (!habilitado) {
+            log.info("Ranking de destacados deshabilitado, se usarán los productos más recientes");
+            return;
+        }
+        refrescar();
+    }
+
+    //REFRESCO PERIODICO DEL RANKING
+    @Scheduled(fixedDelayString = "${app.catalog.featured.refresh-ms:300000}",
+               initialDelayString = "${app.catalog.featured.refresh-ms:300000}")
+    public void refrescarPeriodicamente() {
+        if (habilitado) {
+            refrescar();
+        }
+    }
+
+    //RECALCULA EL RANKING DESDE LA BASE DE DATOS Y LO PUBLICA DE FORMA ATOMICA
+    public void refrescar() {
+        long inicio = System.currentTimeMillis();
+        try {
+            LocalDateTime ahora = LocalDateTime.now();
+            Map<Long, Long> vendidas = new HashMap<>();
+            for (Object[] fila : ventaRepository.sumarUnidadesVendidasDesde(ahora.minusDays(diasVentas))) {
+                vendidas.put((Long) fila[0], ((Number) fila[1]).longValue());
+            }
+            long maximoVendidas = vendidas.values().stream().mapToLong(Long::longValue).max().orElse(0);
+
+            List<Candidato> candidatos = new ArrayList<>();
+            for (Object[] fila : productoRepository.findDatosDestacados()) {
+                Long id = (Long) fila[0];
+                int stock = (Integer) fila[1];
+                LocalDateTime fechaCreacion = (LocalDateTime) fila[2];
+                double puntos = pesoVentas * puntosVentas(vendidas.getOrDefault(id, 0L), maximoVendidas)
+                    + pesoStock * puntosStock(stock)
+                    + pesoNovedad * puntosNovedad(fechaCreacion, ahora);
+                candidatos.add(new Candidato(id, puntos, fechaCreacion));
+            }
+
+            //a igual puntuacion, el mas reciente primero (el criterio de la consulta SQL)
+            List<Long> nuevo = candidatos.stream()
+                .sorted(Comparator.comparingDouble(Candidato::puntos).reversed()
+                    .thenComparing(Candidato::fechaCreacion, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(Candidato::id, Comparator.reverseOrder()))
+                .limit(tamano)
+                .map(Candidato::id)
+                .toList();
+
+            List<Long> anterior = ranking.getAndSet(nuevo);
+            if (!nuevo.equals(anterior)) {
+                invalidarRespuestas();
+            }
+
+            registrarDuracion(System.currentTimeMillis() - inicio);
+            log.info("Ranking de destacados calculado: {} de {} productos en {} ms",
+                nuevo.size(), candidatos.size(), ultimaDuracionMs);
+        } catch (RuntimeException e) {
+            fallos.incrementAndGet();
+            log.error("No se pudo calcular el ranking de destacados: {}", e.getMessage());
+        }
+    }
+
+    //UN PRODUCTO ELIMINADO SALE DEL RANKING SIN ESPERAR AL SIGUIENTE REFRESCO
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        if (evento.tipo() != ProductoCambiadoEvent.Tipo.ELIMINADO) {
+            return;
+        }
+        ranking.updateAndGet(actual -> actual == null ? null : actual.stream()
+            .filter(id -> !evento.productoIds().contains(id))
+            .toList());
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        List<Long> actual = ranking.get();
+        long total = refrescos.get();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("productos", actual != null ? actual.size() : 0);
+        estadisticas.put("refrescos", total);
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("ultimaDuracionMs", ultimaDuracionMs);
+        estadisticas.put("duracionMaximaMs", duracionMaximaMs.get());
+        estadisticas.put("duracionMediaMs", total > 0 ? duracionTotalMs.get() / total : 0);
+        estadisticas.put("ultimoRefresco", ultimoRefresco);
+        return estadisticas;
+    }
+
+    private static double puntosVentas(long vendidas, long maximoVendidas) {
+        return maximoVendidas > 0 ? (double) vendidas / maximoVendidas : 0;
+    }
+
+    //mismos umbrales que Producto.getEstadoStock
+    private static double puntosStock(int stock) {
+        if (stock == 0) {
+            return 0;
+        }
+        return stock <= 5 ? 0.5 : 1;
+    }
+
+    private double puntosNovedad(LocalDateTime fechaCreacion, LocalDateTime ahora) {
+        if (fechaCreacion == null) {
+            return 0;
+        }
+        double dias = Math.max(0, Duration.between(fechaCreacion, ahora).toMinutes() / 1440.0);
+        return Math.pow(0.5, dias / vidaMediaNovedad);
+    }
+
+    //las respuestas de destacados ya cacheadas (y su ETag) corresponden al ranking anterior
+    private void invalidarRespuestas() {
+        for (String nombre : List.of(CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.RESPUESTAS_JSON)) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+        catalogoRevision.avanzar();
+    }
+
+    private void registrarDuracion(long duracionMs) {
+        ultimaDuracionMs = duracionMs;
+        ultimoRefresco = LocalDateTime.now();
+        refrescos.incrementAndGet();
+        duracionTotalMs.addAndGet(duracionMs);
+        duracionMaximaMs.accumulateAndGet(duracionMs, Math::max);
+    }
+}
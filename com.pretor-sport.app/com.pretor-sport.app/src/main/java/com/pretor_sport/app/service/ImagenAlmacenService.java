@@ -0,0 +1,262 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.ImagenesEnMemoriaResolver;
+import com.pretor_sport.app.repository.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+//almacen de las imagenes subidas direccionado por contenido: cada fichero se llama como el SHA-256 de sus bytes,
+//asi que la misma foto subida para varios productos se guarda una sola vez (y sus variantes se generan una vez).
+//los ficheros que ya no usa ningun producto se borran en un barrido periodico: las referencias se cuentan en la
+//tabla de productos en cada barrido, en lugar de mantener un contador que se pueda desincronizar
+@Service
+@Slf4j
+public class ImagenAlmacenService {
+
+    private static final String PREFIJO_TEMPORAL = ".subida-";
+    private static final String SUFIJO_TEMPORAL = ".tmp";
+
+    private final ProductoRepository productoRepository;
+    private final ImagenesEnMemoriaResolver imagenesEnMemoria;
+    private final String uploadDir;
+    private final String baseUrl;
+    private final Duration gracia;
+
+    //guardar() y el borrado de cada grupo de ficheros se excluyen: una subida que reutiliza un fichero huerfano
+    //lo marca como reciente antes de que el barrido pueda borrarlo
+    private final Object cerrojo = new Object();
+
+    //metricas
+    private final AtomicLong guardadas = new AtomicLong();
+    private final AtomicLong reutilizadas = new AtomicLong();
+    private final AtomicLong bytesAhorrados = new AtomicLong();
+    private final AtomicLong eliminadas = new AtomicLong();
+    private final AtomicLong bytesLiberados = new AtomicLong();
+    private volatile Map<String, Object> ultimoBarrido = Map.of();
+
+    public ImagenAlmacenService(ProductoRepository productoRepository,
+                                ImagenesEnMemoriaResolver imagenesEnMemoria,
+                                @Value("${app.images.upload-dir}") String uploadDir,
+                                @Value("${app.images.base-url}") String baseUrl,
+                                @Value("${app.images.gc.grace-period:1h}") Duration gracia) {
+        this.productoRepository = productoRepository;
+        this.imagenesEnMemoria = imagenesEnMemoria;
+        this.uploadDir = uploadDir;
+        this.baseUrl = baseUrl;
+        this.gracia = gracia;
+    }
+
+    //GUARDA EL CONTENIDO Y DEVUELVE SU URL PUBLICA. el resumen se calcula mientras se copia a un temporal, asi que
+    //el fichero se lee una sola vez; si ya existia uno igual se descarta el temporal y se reutiliza
+    public String guardar(InputStream contenido, String extension) throws IOException {
+        Path carpeta = Paths.get(uploadDir);
+        Files.createDirectories(carpeta);
+
+        Path temporal = Files.createTempFile(carpeta, PREFIJO_TEMPORAL, SUFIJO_TEMPORAL);
+        try {
+            MessageDigest sha256 = sha256();
+            try (InputStream entrada = new DigestInputStream(contenido, sha256)) {
+                Files.copy(entrada, temporal, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String nombre = HexFormat.of().formatHex(sha256.digest()) + extension;
+            Path destino = carpeta.resolve(nombre);
+
+            synchronized (cerrojo) {
+                if (reutilizar(destino)) {
+                    reutilizadas.incrementAndGet();
+                    bytesAhorrados.addAndGet(Files.size(temporal));
+                    log.info("Imagen duplicada, se reutiliza {}", nombre);
+                } else {
+                    Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    guardadas.incrementAndGet();
+                }
+            }
+            return baseUrl + "/" + nombre;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    //BORRA LOS FICHEROS QUE NO USA NINGUN PRODUCTO (con sus variantes) Y LOS TEMPORALES ABANDONADOS.
+    //solo se borra lo que lleva mas del periodo de gracia sin tocarse, para no adelantarse a una subida cuyo
+    //producto todavia no se ha confirmado en la base de datos
+    @Scheduled(fixedDelayString = "${app.images.gc.interval-ms:3600000}",
+               initialDelayString = "${app.images.gc.interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public int barrer() {
+        Path carpeta = Paths.get(uploadDir);
+        if (!Files.isDirectory(carpeta)) {
+            return 0;
+        }
+        long inicio = System.currentTimeMillis();
+
+        //referencias por fichero, contadas en la tabla de productos
+        Map<String, Long> referencias = new HashMap<>();
+        for (Object[] fila : productoRepository.contarReferenciasImagen()) {
+            String nombre = nombreLocal((String) fila[0]);
+            if (nombre != null) {
+                referencias.merge(base(nombre), (Long) fila[1], Long::sum);
+            }
+        }
+
+        Map<String, List<Path>> grupos = new HashMap<>();
+        try (Stream<Path> ficheros = Files.list(carpeta)) {
+            ficheros.filter(Files::isRegularFile)
+                .filter(fichero -> !oculto(fichero.getFileName().toString()))
+                .forEach(fichero -> grupos
+                    .computeIfAbsent(grupo(fichero.getFileName().toString()), clave -> new ArrayList<>())
+                    .add(fichero));
+        } catch (IOException e) {
+            log.error("No se pudo recorrer la carpeta de imágenes {}: {}", carpeta, e.getMessage());
+            return 0;
+        }
+
+        Instant limite = Instant.now().minus(gracia);
+        int borrados = 0;
+        long bytes = 0;
+        for (Map.Entry<String, List<Path>> grupo : grupos.entrySet()) {
+            if (referencias.containsKey(grupo.getKey())) {
+                continue;
+            }
+            synchronized (cerrojo) {
+                //si el original es reciente (o se acaba de reutilizar) el grupo entero se deja para otro barrido
+                if (grupo.getValue().stream().anyMatch(fichero -> esOriginal(fichero) && !anteriorA(fichero, limite))) {
+                    continue;
+                }
+                for (Path fichero : grupo.getValue()) {
+                    if (!anteriorA(fichero, limite)) {
+                        continue;
+                    }
+                    try {
+                        long tamano = Files.size(fichero);
+                        Files.delete(fichero);
+                        imagenesEnMemoria.descartar(fichero.getFileName().toString());
+                        borrados++;
+                        bytes += tamano;
+                    } catch (NoSuchFileException e) {
+                        //ya borrado
+                    } catch (IOException e) {
+                        log.warn("No se pudo borrar la imagen huérfana {}: {}", fichero.getFileName(), e.getMessage());
+                    }
+                }
+            }
+        }
+
+        eliminadas.addAndGet(borrados);
+        bytesLiberados.addAndGet(bytes);
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("fecha", LocalDateTime.now());
+        resumen.put("duracionMs", System.currentTimeMillis() - inicio);
+        resumen.put("imagenesReferenciadas", referencias.size());
+        resumen.put("imagenesCompartidas", referencias.values().stream().filter(cuenta -> cuenta > 1).count());
+        resumen.put("ficherosBorrados", borrados);
+        resumen.put("bytesLiberados", bytes);
+        ultimoBarrido = resumen;
+        if (borrados > 0) {
+            log.info("Barrido de imágenes: {} ficheros huérfanos borrados ({} bytes) en {} ms",
+                borrados, bytes, resumen.get("duracionMs"));
+        }
+        return borrados;
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("guardadas", guardadas.get());
+        estadisticas.put("reutilizadas", reutilizadas.get());
+        estadisticas.put("bytesAhorrados", bytesAhorrados.get());
+        estadisticas.put("eliminadas", eliminadas.get());
+        estadisticas.put("bytesLiberados", bytesLiberados.get());
+        estadisticas.put("ultimoBarrido", ultimoBarrido);
+        return estadisticas;
+    }
+
+    //marca el fichero existente como reciente para que el barrido no lo borre; false si no existe
+    private static boolean reutilizar(Path destino) throws IOException {
+        try {
+            Files.setLastModifiedTime(destino, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    //nombre del fichero de la carpeta de subidas al que apunta la URL, o null si la imagen no se subio aqui
+    private String nombreLocal(String imagenUrl) {
+        if (imagenUrl == null || !imagenUrl.startsWith(baseUrl + "/")) {
+            return null;
+        }
+        String nombre = imagenUrl.substring(baseUrl.length() + 1);
+        return nombre.isEmpty() || nombre.contains("/") ? null : nombre;
+    }
+
+    //clave que agrupa un original con sus variantes: abc.png, abc-thumbnail.webp -> abc. cada temporal va aparte
+    private static String grupo(String nombre) {
+        if (nombre.endsWith(SUFIJO_TEMPORAL)) {
+            return nombre;
+        }
+        String base = base(nombre);
+        for (ImagenVariantesService.Tamano tamano : ImagenVariantesService.Tamano.values()) {
+            if (base.endsWith("-" + tamano.nombre())) {
+                return base.substring(0, base.length() - tamano.nombre().length() - 1);
+            }
+        }
+        return base;
+    }
+
+    //ficheros que no son del almacen (.gitkeep y similares); los temporales tambien empiezan por punto
+    private static boolean oculto(String nombre) {
+        return nombre.startsWith(".") && !nombre.endsWith(SUFIJO_TEMPORAL);
+    }
+
+    private static boolean esOriginal(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        return !nombre.endsWith(SUFIJO_TEMPORAL) && grupo(nombre).equals(base(nombre));
+    }
+
+    private static String base(String nombre) {
+        int punto = nombre.lastIndexOf('.');
+        return punto > 0 ? nombre.substring(0, punto) : nombre;
+    }
+
+    private static boolean anteriorA(Path fichero, Instant limite) {
+        try {
+            return Files.getLastModifiedTime(fichero).toInstant().isBefore(limite);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
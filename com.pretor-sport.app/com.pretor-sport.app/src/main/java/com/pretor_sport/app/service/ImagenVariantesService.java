@@ -0,0 +1,368 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.CacheConfig;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//variantes redimensionadas de las imagenes subidas (thumbnail, medium y large en WebP y JPEG) para que los
+//listados no descarguen el original. se generan en segundo plano despues de la subida, en un pool con cola
+//acotada: el original se decodifica una vez y cada tamaño se obtiene del anterior. los ficheros se guardan junto
+//al original (<nombre>-<tamaño>.<formato>) y el producto solo guarda la lista de variantes listas
+@Service
+@Slf4j
+public class ImagenVariantesService {
+
+    //imagenes mayores no se decodifican (una imagen comprimida de 2MB puede ocupar gigas en memoria)
+    private static final long MAXIMO_PIXELES = 40_000_000L;
+
+    //lado mayor de cada variante; una imagen mas pequeña no se amplia
+    public enum Tamano {
+        THUMBNAIL(200),
+        MEDIUM(600),
+        LARGE(1200);
+
+        private final int lado;
+
+        Tamano(int lado) {
+            this.lado = lado;
+        }
+
+        public String nombre() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final ProductoRepository productoRepository;
+    private final CatalogoRevisionService catalogoRevision;
+    private final CacheManager cacheManager;
+    private final boolean habilitado;
+    private final String uploadDir;
+    private final String baseUrl;
+    private final float calidadJpeg;
+    private final float calidadWebp;
+    private final List<String> formatos;
+    private final ThreadPoolExecutor executor;
+
+    //metricas del procesamiento
+    private final AtomicLong procesadas = new AtomicLong();
+    private final AtomicLong fallidas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong duracionTotalMs = new AtomicLong();
+    private final AtomicLong duracionMaximaMs = new AtomicLong();
+    private volatile long ultimaDuracionMs;
+    private volatile LocalDateTime ultimoProcesamiento;
+
+    public ImagenVariantesService(ProductoRepository productoRepository,
+                                  CatalogoRevisionService catalogoRevision,
+                                  CacheManager cacheManager,
+                                  @Value("${app.images.variants.enabled:true}") boolean habilitado,
+                                  @Value("${app.images.upload-dir}") String uploadDir,
+                                  @Value("${app.images.base-url}") String baseUrl,
+                                  @Value("${app.images.variants.workers:2}") int hilos,
+                                  @Value("${app.images.variants.queue-capacity:100}") int capacidadCola,
+                                  @Value("${app.images.variants.jpeg-quality:0.85}") float calidadJpeg,
+                                  @Value("${app.images.variants.webp-quality:0.80}") float calidadWebp) {
+        this.productoRepository = productoRepository;
+        this.catalogoRevision = catalogoRevision;
+        this.cacheManager = cacheManager;
+        this.habilitado = habilitado;
+        this.uploadDir = uploadDir;
+        this.baseUrl = baseUrl;
+        this.calidadJpeg = calidadJpeg;
+        this.calidadWebp = calidadWebp;
+        this.formatos = webpDisponible() ? List.of("webp", "jpg") : List.of("jpg");
+        //con la cola llena se descarta la tarea: la subida no espera y el producto sigue con el original
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacidadCola), new CustomizableThreadFactory("imagenes-"),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    //ENCOLA LAS VARIANTES DE LA IMAGEN NUEVA DE UN PRODUCTO (tras el commit de la subida)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        if (!habilitado || evento.tipo() != ProductoCambiadoEvent.Tipo.IMAGEN) {
+            return;
+        }
+        for (Long productoId : evento.productoIds()) {
+            try {
+                executor.execute(() -> procesar(productoId));
+            } catch (RejectedExecutionException e) {
+                rechazadas.incrementAndGet();
+                log.warn("Cola de procesamiento de imágenes llena, el producto {} se queda sin variantes", productoId);
+            }
+        }
+    }
+
+    //GENERA LAS VARIANTES DE LA IMAGEN ACTUAL DEL PRODUCTO Y LAS REGISTRA SI LA IMAGEN NO HA CAMBIADO ENTRE TANTO
+    void procesar(Long productoId) {
+        long inicio = System.currentTimeMillis();
+        try {
+            String imagenUrl = productoRepository.findImagenUrlById(productoId).orElse(null);
+            Path original = rutaLocal(imagenUrl);
+            if (original == null || !Files.isRegularFile(original)) {
+                //imagen externa o ya reemplazada
+                return;
+            }
+
+            //las imagenes se guardan por contenido: si la misma foto ya se proceso para otro producto sus
+            //variantes estan en disco y solo hay que registrarlas
+            List<String> variantes = new ArrayList<>();
+            boolean generadas = true;
+            for (Tamano tamano : Tamano.values()) {
+                for (String formato : formatos) {
+                    variantes.add(tamano.nombre() + "." + formato);
+                    generadas &= Files.isRegularFile(original.resolveSibling(
+                        nombreVariante(original.getFileName().toString(), tamano.nombre(), formato)));
+                }
+            }
+
+            if (!generadas) {
+                BufferedImage imagen = leer(original);
+                List<Tamano> deMayorAMenor = new ArrayList<>(List.of(Tamano.values()));
+                Collections.reverse(deMayorAMenor);
+                for (Tamano tamano : deMayorAMenor) {
+                    imagen = redimensionar(imagen, tamano.lado);
+                    for (String formato : formatos) {
+                        String nombre = nombreVariante(original.getFileName().toString(), tamano.nombre(), formato);
+                        escribir(imagen, original.resolveSibling(nombre), formato);
+                    }
+                }
+            }
+
+            if (productoRepository.actualizarImagenVariantes(productoId, imagenUrl, String.join(",", variantes)) > 0) {
+                invalidarCaches(productoId);
+            }
+            procesadas.incrementAndGet();
+            registrarDuracion(System.currentTimeMillis() - inicio);
+            log.info("Variantes de imagen generadas para el producto {} en {} ms: {}", productoId, ultimaDuracionMs, variantes);
+        } catch (IOException | RuntimeException e) {
+            fallidas.incrementAndGet();
+            log.error("No se pudieron generar las variantes de imagen del producto {}: {}", productoId, e.getMessage());
+        }
+    }
+
+    //URLS DE LAS VARIANTES LISTAS POR TAMAÑO Y FORMATO ({"thumbnail": {"webp": ..., "jpg": ...}}), O NULL SI NO HAY
+    public static Map<String, Map<String, String>> urls(String imagenUrl, String variantes) {
+        if (imagenUrl == null || variantes == null || variantes.isBlank()) {
+            return null;
+        }
+        int barra = imagenUrl.lastIndexOf('/');
+        String carpeta = imagenUrl.substring(0, barra + 1);
+        String nombre = imagenUrl.substring(barra + 1);
+
+        Map<String, Map<String, String>> urls = new LinkedHashMap<>();
+        for (String variante : variantes.split(",")) {
+            int punto = variante.indexOf('.');
+            String tamano = variante.substring(0, punto);
+            String formato = variante.substring(punto + 1);
+            urls.computeIfAbsent(tamano, clave -> new LinkedHashMap<>())
+                .put(formato, carpeta + nombreVariante(nombre, tamano, formato));
+        }
+        return urls;
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        long total = procesadas.get();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("formatos", formatos);
+        estadisticas.put("hilos", executor.getMaximumPoolSize());
+        estadisticas.put("activas", executor.getActiveCount());
+        estadisticas.put("enCola", executor.getQueue().size());
+        estadisticas.put("capacidadCola", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        estadisticas.put("procesadas", total);
+        estadisticas.put("fallidas", fallidas.get());
+        estadisticas.put("rechazadas", rechazadas.get());
+        estadisticas.put("ultimaDuracionMs", ultimaDuracionMs);
+        estadisticas.put("duracionMaximaMs", duracionMaximaMs.get());
+        estadisticas.put("duracionMediaMs", total > 0 ? duracionTotalMs.get() / total : 0);
+        estadisticas.put("ultimoProcesamiento", ultimoProcesamiento);
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    //foto.png -> foto-thumbnail.webp
+    private static String nombreVariante(String nombreOriginal, String tamano, String formato) {
+        int punto = nombreOriginal.lastIndexOf('.');
+        String base = punto > 0 ? nombreOriginal.substring(0, punto) : nombreOriginal;
+        return base + "-" + tamano + "." + formato;
+    }
+
+    //fichero de la carpeta de subidas al que apunta la URL, o null si la imagen no se subio aqui
+    private Path rutaLocal(String imagenUrl) {
+        if (imagenUrl == null || !imagenUrl.startsWith(baseUrl + "/")) {
+            return null;
+        }
+        String nombre = imagenUrl.substring(baseUrl.length() + 1);
+        if (nombre.isEmpty() || nombre.contains("/") || nombre.contains("\\") || nombre.contains("..")) {
+            return null;
+        }
+        return Paths.get(uploadDir).resolve(nombre);
+    }
+
+    //decodifica la primera imagen del fichero comprobando antes sus dimensiones
+    private static BufferedImage leer(Path fichero) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(fichero.toFile())) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                throw new IOException("Formato de imagen no soportado: " + fichero.getFileName());
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                long pixeles = (long) lector.getWidth(0) * lector.getHeight(0);
+                if (pixeles > MAXIMO_PIXELES) {
+                    throw new IOException("Imagen demasiado grande para procesar: " + pixeles + " píxeles");
+                }
+                return rgb(lector.read(0));
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    //copia en RGB sobre fondo blanco: JPEG no tiene transparencia y escalar desde RGB es mas rapido
+    private static BufferedImage rgb(BufferedImage imagen) {
+        if (imagen.getType() == BufferedImage.TYPE_INT_RGB) {
+            return imagen;
+        }
+        return escalar(imagen, imagen.getWidth(), imagen.getHeight());
+    }
+
+    //reduce a la mitad mientras se pueda y termina con un escalado bilineal: mas nitido que un unico salto grande
+    private static BufferedImage redimensionar(BufferedImage imagen, int lado) {
+        double escala = Math.min(1.0, (double) lado / Math.max(imagen.getWidth(), imagen.getHeight()));
+        int ancho = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int alto = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+
+        BufferedImage actual = imagen;
+        while (actual.getWidth() / 2 >= ancho && actual.getHeight() / 2 >= alto) {
+            actual = escalar(actual, actual.getWidth() / 2, actual.getHeight() / 2);
+        }
+        if (actual.getWidth() != ancho || actual.getHeight() != alto) {
+            actual = escalar(actual, ancho, alto);
+        }
+        return actual;
+    }
+
+    private static BufferedImage escalar(BufferedImage imagen, int ancho, int alto) {
+        BufferedImage resultado = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D grafico = resultado.createGraphics();
+        try {
+            grafico.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            grafico.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            grafico.drawImage(imagen, 0, 0, ancho, alto, Color.WHITE, null);
+        } finally {
+            grafico.dispose();
+        }
+        return resultado;
+    }
+
+    //se escribe en un temporal y se mueve: nunca se sirve una variante a medio escribir
+    private void escribir(BufferedImage imagen, Path destino, String formato) throws IOException {
+        Path temporal = Files.createTempFile(destino.getParent(), ".variante-", ".tmp");
+        try {
+            try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+                codificar(imagen, salida, formato, "webp".equals(formato) ? calidadWebp : calidadJpeg);
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static void codificar(BufferedImage imagen, ImageOutputStream salida, String formato, float calidad)
+            throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName(formato).next();
+        try {
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (parametros.getCompressionTypes() != null && parametros.getCompressionTypes().length > 1) {
+                //WebP: compresion con perdida (la primera es la sin perdida)
+                parametros.setCompressionType(Arrays.stream(parametros.getCompressionTypes())
+                    .filter(tipo -> tipo.toLowerCase(Locale.ROOT).contains("lossy"))
+                    .findFirst()
+                    .orElse(parametros.getCompressionTypes()[0]));
+            }
+            parametros.setCompressionQuality(calidad);
+            escritor.setOutput(salida);
+            escritor.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+    }
+
+    //el codificador WebP es nativo: si no carga en esta plataforma se generan solo las variantes JPEG
+    private static boolean webpDisponible() {
+        if (!ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+            log.warn("No hay codificador WebP disponible, las variantes de imagen se generarán solo en JPEG");
+            return false;
+        }
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(new ByteArrayOutputStream())) {
+            codificar(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), salida, "webp", 0.8f);
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            log.warn("No se pudo cargar el codificador WebP, las variantes de imagen se generarán solo en JPEG: {}", e.toString());
+            return false;
+        }
+    }
+
+    private void invalidarCaches(Long productoId) {
+        Cache producto = cacheManager.getCache(CacheConfig.PRODUCTO);
+        if (producto != null) {
+            producto.evict(productoId);
+        }
+        for (String nombre : List.of(CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.RESPUESTAS_JSON)) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+        catalogoRevision.avanzar();
+    }
+
+    private void registrarDuracion(long duracionMs) {
+        ultimaDuracionMs = duracionMs;
+        ultimoProcesamiento = LocalDateTime.now();
+        duracionTotalMs.addAndGet(duracionMs);
+        duracionMaximaMs.accumulateAndGet(duracionMs, Math::max);
+    }
+}
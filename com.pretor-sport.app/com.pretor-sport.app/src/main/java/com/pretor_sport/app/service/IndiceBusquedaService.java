@@ -0,0 +1,589 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.ProductoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//indice invertido en memoria para la busqueda de productos: normaliza acentos ("nino" encuentra "NIÑO"),
+//acepta prefijos y errores de escritura, y ordena con BM25. se construye al iniciar y se actualiza
+//con cada ProductoCambiadoEvent; mientras se construye, ProductoService usa la busqueda SQL.
+//memoria medida con 100k productos sinteticos (nombre de 3 palabras, marca, modelo, descripcion de 12 y
+//2 caracteristicas, ~11k terminos distintos): ~32 MB de heap, ~0,3 KB por producto, casi todo en las listas
+//de apariciones. las ediciones lo hacen crecer hasta compact-ratio antes de compactar
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndiceBusquedaService {
+
+    private static final int TAMANO_LOTE = 1000;
+
+    //parametros de BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    //pesos por campo (se suman como frecuencia del termino)
+    private static final float PESO_NOMBRE = 3f;
+    private static final float PESO_MARCA_MODELO = 2f;
+    private static final float PESO_TEXTO = 1f;
+
+    //las coincidencias por prefijo o con errores puntuan menos que las exactas
+    private static final double FACTOR_PREFIJO = 0.8;
+    private static final double FACTOR_ERROR = 0.5;
+    private static final int MAX_EXPANSIONES = 100;
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+        "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los",
+        "o", "para", "por", "se", "sin", "su", "un", "una", "y"
+    );
+
+    private final ProductoRepository productoRepository;
+
+    @Value("${app.search.index.enabled:true}")
+    private boolean habilitado;
+
+    @Value("${app.search.index.max-results:500}")
+    private int maxResultados;
+
+    //fraccion de documentos eliminados a partir de la cual se compacta el indice
+    @Value("${app.search.index.compact-ratio:0.25}")
+    private double fraccionCompactacion;
+
+    private volatile Indice indice;
+
+    //ids modificados mientras se reconstruye el indice; se vuelven a aplicar al terminar
+    private Set<Long> pendientes;
+
+    //ultima lectura pedida para cada producto. las lecturas se hacen fuera del monitor y pueden terminar
+    //desordenadas: solo se aplica la mas reciente, que ya ve los commits de las anteriores
+    private final Map<Long, Long> cargasEnCurso = new HashMap<>();
+    private long cargas;
+
+    public record Resultado(Long productoId, double puntuacion) {
+    }
+
+    public boolean isListo() {
+        return indice != null;
+    }
+
+    //BUSCA PRODUCTOS; DEVUELVE HASTA max-results ORDENADOS POR RELEVANCIA (vacio si el indice no esta listo)
+    public List<Resultado> buscar(String texto, boolean soloActivos) {
+        return buscar(texto, soloActivos, maxResultados);
+    }
+
+    //TODAS LAS COINCIDENCIAS ORDENADAS POR RELEVANCIA, SIN EL LIMITE DE max-results
+    //para usar la busqueda como filtro cuando el listado se ordena por otro campo
+    public List<Resultado> coincidencias(String texto, boolean soloActivos) {
+        return buscar(texto, soloActivos, Integer.MAX_VALUE);
+    }
+
+    //DESCARTA LOS DOCUMENTOS ELIMINADOS SIN VOLVER A LEER LA BASE DE DATOS
+    public void compactar() {
+        Indice actual = indice;
+        if (actual != null) {
+            actual.compactar();
+        }
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        Indice actual = indice;
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("listo", actual != null);
+        if (actual != null) {
+            estadisticas.putAll(actual.estadisticas());
+        }
+        return estadisticas;
+    }
+
+    private List<Resultado> buscar(String texto, boolean soloActivos, int limite) {
+        Indice actual = indice;
+        List<String> consulta = tokenizar(texto).stream().distinct().toList();
+        if (actual == null || consulta.isEmpty()) {
+            return List.of();
+        }
+        return actual.buscar(consulta, soloActivos, limite);
+    }
+
+    //CONSTRUYE EL INDICE EN SEGUNDO PLANO AL ARRANCAR LA APLICACION
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        if (!habilitado) {
+            log.info("Índice de búsqueda en memoria deshabilitado");
+            return;
+        }
+        reconstruir();
+    }
+
+    //RECONSTRUYE EL INDICE COMPLETO DESDE LA BASE DE DATOS Y LO PUBLICA DE FORMA ATOMICA
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        synchronized (this) {
+            pendientes = new HashSet<>();
+        }
+
+        try {
+            Indice nuevo = new Indice(fraccionCompactacion);
+            Long ultimoId = 0L;
+            List<Object[]> lote;
+            do {
+                lote = productoRepository.findDatosBusqueda(ultimoId, PageRequest.of(0, TAMANO_LOTE));
+                if (!lote.isEmpty()) {
+                    nuevo.agregarTodos(cargarDocumentos(lote));
+                    ultimoId = (Long) lote.get(lote.size() - 1)[0];
+                }
+            } while (lote.size() == TAMANO_LOTE);
+
+            synchronized (this) {
+                indice = nuevo;
+                if (!pendientes.isEmpty()) {
+                    actualizar(pendientes);
+                }
+                pendientes = null;
+            }
+
+            log.info("Índice de búsqueda construido: {} productos, {} términos en {} ms",
+                nuevo.documentos(), nuevo.terminos(), System.currentTimeMillis() - inicio);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendientes = null;
+            }
+            log.error("No se pudo construir el índice de búsqueda, se usará la búsqueda SQL: {}", e.getMessage());
+        }
+    }
+
+    //MANTIENE EL INDICE AL DIA CON LAS ESCRITURAS DE ProductoService (tras el commit)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        //el stock y la imagen no forman parte del texto indexado
+        if (evento.tipo() == ProductoCambiadoEvent.Tipo.STOCK || evento.tipo() == ProductoCambiadoEvent.Tipo.IMAGEN) {
+            return;
+        }
+        Set<Long> productoIds = evento.productoIds();
+        long carga;
+        synchronized (this) {
+            if (pendientes != null) {
+                pendientes.addAll(productoIds);
+            }
+            if (indice == null) {
+                return;
+            }
+            carga = registrarCarga(productoIds);
+        }
+
+        //la consulta se hace sin el monitor para que los demas escritores no esperen a la base de datos
+        List<Documento> documentos = null;
+        try {
+            documentos = cargarDocumentos(productoRepository.findDatosBusquedaByIds(productoIds));
+        } finally {
+            synchronized (this) {
+                aplicar(productoIds, documentos, carga);
+            }
+        }
+    }
+
+    //lectura y aplicacion seguidas; solo desde reconstruir, que ya tiene el monitor
+    private void actualizar(Collection<Long> productoIds) {
+        long carga = registrarCarga(productoIds);
+        List<Documento> documentos = null;
+        try {
+            documentos = cargarDocumentos(productoRepository.findDatosBusquedaByIds(productoIds));
+        } finally {
+            aplicar(productoIds, documentos, carga);
+        }
+    }
+
+    private long registrarCarga(Collection<Long> productoIds) {
+        long carga = ++cargas;
+        productoIds.forEach(id -> cargasEnCurso.put(id, carga));
+        return carga;
+    }
+
+    //aplica los productos cuya ultima lectura es esta; los que ya no estan en la base de datos se quitan
+    //del indice. sin documentos (la lectura fallo) solo se liberan las cargas
+    private void aplicar(Collection<Long> productoIds, List<Documento> documentos, long carga) {
+        Set<Long> vigentes = new HashSet<>();
+        for (Long id : productoIds) {
+            if (cargasEnCurso.remove(id, carga)) {
+                vigentes.add(id);
+            }
+        }
+        if (documentos == null || vigentes.isEmpty() || indice == null) {
+            return;
+        }
+
+        List<Documento> aplicables = documentos.stream()
+            .filter(documento -> vigentes.contains(documento.productoId()))
+            .toList();
+        Set<Long> borrados = new HashSet<>(vigentes);
+        documentos.forEach(documento -> borrados.remove(documento.productoId()));
+        indice.agregarTodos(aplicables, borrados);
+        log.debug("Índice de búsqueda actualizado para productos: {}", vigentes);
+    }
+
+    private List<Documento> cargarDocumentos(List<Object[]> filas) {
+        Map<Long, List<String>> caracteristicas = new HashMap<>();
+        List<Long> ids = filas.stream().map(fila -> (Long) fila[0]).toList();
+        if (!ids.isEmpty()) {
+            for (Object[] fila : productoRepository.findCaracteristicasByProductoIds(ids)) {
+                caracteristicas.computeIfAbsent((Long) fila[0], id -> new ArrayList<>()).add((String) fila[1]);
+            }
+        }
+
+        List<Documento> documentos = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            Long id = (Long) fila[0];
+            Map<String, Float> frecuencias = new HashMap<>();
+            sumarFrecuencias(frecuencias, (String) fila[1], PESO_NOMBRE);
+            sumarFrecuencias(frecuencias, (String) fila[2], PESO_MARCA_MODELO);
+            sumarFrecuencias(frecuencias, (String) fila[3], PESO_MARCA_MODELO);
+            sumarFrecuencias(frecuencias, (String) fila[4], PESO_TEXTO);
+            for (String caracteristica : caracteristicas.getOrDefault(id, List.of())) {
+                sumarFrecuencias(frecuencias, caracteristica, PESO_TEXTO);
+            }
+            documentos.add(new Documento(id, Boolean.TRUE.equals(fila[5]), frecuencias));
+        }
+        return documentos;
+    }
+
+    private static void sumarFrecuencias(Map<String, Float> frecuencias, String texto, float peso) {
+        for (String token : tokenizar(texto)) {
+            frecuencias.merge(token, peso, Float::sum);
+        }
+    }
+
+    //minusculas, sin acentos ni signos, sin palabras vacias
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARADORES.split(normalizado)) {
+            if (!token.isEmpty() && !PALABRAS_VACIAS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    //distancia de levenshtein acotada: devuelve maximo + 1 en cuanto se supera el maximo
+    static int distancia(String a, String b, int maximo) {
+        if (Math.abs(a.length() - b.length()) > maximo) {
+            return maximo + 1;
+        }
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int coste = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + coste);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return maximo + 1;
+            }
+            int[] temporal = anterior;
+            anterior = actual;
+            actual = temporal;
+        }
+        return anterior[b.length()];
+    }
+
+    private record Documento(Long productoId, boolean activo, Map<String, Float> frecuencias) {
+    }
+
+    //lista de apariciones de un termino: ids internos de documento y su frecuencia ponderada
+    private static final class Postings {
+        private int[] documentos = new int[2];
+        private float[] frecuencias = new float[2];
+        private int tamano;
+
+        void agregar(int documento, float frecuencia) {
+            if (tamano == documentos.length) {
+                documentos = Arrays.copyOf(documentos, tamano * 2);
+                frecuencias = Arrays.copyOf(frecuencias, tamano * 2);
+            }
+            documentos[tamano] = documento;
+            frecuencias[tamano] = frecuencia;
+            tamano++;
+        }
+
+        //quita las apariciones de documentos eliminados (mapa < 0) y renumera el resto; el orden se mantiene
+        void compactar(int[] mapa) {
+            int vivas = 0;
+            for (int i = 0; i < tamano; i++) {
+                int nuevo = mapa[documentos[i]];
+                if (nuevo >= 0) {
+                    documentos[vivas] = nuevo;
+                    frecuencias[vivas] = frecuencias[i];
+                    vivas++;
+                }
+            }
+            tamano = vivas;
+            if (documentos.length > 2 * Math.max(tamano, 2)) {
+                documentos = Arrays.copyOf(documentos, Math.max(tamano, 2));
+                frecuencias = Arrays.copyOf(frecuencias, Math.max(tamano, 2));
+            }
+        }
+    }
+
+    //estado del indice. los documentos modificados se marcan como eliminados y se agregan con un id
+    //interno nuevo; las entradas eliminadas se descartan al buscar y se quitan al compactar, en cuanto
+    //superan fraccionCompactacion de los documentos
+    private static final class Indice {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TreeMap<String, Postings> postings = new TreeMap<>();
+        private final Map<Long, Integer> internos = new HashMap<>();
+        private long[] productoIds = new long[1024];
+        private float[] longitudes = new float[1024];
+        private final BitSet activos = new BitSet();
+        private final BitSet eliminados = new BitSet();
+        private final double fraccionCompactacion;
+        private int siguiente;
+        private int vivos;
+        private int muertos;
+        private long compactaciones;
+        private double longitudTotal;
+
+        Indice(double fraccionCompactacion) {
+            this.fraccionCompactacion = fraccionCompactacion;
+        }
+
+        void agregarTodos(List<Documento> documentos) {
+            agregarTodos(documentos, Set.of());
+        }
+
+        void agregarTodos(List<Documento> documentos, Collection<Long> borrados) {
+            lock.writeLock().lock();
+            try {
+                borrados.forEach(this::quitar);
+                documentos.forEach(this::agregar);
+                if (muertos > 0 && muertos > siguiente * fraccionCompactacion) {
+                    compactarSinLock();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void compactar() {
+            lock.writeLock().lock();
+            try {
+                if (muertos > 0) {
+                    compactarSinLock();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        //renumera los documentos vivos de forma contigua y reescribe las listas de apariciones
+        private void compactarSinLock() {
+            int[] mapa = new int[siguiente];
+            int nuevo = 0;
+            for (int interno = 0; interno < siguiente; interno++) {
+                if (eliminados.get(interno)) {
+                    mapa[interno] = -1;
+                    continue;
+                }
+                mapa[interno] = nuevo;
+                productoIds[nuevo] = productoIds[interno];
+                longitudes[nuevo] = longitudes[interno];
+                activos.set(nuevo, activos.get(interno));
+                nuevo++;
+            }
+            activos.clear(nuevo, siguiente);
+
+            Iterator<Postings> listas = postings.values().iterator();
+            while (listas.hasNext()) {
+                Postings lista = listas.next();
+                lista.compactar(mapa);
+                if (lista.tamano == 0) {
+                    listas.remove();
+                }
+            }
+            internos.replaceAll((productoId, interno) -> mapa[interno]);
+            eliminados.clear();
+            log.debug("Índice de búsqueda compactado: {} documentos eliminados descartados", muertos);
+            siguiente = nuevo;
+            muertos = 0;
+            compactaciones++;
+        }
+
+        private void quitar(Long productoId) {
+            Integer anterior = internos.remove(productoId);
+            if (anterior != null) {
+                eliminados.set(anterior);
+                longitudTotal -= longitudes[anterior];
+                vivos--;
+                muertos++;
+            }
+        }
+
+        private void agregar(Documento documento) {
+            quitar(documento.productoId());
+
+            int interno = siguiente++;
+            if (interno == productoIds.length) {
+                productoIds = Arrays.copyOf(productoIds, interno * 2);
+                longitudes = Arrays.copyOf(longitudes, interno * 2);
+            }
+
+            float longitud = 0;
+            for (Map.Entry<String, Float> entrada : documento.frecuencias().entrySet()) {
+                postings.computeIfAbsent(entrada.getKey(), termino -> new Postings()).agregar(interno, entrada.getValue());
+                longitud += entrada.getValue();
+            }
+
+            productoIds[interno] = documento.productoId();
+            longitudes[interno] = longitud;
+            activos.set(interno, documento.activo());
+            internos.put(documento.productoId(), interno);
+            longitudTotal += longitud;
+            vivos++;
+        }
+
+        //todas las palabras de la consulta deben coincidir (exacta, por prefijo o con errores)
+        List<Resultado> buscar(List<String> consulta, boolean soloActivos, int limite) {
+            lock.readLock().lock();
+            try {
+                Map<Integer, Double> acumulado = null;
+                for (String termino : consulta) {
+                    Map<Integer, Double> puntuaciones = puntuarTermino(termino, soloActivos);
+                    if (acumulado == null) {
+                        acumulado = puntuaciones;
+                    } else {
+                        acumulado.keySet().retainAll(puntuaciones.keySet());
+                        acumulado.replaceAll((documento, puntuacion) -> puntuacion + puntuaciones.get(documento));
+                    }
+                    if (acumulado.isEmpty()) {
+                        return List.of();
+                    }
+                }
+
+                return acumulado.entrySet().stream()
+                    .map(entrada -> new Resultado(productoIds[entrada.getKey()], entrada.getValue()))
+                    .sorted(Comparator.comparingDouble(Resultado::puntuacion).reversed()
+                        .thenComparing(Resultado::productoId))
+                    .limit(limite)
+                    .toList();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Map<Integer, Double> puntuarTermino(String termino, boolean soloActivos) {
+            Map<Integer, Double> puntuaciones = new HashMap<>();
+
+            Postings exacto = postings.get(termino);
+            if (exacto != null) {
+                puntuar(exacto, 1.0, soloActivos, puntuaciones);
+            }
+
+            int expansiones = 0;
+            for (Postings prefijo : postings.subMap(termino, false, termino + Character.MAX_VALUE, false).values()) {
+                if (++expansiones > MAX_EXPANSIONES) {
+                    break;
+                }
+                puntuar(prefijo, FACTOR_PREFIJO, soloActivos, puntuaciones);
+            }
+
+            //solo se toleran errores si no hubo coincidencias; se comparan terminos con la misma inicial
+            if (puntuaciones.isEmpty() && termino.length() >= 4) {
+                int maximo = termino.length() >= 8 ? 2 : 1;
+                String inicial = termino.substring(0, 1);
+                expansiones = 0;
+                for (Map.Entry<String, Postings> entrada
+                        : postings.subMap(inicial, true, inicial + Character.MAX_VALUE, false).entrySet()) {
+                    if (distancia(termino, entrada.getKey(), maximo) <= maximo) {
+                        puntuar(entrada.getValue(), FACTOR_ERROR, soloActivos, puntuaciones);
+                        if (++expansiones >= MAX_EXPANSIONES) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return puntuaciones;
+        }
+
+        //BM25 del termino para cada documento; si un documento coincide por varias expansiones se queda la mejor
+        private void puntuar(Postings lista, double factor, boolean soloActivos, Map<Integer, Double> puntuaciones) {
+            int frecuenciaDocumental = muertos > 0 ? vivas(lista) : lista.tamano;
+            if (frecuenciaDocumental == 0) {
+                return;
+            }
+            double idf = Math.log(1 + (vivos - frecuenciaDocumental + 0.5) / (frecuenciaDocumental + 0.5));
+            double longitudMedia = vivos > 0 ? longitudTotal / vivos : 1;
+            for (int i = 0; i < lista.tamano; i++) {
+                int documento = lista.documentos[i];
+                if (eliminados.get(documento) || (soloActivos && !activos.get(documento))) {
+                    continue;
+                }
+                double frecuencia = lista.frecuencias[i];
+                double normalizacion = K1 * (1 - B + B * longitudes[documento] / longitudMedia);
+                double puntuacion = factor * idf * frecuencia * (K1 + 1) / (frecuencia + normalizacion);
+                puntuaciones.merge(documento, puntuacion, Math::max);
+            }
+        }
+
+        //apariciones en documentos no eliminados: el idf no debe cambiar porque un producto se edite
+        private int vivas(Postings lista) {
+            int vivas = 0;
+            for (int i = 0; i < lista.tamano; i++) {
+                if (!eliminados.get(lista.documentos[i])) {
+                    vivas++;
+                }
+            }
+            return vivas;
+        }
+
+        Map<String, Object> estadisticas() {
+            lock.readLock().lock();
+            try {
+                return Map.of(
+                    "documentos", vivos,
+                    "eliminados", muertos,
+                    "terminos", postings.size(),
+                    "compactaciones", compactaciones
+                );
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int documentos() {
+            return vivos;
+        }
+
+        int terminos() {
+            return postings.size();
+        }
+    }
+}
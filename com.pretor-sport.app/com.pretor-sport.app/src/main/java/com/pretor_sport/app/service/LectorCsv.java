@@ -0,0 +1,74 @@
+package com.pretor_sport.app.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+//lector CSV (RFC 4180) registro a registro, sin cargar el archivo: admite comillas dobles y, dentro de ellas,
+//separadores, saltos de linea y comillas escapadas ("")
+class LectorCsv {
+
+    //un campo mayor indica casi siempre unas comillas sin cerrar; se corta para no leer todo el archivo en memoria
+    private static final int MAXIMO_CAMPO = 10_000;
+
+    private final Reader entrada;
+    private long linea = 1;
+    private long lineaRegistro;
+
+    LectorCsv(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    //linea en la que empieza el ultimo registro leido
+    long lineaRegistro() {
+        return lineaRegistro;
+    }
+
+    //campos del siguiente registro, o null al final de la entrada
+    List<String> siguiente() throws IOException {
+        int c = entrada.read();
+        if (c == -1) {
+            return null;
+        }
+        lineaRegistro = linea;
+
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        while (c != -1) {
+            char caracter = (char) c;
+            if (entreComillas) {
+                if (caracter == '"') {
+                    c = entrada.read();
+                    if (c != '"') {
+                        entreComillas = false;
+                        continue;
+                    }
+                } else if (caracter == '\n') {
+                    linea++;
+                }
+                campo.append(caracter);
+            } else if (caracter == '"' && campo.isEmpty()) {
+                entreComillas = true;
+            } else if (caracter == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (caracter == '\n') {
+                linea++;
+                campos.add(campo.toString());
+                return campos;
+            } else if (caracter != '\r') {
+                campo.append(caracter);
+            }
+
+            if (campo.length() > MAXIMO_CAMPO) {
+                throw new IllegalArgumentException("Campo de más de " + MAXIMO_CAMPO +
+                    " caracteres en la línea " + lineaRegistro + " (¿comillas sin cerrar?)");
+            }
+            c = entrada.read();
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+}
@@ -0,0 +1,140 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.model.Producto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+//posicion de la ultima fila entregada en la paginacion por cursor: campo y direccion del orden,
+//valor del campo e id de esa fila. para "relevancia" el valor es la posicion en el ranking del indice en memoria
+//(id 0) o la relevancia de texto completo de la ultima fila (con su id).
+//viaja al cliente codificado en base64 url y el cliente lo devuelve tal cual
+public record ProductoCursor(String campo, boolean descendente, String valor, Long id) {
+
+    private static final String NULO = "~";
+    private static final String VALOR = "=";
+
+    //tope de la posicion en el ranking del indice, que tiene como mucho max-results entradas
+    private static final int MAXIMA_POSICION = 10_000;
+
+    //CURSOR QUE APUNTA DESPUES DEL PRODUCTO DADO
+    public static ProductoCursor despuesDe(Producto producto, String campo, boolean descendente) {
+        Object valor = switch (campo) {
+            case "nombre" -> producto.getNombre();
+            case "precio" -> producto.getPrecio();
+            case "marca" -> producto.getMarca();
+            case "modelo" -> producto.getModelo();
+            case "fechaCreacion" -> producto.getFechaCreacion();
+            case "stock" -> producto.getStock();
+            case "genero" -> producto.getGenero() != null ? producto.getGenero().name() : null;
+            case "peso" -> producto.getPeso();
+            case "popularidad" -> producto.getPopularidad();
+            default -> throw new IllegalArgumentException("Campo de ordenamiento no soportado por cursor: " + campo);
+        };
+        String texto = valor instanceof BigDecimal numero ? numero.toPlainString() : valor != null ? valor.toString() : null;
+        return new ProductoCursor(campo, descendente, texto, producto.getId());
+    }
+
+    //CURSOR QUE APUNTA A UNA POSICION DEL RANKING DE RELEVANCIA
+    public static ProductoCursor enPosicion(int posicion) {
+        return new ProductoCursor("relevancia", false, String.valueOf(posicion), 0L);
+    }
+
+    //CURSOR QUE APUNTA DESPUES DE LA FILA CON ESA RELEVANCIA DE TEXTO COMPLETO
+    //ts_rank_cd devuelve un real: se guarda como float para volver a compararlo exactamente con la columna
+    public static ProductoCursor despuesDeRango(double rango, Long id) {
+        return new ProductoCursor("relevancia", false, Float.toString((float) rango), id);
+    }
+
+    public String codificar() {
+        String texto = campo + ":" + (descendente ? "desc" : "asc") + ":" + id + ":" +
+            (valor == null ? NULO : VALOR + valor);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //decodifica el cursor recibido y comprueba que corresponde al mismo orden de la consulta
+    public static ProductoCursor decodificar(String cursor, String campo, boolean descendente) {
+        ProductoCursor decodificado;
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split(":", 4);
+            String valor = partes[3].equals(NULO) ? null : partes[3].substring(VALOR.length());
+            decodificado = new ProductoCursor(partes[0], "desc".equals(partes[1]), valor, Long.valueOf(partes[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+
+        boolean mismoOrden = decodificado.campo().equals(campo)
+            && ("relevancia".equals(campo) || decodificado.descendente() == descendente);
+        if (!mismoOrden) {
+            throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+        }
+        if ("relevancia".equals(campo)) {
+            if (decodificado.esPosicion()) {
+                decodificado.validarPosicion();
+            } else {
+                decodificado.validarRango();
+            }
+        }
+        return decodificado;
+    }
+
+    //true si apunta a una posicion del ranking del indice y no a una relevancia de texto completo
+    public boolean esPosicion() {
+        return id != null && id == 0L;
+    }
+
+    public int posicion() {
+        return Integer.parseInt(valor);
+    }
+
+    public double rango() {
+        return Float.parseFloat(valor);
+    }
+
+    //la posicion llega del cliente: debe ser un entero entre 0 y MAXIMA_POSICION
+    private void validarPosicion() {
+        int posicion;
+        try {
+            posicion = posicion();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+        if (posicion < 0 || posicion > MAXIMA_POSICION) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+    }
+
+    private void validarRango() {
+        double rango;
+        try {
+            rango = rango();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+        if (!Double.isFinite(rango) || rango < 0 || id < 0) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+    }
+
+    //valor del campo con el tipo de la columna, para comparar en la consulta
+    public Comparable<?> valorTipado() {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return switch (campo) {
+                case "precio", "peso" -> new BigDecimal(valor);
+                case "fechaCreacion" -> LocalDateTime.parse(valor);
+                case "stock" -> Integer.valueOf(valor);
+                case "popularidad" -> Double.valueOf(valor);
+                case "genero" -> Producto.Genero.valueOf(valor);
+                default -> valor;
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor no válido");
+        }
+    }
+}
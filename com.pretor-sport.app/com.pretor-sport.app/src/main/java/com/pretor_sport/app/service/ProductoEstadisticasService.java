@@ -0,0 +1,159 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.ProductoEstadisticasRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//estadisticas del inventario para GET /productos/estadisticas. se sirven desde una instantanea en memoria: los
+//cambios de productos (altas, ediciones, ventas, importaciones) solo la marcan como pendiente y una tarea
+//periodica la recalcula con una consulta, asi que muchos empleados consultando el panel no repiten la agregacion
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductoEstadisticasService {
+
+    private final ProductoEstadisticasRepository estadisticasRepository;
+
+    @Value("${app.ecommerce.inventory.low-stock-threshold:5}")
+    private int umbralStockBajo;
+
+    //mismo limite que Producto.getEstadoStock() para STOCK_MEDIO
+    @Value("${app.ecommerce.inventory.medium-stock-threshold:20}")
+    private int umbralStockMedio;
+
+    //antiguedad maxima de la instantanea aunque no haya cambios (p. ej. cambios hechos directamente en la base)
+    @Value("${app.catalog.stats.refresh-ms:300000}")
+    private long refrescoMs;
+
+    private final AtomicReference<Map<String, Object>> instantanea = new AtomicReference<>();
+    private final AtomicBoolean pendiente = new AtomicBoolean();
+    private volatile long ultimoRefrescoMs;
+
+    //metricas de los refrescos
+    private final AtomicLong refrescos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private volatile long ultimaDuracionMs;
+
+    //ESTADISTICAS ACTUALES. solo la primera consulta (sin instantanea) espera a la base de datos
+    public Map<String, Object> obtener() {
+        Map<String, Object> actual = instantanea.get();
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = instantanea.get();
+            return actual != null ? actual : refrescar();
+        }
+    }
+
+    //MARCA LA INSTANTANEA COMO DESACTUALIZADA (tras el commit del cambio)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        if (evento.tipo() != ProductoCambiadoEvent.Tipo.IMAGEN) {
+            pendiente.set(true);
+        }
+    }
+
+    //RECALCULA SI HUBO CAMBIOS O SI LA INSTANTANEA ES DEMASIADO ANTIGUA. los cambios seguidos (una importacion,
+    //varias ventas) se agrupan en un solo recalculo por intervalo
+    @Scheduled(fixedDelayString = "${app.catalog.stats.check-ms:5000}",
+               initialDelayString = "${app.catalog.stats.check-ms:5000}")
+    public void refrescarSiHaCambiado() {
+        if (instantanea.get() == null) {
+            return;
+        }
+        boolean caducada = System.currentTimeMillis() - ultimoRefrescoMs >= refrescoMs;
+        if (pendiente.getAndSet(false) || caducada) {
+            synchronized (this) {
+                refrescar();
+            }
+        }
+    }
+
+    //EJECUTA LA AGREGACION Y PUBLICA LA NUEVA INSTANTANEA
+    Map<String, Object> refrescar() {
+        long inicio = System.currentTimeMillis();
+        try {
+            Map<String, Object> nueva = construir(estadisticasRepository.agregar(umbralStockBajo, umbralStockMedio));
+            instantanea.set(nueva);
+            ultimoRefrescoMs = inicio;
+            ultimaDuracionMs = System.currentTimeMillis() - inicio;
+            refrescos.incrementAndGet();
+            log.debug("Estadísticas de productos recalculadas en {} ms", ultimaDuracionMs);
+            return nueva;
+        } catch (RuntimeException e) {
+            fallos.incrementAndGet();
+            //se vuelve a intentar en la siguiente comprobacion
+            pendiente.set(true);
+            log.error("No se pudieron recalcular las estadísticas de productos: {}", e.getMessage());
+            Map<String, Object> anterior = instantanea.get();
+            if (anterior == null) {
+                throw e;
+            }
+            return anterior;
+        }
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("refrescos", refrescos.get());
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("pendiente", pendiente.get());
+        estadisticas.put("ultimaDuracionMs", ultimaDuracionMs);
+        Map<String, Object> actual = instantanea.get();
+        estadisticas.put("ultimoRefresco", actual != null ? actual.get("actualizadoEn") : null);
+        return estadisticas;
+    }
+
+    private Map<String, Object> construir(List<ProductoEstadisticasRepository.Agregado> agregados) {
+        ProductoEstadisticasRepository.Agregado total = null;
+        List<Map<String, Object>> porCategoria = new ArrayList<>();
+        for (ProductoEstadisticasRepository.Agregado agregado : agregados) {
+            if (agregado.total()) {
+                total = agregado;
+                continue;
+            }
+            Map<String, Object> categoria = new LinkedHashMap<>();
+            categoria.put("categoriaId", agregado.categoriaId());
+            categoria.put("categoria", agregado.categoria());
+            categoria.put("productos", agregado.productos());
+            categoria.put("productosActivos", agregado.activos());
+            categoria.put("productosSinStock", agregado.sinStock());
+            categoria.put("productosConStockBajo", agregado.stockBajo());
+            categoria.put("valorInventario", agregado.valorInventario());
+            porCategoria.add(categoria);
+        }
+        porCategoria.sort(Comparator.comparing((Map<String, Object> categoria) -> (Long) categoria.get("productos"))
+            .reversed());
+
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("totalProductos", total != null ? total.productos() : 0L);
+        estadisticas.put("productosActivos", total != null ? total.activos() : 0L);
+        estadisticas.put("productosSinStock", total != null ? total.sinStock() : 0L);
+        estadisticas.put("productosConStockBajo", total != null ? total.stockBajo() : 0L);
+        estadisticas.put("productosConStockMedio", total != null ? total.stockMedio() : 0L);
+        estadisticas.put("productosConStockAlto", total != null ? total.stockAlto() : 0L);
+        estadisticas.put("valorInventario", total != null ? total.valorInventario() : BigDecimal.ZERO);
+        estadisticas.put("categoriasConProductos", porCategoria.stream()
+            .filter(categoria -> categoria.get("categoriaId") != null)
+            .count());
+        estadisticas.put("productosPorCategoria", porCategoria);
+        estadisticas.put("umbralStockBajo", umbralStockBajo);
+        estadisticas.put("umbralStockMedio", umbralStockMedio);
+        estadisticas.put("actualizadoEn", LocalDateTime.now());
+        return Collections.unmodifiableMap(estadisticas);
+    }
+}
@@ -0,0 +1,115 @@
+package com.pretor_sport.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretor_sport.app.repository.ProductoExportacionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+//exportacion del catalogo completo en CSV o NDJSON. las filas se escriben en la salida segun llegan del cursor
+//de ProductoExportacionRepository, sin paginar, contar ni cargar entidades
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductoExportacionService {
+
+    //misma cabecera que acepta POST /productos/import (las caracteristicas separadas por '|')
+    private static final List<String> CABECERA = List.of(
+        "id", "nombre", "descripcion", "precio", "stock", "imagen_url", "marca", "modelo", "talla", "color",
+        "genero", "material", "peso", "activo", "categoria_id", "categoria", "proveedor_id", "proveedor",
+        "caracteristicas", "fecha_creacion", "fecha_actualizacion"
+    );
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final ProductoExportacionRepository exportacionRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int tamanoFetch;
+
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+
+    //ESCRIBE TODOS LOS PRODUCTOS EN LA SALIDA Y DEVUELVE CUANTOS SE EXPORTARON. la transaccion es necesaria para
+    //que el driver de postgresql use el cursor en lugar de traer todo el resultado de una vez
+    @Transactional(readOnly = true)
+    public long exportar(OutputStream salida, Formato formato) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        long[] filas = {0};
+
+        if (formato == Formato.CSV) {
+            escritor.write(String.join(",", CABECERA));
+            escritor.write('\n');
+        }
+        try {
+            exportacionRepository.recorrer(tamanoFetch, fila -> {
+                try {
+                    if (formato == Formato.CSV) {
+                        escribirCsv(escritor, fila);
+                    } else {
+                        escritor.write(objectMapper.writeValueAsString(fila));
+                        escritor.write('\n');
+                    }
+                    filas[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            //normalmente el cliente ha cerrado la conexion
+            log.warn("Exportación de productos ({}) interrumpida tras {} filas: {}", formato, filas[0], e.getMessage());
+            throw e.getCause();
+        }
+        escritor.flush();
+
+        long duracionMs = System.currentTimeMillis() - inicio;
+        log.info("Exportación de productos ({}): {} filas en {} ms ({} filas/s)",
+            formato, filas[0], duracionMs, filas[0] * 1000 / Math.max(duracionMs, 1));
+        return filas[0];
+    }
+
+    private static void escribirCsv(Writer escritor, ProductoExportacionRepository.Fila fila) throws IOException {
+        List<Object> valores = List.of(
+            fila.id(), texto(fila.nombre()), texto(fila.descripcion()), texto(fila.precio()), texto(fila.stock()),
+            texto(fila.imagenUrl()), texto(fila.marca()), texto(fila.modelo()), texto(fila.talla()), texto(fila.color()),
+            texto(fila.genero()), texto(fila.material()), texto(fila.peso()), texto(fila.activo()),
+            texto(fila.categoriaId()), texto(fila.categoria()), texto(fila.proveedorId()), texto(fila.proveedor()),
+            fila.caracteristicas() != null ? String.join("|", fila.caracteristicas()) : "",
+            texto(fila.fechaCreacion()), texto(fila.fechaActualizacion())
+        );
+        for (int i = 0; i < valores.size(); i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            escritor.write(campoCsv(valores.get(i).toString()));
+        }
+        escritor.write('\n');
+    }
+
+    private static String texto(Object valor) {
+        return valor != null ? valor.toString() : "";
+    }
+
+    //entre comillas (y con las comillas duplicadas) si el valor contiene separadores, comillas o saltos de linea
+    static String campoCsv(String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
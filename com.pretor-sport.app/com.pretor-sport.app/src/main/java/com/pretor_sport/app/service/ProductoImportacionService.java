@@ -0,0 +1,338 @@
+package com.pretor_sport.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretor_sport.app.config.BusquedaTextoInitializer;
+import com.pretor_sport.app.config.CacheConfig;
+import com.pretor_sport.app.dto.request.ProductoRequestDTO;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.repository.CategoriaRepository;
+import com.pretor_sport.app.repository.ProductoImportacionRepository;
+import com.pretor_sport.app.repository.ProveedorRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+//importacion masiva de productos desde CSV o NDJSON. la entrada se lee fila a fila y se guarda por lotes
+//(app.import.chunk-size, cada lote en su transaccion) con ProductoImportacionRepository, asi la memoria no
+//depende del tamaño del archivo. categorias y proveedores se cargan una vez al empezar; cada fila se valida
+//como en POST /productos/add y las que fallan se informan sin detener la importacion
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductoImportacionService {
+
+    //errores que se detallan en el informe; a partir de ahi solo se cuentan
+    private static final int MAXIMO_ERRORES = 1000;
+
+    //longitud maxima de una linea NDJSON; el resto de una linea mas larga se descarta sin guardarlo en memoria
+    private static final int MAXIMO_LINEA = 100_000;
+
+    private static final TypeReference<Map<String, Object>> TIPO_FILA = new TypeReference<>() {
+    };
+
+    private final ProductoImportacionRepository importacionRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final ProveedorRepository proveedorRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
+    private final BusquedaTextoInitializer busquedaTexto;
+
+    @Value("${app.import.chunk-size:500}")
+    private int tamanoLote;
+
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+
+    //fila es la linea del archivo en la que empieza el registro
+    public record ErrorFila(long fila, String mensaje) {
+    }
+
+    public record ResultadoImportacion(
+        long filas,
+        long importados,
+        long errores,
+        List<ErrorFila> detalleErrores,
+        long duracionMs,
+        long filasPorSegundo
+    ) {
+    }
+
+    //IMPORTA LOS PRODUCTOS DE LA ENTRADA. los campos son los de ProductoRequestDTO en snake_case (categoria_id,
+    //imagen_url...); en lugar de los ids se puede indicar el nombre en "categoria" y "proveedor". en CSV la
+    //primera fila es la cabecera y las caracteristicas se separan con '|'
+    public ResultadoImportacion importar(InputStream entrada, Formato formato) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Importacion importacion = new Importacion(
+            Referencias.de(categoriaRepository.findIdsYNombres()),
+            Referencias.de(proveedorRepository.findIdsYNombres())
+        );
+
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        try {
+            if (formato == Formato.CSV) {
+                leerCsv(lector, importacion);
+            } else {
+                leerNdjson(lector, importacion);
+            }
+        } catch (IllegalArgumentException e) {
+            //entrada ilegible a partir de este punto: se guarda lo leido hasta ahora
+            importacion.error(0, e.getMessage());
+        }
+        importacion.guardarLote();
+
+        long duracionMs = System.currentTimeMillis() - inicio;
+        long filasPorSegundo = importacion.filas * 1000 / Math.max(duracionMs, 1);
+        log.info("Importación de productos ({}): {} filas, {} importadas, {} con errores en {} ms ({} filas/s)",
+            formato, importacion.filas, importacion.importados, importacion.errores, duracionMs, filasPorSegundo);
+        return new ResultadoImportacion(importacion.filas, importacion.importados, importacion.errores,
+            importacion.detalleErrores, duracionMs, filasPorSegundo);
+    }
+
+    private void leerCsv(BufferedReader lector, Importacion importacion) throws IOException {
+        LectorCsv csv = new LectorCsv(lector);
+        List<String> cabecera = csv.siguiente();
+        if (cabecera == null) {
+            return;
+        }
+        cabecera = cabecera.stream().map(campo -> campo.trim().toLowerCase(Locale.ROOT)).toList();
+
+        List<String> registro;
+        while ((registro = csv.siguiente()) != null) {
+            if (registro.stream().allMatch(String::isBlank)) {
+                continue;
+            }
+            Map<String, Object> valores = new HashMap<>();
+            for (int i = 0; i < Math.min(cabecera.size(), registro.size()); i++) {
+                String valor = registro.get(i).trim();
+                if (!valor.isEmpty()) {
+                    valores.put(cabecera.get(i), valor);
+                }
+            }
+            if (valores.get("caracteristicas") instanceof String caracteristicas) {
+                valores.put("caracteristicas", Arrays.stream(caracteristicas.split("\\|"))
+                    .map(String::trim)
+                    .filter(caracteristica -> !caracteristica.isEmpty())
+                    .toList());
+            }
+            importacion.procesar(csv.lineaRegistro(), valores);
+        }
+    }
+
+    private void leerNdjson(BufferedReader lector, Importacion importacion) throws IOException {
+        StringBuilder linea = new StringBuilder();
+        int longitud;
+        long numero = 0;
+        while ((longitud = leerLinea(lector, linea)) >= 0) {
+            numero++;
+            if (longitud > MAXIMO_LINEA) {
+                importacion.filas++;
+                importacion.error(numero, "Línea de más de " + MAXIMO_LINEA + " caracteres");
+                continue;
+            }
+            if (linea.toString().isBlank()) {
+                continue;
+            }
+            Map<String, Object> valores;
+            try {
+                valores = objectMapper.readValue(linea.toString(), TIPO_FILA);
+            } catch (JsonProcessingException e) {
+                importacion.filas++;
+                importacion.error(numero, "JSON no válido: " + e.getOriginalMessage());
+                continue;
+            }
+            importacion.procesar(numero, valores);
+        }
+    }
+
+    //LEE UNA LINEA GUARDANDO COMO MUCHO MAXIMO_LINEA CARACTERES
+    //devuelve su longitud (MAXIMO_LINEA + 1 si no cabe) o -1 al final de la entrada
+    private static int leerLinea(BufferedReader lector, StringBuilder linea) throws IOException {
+        linea.setLength(0);
+        int c = lector.read();
+        if (c == -1) {
+            return -1;
+        }
+        int longitud = 0;
+        while (c != -1 && c != '\n') {
+            //fuera de las cadenas \r es un espacio y dentro tiene que ir escapado: se ignora (finales \r\n)
+            if (c != '\r') {
+                if (longitud < MAXIMO_LINEA) {
+                    linea.append((char) c);
+                }
+                longitud = Math.min(longitud + 1, MAXIMO_LINEA + 1);
+            }
+            c = lector.read();
+        }
+        return longitud;
+    }
+
+    //las respuestas cacheadas de los listados ya no incluyen todos los productos (se aplica tras el commit)
+    private void invalidarCacheCatalogo() {
+        for (String nombre : List.of(CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS,
+                CacheConfig.PRODUCTOS_FACETAS, CacheConfig.RESPUESTAS_JSON)) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    //ids existentes y nombre (en minusculas) -> id; los nombres repetidos no se pueden resolver
+    private record Referencias(Set<Long> ids, Map<String, Long> porNombre, Set<String> repetidos) {
+
+        static Referencias de(List<Object[]> filas) {
+            Set<Long> ids = new HashSet<>();
+            Map<String, Long> porNombre = new HashMap<>();
+            Set<String> repetidos = new HashSet<>();
+            for (Object[] fila : filas) {
+                Long id = (Long) fila[0];
+                ids.add(id);
+                if (fila[1] != null && porNombre.putIfAbsent(normalizar((String) fila[1]), id) != null) {
+                    repetidos.add(normalizar((String) fila[1]));
+                }
+            }
+            return new Referencias(ids, porNombre, repetidos);
+        }
+
+        static String normalizar(String nombre) {
+            return nombre.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    //estado de una importacion en curso: el lote pendiente de guardar y los contadores del informe
+    private class Importacion {
+
+        private final Referencias categorias;
+        private final Referencias proveedores;
+        private final List<ProductoRequestDTO> lote = new ArrayList<>();
+        private final List<Long> filasLote = new ArrayList<>();
+        private final List<ErrorFila> detalleErrores = new ArrayList<>();
+        private long filas;
+        private long importados;
+        private long errores;
+
+        Importacion(Referencias categorias, Referencias proveedores) {
+            this.categorias = categorias;
+            this.proveedores = proveedores;
+        }
+
+        void procesar(long fila, Map<String, Object> valores) {
+            filas++;
+            try {
+                resolverNombre(valores, "categoria", "categoria_id", categorias);
+                resolverNombre(valores, "proveedor", "proveedor_id", proveedores);
+            } catch (IllegalArgumentException e) {
+                error(fila, e.getMessage());
+                return;
+            }
+
+            ProductoRequestDTO producto;
+            try {
+                producto = objectMapper.convertValue(valores, ProductoRequestDTO.class);
+            } catch (IllegalArgumentException e) {
+                error(fila, "Valor no válido: " + (e.getCause() instanceof JsonMappingException mapeo
+                    ? mapeo.getOriginalMessage() : e.getMessage()));
+                return;
+            }
+
+            Set<ConstraintViolation<ProductoRequestDTO>> violaciones = validator.validate(producto);
+            if (!violaciones.isEmpty()) {
+                error(fila, violaciones.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+                return;
+            }
+            if (!categorias.ids().contains(producto.getCategoriaId())) {
+                error(fila, "Categoría no encontrada con ID: " + producto.getCategoriaId());
+                return;
+            }
+            if (producto.getProveedorId() != null && !proveedores.ids().contains(producto.getProveedorId())) {
+                error(fila, "Proveedor no encontrado con ID: " + producto.getProveedorId());
+                return;
+            }
+
+            lote.add(producto);
+            filasLote.add(fila);
+            if (lote.size() >= tamanoLote) {
+                guardarLote();
+            }
+        }
+
+        //GUARDA EL LOTE EN UNA TRANSACCION; si falla, todas sus filas se informan como error
+        void guardarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                List<Long> ids = transactionTemplate.execute(estado -> {
+                    //el vector de busqueda se calcula una vez por lote y no con cada caracteristica insertada
+                    busquedaTexto.diferirVectores();
+                    List<Long> insertados = importacionRepository.insertar(lote);
+                    busquedaTexto.recalcularVectores(insertados);
+                    invalidarCacheCatalogo();
+                    eventPublisher.publishEvent(new ProductoCambiadoEvent(
+                        new HashSet<>(insertados), ProductoCambiadoEvent.Tipo.CREADO));
+                    return insertados;
+                });
+                importados += ids != null ? ids.size() : 0;
+            } catch (DataAccessException e) {
+                String causa = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                log.warn("No se pudo guardar un lote de {} productos importados: {}", lote.size(), causa);
+                filasLote.forEach(fila -> error(fila, "No se pudo guardar el lote: " + causa));
+            }
+            lote.clear();
+            filasLote.clear();
+        }
+
+        void error(long fila, String mensaje) {
+            errores++;
+            if (detalleErrores.size() < MAXIMO_ERRORES) {
+                detalleErrores.add(new ErrorFila(fila, mensaje));
+            }
+        }
+
+        //sustituye "categoria": "Running" por "categoria_id": <id> si la fila no trae el id
+        private void resolverNombre(Map<String, Object> valores, String campoNombre, String campoId,
+                                    Referencias referencias) {
+            Object nombre = valores.remove(campoNombre);
+            if (!(nombre instanceof String texto) || valores.get(campoId) != null) {
+                return;
+            }
+            String clave = Referencias.normalizar(texto);
+            if (referencias.repetidos().contains(clave)) {
+                throw new IllegalArgumentException("Hay más de un registro con el nombre '" + texto + "' en " + campoNombre);
+            }
+            Long id = referencias.porNombre().get(clave);
+            if (id == null) {
+                throw new IllegalArgumentException("No existe " + campoNombre + " con el nombre '" + texto + "'");
+            }
+            valores.put(campoId, id);
+        }
+    }
+}
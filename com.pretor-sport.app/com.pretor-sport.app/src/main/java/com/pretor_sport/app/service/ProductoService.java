@@ -1,35 +1,61 @@
 package com.pretor_sport.app.service;
 
+import com.pretor_sport.app.config.BusquedaTextoInitializer;
+import com.pretor_sport.app.config.CacheConfig;
 import com.pretor_sport.app.dto.request.ProductoFilterDTO;
 import com.pretor_sport.app.dto.request.ProductoRequestDTO;
+import com.pretor_sport.app.dto.response.CursorPageDTO;
+import com.pretor_sport.app.dto.response.FacetasResponseDTO;
 import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.dto.response.SlicePageDTO;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
 import com.pretor_sport.app.model.Categoria;
 import com.pretor_sport.app.model.Producto;
 import com.pretor_sport.app.model.Proveedor;
 import com.pretor_sport.app.repository.CategoriaRepository;
+import com.pretor_sport.app.repository.ProductoEstimacionRepository;
+import com.pretor_sport.app.repository.ProductoFacetasRepository;
+import com.pretor_sport.app.repository.ProductoFila;
+import com.pretor_sport.app.repository.ProductoListadoRepository;
 import com.pretor_sport.app.repository.ProductoRepository;
+import com.pretor_sport.app.repository.ProductoSpecifications;
 import com.pretor_sport.app.repository.ProveedorRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,83 +63,452 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductoService {
 
-    @Value("${app.images.upload-dir}")
-    private String uploadDir;
+    private static final List<String> CAMPOS_ORDEN = List.of(
+        "nombre", "precio", "marca", "modelo", "fechaCreacion", "stock", "genero", "peso", "popularidad", "relevancia"
+    );
 
-    @Value("${app.images.base-url}")
-    private String baseUrl;
+    //limites de los rangos de precio de la faceta "precio", en orden ascendente
+    @Value("${app.catalog.facets.price-limits:50,100,200,500}")
+    private List<BigDecimal> limitesPrecioFacetas;
 
     private final ProductoRepository productoRepository;
 
     private final CategoriaRepository categoriaRepository;
     private final ProveedorRepository proveedorRepository;
+    private final BusquedaTextoInitializer busquedaTexto;
+    private final IndiceBusquedaService indiceBusqueda;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImagenAlmacenService imagenAlmacen;
+    private final ProductoEstimacionRepository productoEstimacionRepository;
+    private final ProductoFacetasRepository productoFacetasRepository;
+    private final ProductoListadoRepository productoListadoRepository;
+    private final CatalogoColumnarService catalogoColumnar;
+    private final DestacadosService destacados;
+    private final CacheManager cacheManager;
 
     //LISTA TODOS LOS PRODUCTOS CON PAGINACION Y FILTROS
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS_LISTADO, key = CatalogoRevisionService.PREFIJO_CLAVE + "#filtros.firma()")
     @Transactional(readOnly = true)
     public Page<ProductoResponseDTO> listarProductos(ProductoFilterDTO filtros) {
         log.debug("Listando productos con filtros: {}", filtros);
         
-        //validar y crear objeto de paginación
-        String ordenarPor = filtros.getOrdenarPor();
-        List<String> camposValidos = List.of("nombre", "precio", "marca", "modelo", "fechaCreacion", "stock", "genero", "peso");
-        if (ordenarPor == null || !camposValidos.contains(ordenarPor)) {
-            ordenarPor = "nombre"; //campo por defecto
+        Listado listado = prepararListado(filtros);
+        if (listado == null) {
+            return Page.empty(PageRequest.of(filtros.getPagina(), filtros.getTamanoPagina()));
+        }
+
+        Optional<Page<ProductoResponseDTO>> enMemoria = listarEnCatalogo(filtros, listado);
+        if (enMemoria.isPresent()) {
+            return enMemoria.get();
         }
 
-        Sort sort = Sort.by(
-            filtros.getDireccion().equalsIgnoreCase("desc") ?
-                Sort.Direction.DESC : Sort.Direction.ASC,
-            ordenarPor
+        //con relevancia del índice se traen todos los candidatos (como mucho max-results) y se pagina aquí
+        if (listado.ordenadoPorIndice()) {
+            return convertirPagina(paginarPorIndice(listado));
+        }
+        
+        return convertirPagina(productoListadoRepository.buscar(listado.especificacion(), listado.pageable()));
+    }
+
+    //LISTA PRODUCTOS SIN COUNT POR PAGINA (total aproximado o sin total)
+    //la pagina se lee con una fila de más para saber si hay siguiente; el total aproximado sale de la
+    //estimacion del planificador (catalogo sin filtros) o de un conteo cacheado unos segundos por firma de filtros
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS_LISTADO, key = CatalogoRevisionService.PREFIJO_CLAVE + "'slice|' + #filtros.firma()")
+    @Transactional(readOnly = true)
+    public SlicePageDTO<ProductoResponseDTO> listarProductosSinConteo(ProductoFilterDTO filtros) {
+        log.debug("Listando productos sin conteo con filtros: {}", filtros);
+        
+        boolean aproximado = "aproximado".equals(filtros.getTotal());
+        Listado listado = prepararListado(filtros);
+        if (listado == null) {
+            return new SlicePageDTO<>(List.of(), filtros.getPagina(), filtros.getTamanoPagina(), false,
+                aproximado ? 0L : null, aproximado ? "exacto" : "ninguno");
+        }
+
+        //el catálogo en memoria y el ranking del índice ya traen el total exacto sin consulta adicional
+        Optional<Page<ProductoResponseDTO>> enMemoria = listarEnCatalogo(filtros, listado);
+        if (enMemoria.isPresent()) {
+            Page<ProductoResponseDTO> pagina = enMemoria.get();
+            return new SlicePageDTO<>(pagina.getContent(), pagina.getNumber(), pagina.getSize(),
+                pagina.hasNext(), aproximado ? pagina.getTotalElements() : null, aproximado ? "exacto" : "ninguno");
+        }
+        if (listado.ordenadoPorIndice()) {
+            Page<ProductoResponseDTO> pagina = convertirPagina(paginarPorIndice(listado));
+            return new SlicePageDTO<>(pagina.getContent(), pagina.getNumber(), pagina.getSize(),
+                pagina.hasNext(), aproximado ? pagina.getTotalElements() : null, aproximado ? "exacto" : "ninguno");
+        }
+
+        Slice<Producto> productos = productoRepository.findBy(
+            listado.especificacion(),
+            consulta -> consulta.slice(listado.pageable())
         );
+
+        Long total = null;
+        String tipoTotal = "ninguno";
+        if (aproximado) {
+            if (filtros.sinFiltros()) {
+                total = productoEstimacionRepository.estimarProductos(!Boolean.FALSE.equals(filtros.getSoloDisponibles()));
+                tipoTotal = "aproximado";
+            } else {
+                Cache conteos = cacheManager.getCache(CacheConfig.PRODUCTOS_CONTEO);
+                total = conteos != null
+                    ? conteos.get(filtros.firmaFiltros(), () -> productoRepository.count(listado.especificacion()))
+                    : productoRepository.count(listado.especificacion());
+                tipoTotal = "cacheado";
+            }
+        }
+
+        return new SlicePageDTO<>(productos.map(this::convertirADTO).getContent(), productos.getNumber(),
+            productos.getSize(), productos.hasNext(), total, tipoTotal);
+    }
+
+    //consulta del listado ya resuelta: filtros, orden y pagina; rangoIndice solo cuando se ordena por el ranking del índice
+    private record Listado(Specification<Producto> especificacion, Pageable pageable, Map<Long, Integer> rangoIndice,
+                           Busqueda busqueda) {
+
+        boolean ordenadoPorIndice() {
+            return rangoIndice != null;
+        }
+    }
+
+    //null si la búsqueda no tiene resultados
+    private Listado prepararListado(ProductoFilterDTO filtros) {
+        Busqueda busqueda = prepararBusqueda(filtros.getBusqueda(), "relevancia".equals(filtros.getOrdenarPor()));
+        if (busqueda.sinResultados()) {
+            return null;
+        }
+
+        //validar y crear objeto de paginación
+        String ordenarPor = campoOrden(filtros.getOrdenarPor(), busqueda);
+        Sort sort = "relevancia".equals(ordenarPor)
+            ? Sort.unsorted()
+            : Sort.by(
+                filtros.getDireccion().equalsIgnoreCase("desc") ?
+                    Sort.Direction.DESC : Sort.Direction.ASC,
+                ordenarPor
+            );
         
         Pageable pageable = PageRequest.of(
             filtros.getPagina(), 
             filtros.getTamanoPagina(), 
             sort
         );
+
+        //aplicar filtros
+        Specification<Producto> especificacion = especificacionFiltros(filtros, busqueda);
+        if ("relevancia".equals(ordenarPor) && busqueda.consultaTexto() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.ordenadoPorRelevancia(busqueda.consultaTexto()));
+        }
+
+        boolean ordenarPorIndice = "relevancia".equals(ordenarPor) && busqueda.rangoIndice() != null;
+        return new Listado(especificacion, pageable, ordenarPorIndice ? busqueda.rangoIndice() : null, busqueda);
+    }
+
+    //pagina resuelta por el catálogo columnar en memoria; vacío si no está listo o si la búsqueda es SQL (LIKE o texto completo)
+    private Optional<Page<ProductoResponseDTO>> listarEnCatalogo(ProductoFilterDTO filtros, Listado listado) {
+        Busqueda busqueda = listado.busqueda();
+        if (!catalogoColumnar.isListo() || busqueda.like() != null || busqueda.consultaTexto() != null) {
+            return Optional.empty();
+        }
+
+        Sort.Order orden = listado.pageable().getSort().stream().findFirst().orElse(null);
+        Producto.Genero genero = convertirGenero(filtros.getGenero());
+        return catalogoColumnar.listar(
+            filtros,
+            genero != null ? genero.name() : null,
+            busqueda.rangoIndice() != null ? busqueda.rangoIndice().keySet() : null,
+            listado.rangoIndice(),
+            orden != null ? orden.getProperty() : null,
+            orden != null && orden.isDescending()
+        ).map(resultado -> new PageImpl<>(cargarProductos(resultado.productoIds()), listado.pageable(), resultado.total()));
+    }
+
+    //DTOs en el orden de los ids: los que están en la cache de productos se toman de ahí
+    //y el resto se lee en una sola consulta y se agrega a la cache
+    private List<ProductoResponseDTO> cargarProductos(List<Long> ids) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTO);
+        Map<Long, ProductoResponseDTO> dtos = new HashMap<>();
+        List<Long> faltantes = new ArrayList<>();
+        for (Long id : ids) {
+            ProductoResponseDTO dto = cache != null ? cache.get(id, ProductoResponseDTO.class) : null;
+            if (dto != null) {
+                dtos.put(id, dto);
+            } else {
+                faltantes.add(id);
+            }
+        }
+
+        if (!faltantes.isEmpty()) {
+            for (ProductoResponseDTO dto : convertirFilas(productoRepository.findFilasByIds(faltantes))) {
+                dtos.put(dto.getId(), dto);
+                if (cache != null) {
+                    cache.put(dto.getId(), dto);
+                }
+            }
+        }
+        return ids.stream().map(dtos::get).filter(Objects::nonNull).toList();
+    }
+
+    private Page<ProductoFila> paginarPorIndice(Listado listado) {
+        List<ProductoFila> candidatos = productoListadoRepository.buscar(listado.especificacion()).stream()
+            .sorted(Comparator.comparing(fila -> listado.rangoIndice().get(fila.id())))
+            .toList();
+        return paginar(candidatos, listado.pageable());
+    }
+
+    //LISTA PRODUCTOS CON PAGINACION POR CURSOR (scroll infinito)
+    //busca a partir de la ultima fila entregada (campo de orden, id): sin OFFSET ni COUNT, el coste no crece con la profundidad
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS_LISTADO, key = CatalogoRevisionService.PREFIJO_CLAVE + "'cursor|' + #filtros.firma()")
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductoResponseDTO> listarProductosPorCursor(ProductoFilterDTO filtros) {
+        log.debug("Listando productos por cursor con filtros: {}", filtros);
         
-        // Preparar parámetros para LIKE
-        String busquedaLike = null;
-        if (filtros.getBusqueda() != null && !filtros.getBusqueda().isEmpty()) {
-            busquedaLike = "%" + filtros.getBusqueda() + "%";
+        int tamano = filtros.getTamanoPagina();
+        Busqueda busqueda = prepararBusqueda(filtros.getBusqueda(), "relevancia".equals(filtros.getOrdenarPor()));
+        if (busqueda.sinResultados()) {
+            return new CursorPageDTO<>(List.of(), tamano, null, false);
         }
 
-        String marcaLike = null;
-        if (filtros.getMarca() != null && !filtros.getMarca().isEmpty()) {
-            marcaLike = "%" + filtros.getMarca() + "%";
+        String ordenarPor = campoOrden(filtros.getOrdenarPor(), busqueda);
+        boolean descendente = "desc".equalsIgnoreCase(filtros.getDireccion());
+        ProductoCursor cursor = filtros.getCursor() == null || filtros.getCursor().isEmpty()
+            ? null
+            : ProductoCursor.decodificar(filtros.getCursor(), ordenarPor, descendente);
+        Specification<Producto> especificacion = especificacionFiltros(filtros, busqueda);
+
+        //la relevancia no es una columna: con el índice el cursor guarda la posicion en su ranking y con
+        //texto completo la relevancia y el id de la ultima fila. en los dos casos solo se carga la pagina
+        if ("relevancia".equals(ordenarPor)) {
+            if (cursor != null && cursor.esPosicion() != (busqueda.rangoIndice() != null)) {
+                //el motor de búsqueda ha cambiado entre paginas (el índice acaba de quedar listo)
+                throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+            }
+            return busqueda.rangoIndice() != null
+                ? paginarRankingPorCursor(filtros, busqueda.rangoIndice(), cursor, tamano)
+                : paginarRelevanciaPorCursor(especificacion, busqueda.consultaTexto(), cursor, tamano);
         }
 
-        // Convertir genero a Enum
-        Producto.Genero generoEnum = null;
-        if (filtros.getGenero() != null) {
-            try {
-                generoEnum = Producto.Genero.valueOf(filtros.getGenero().toUpperCase());
-            } catch (IllegalArgumentException e) {
-                log.warn("Valor de genero no válido: {}", filtros.getGenero());
+        //se pide una fila de más para saber si hay pagina siguiente
+        List<Producto> productos = productoRepository.findBy(
+            especificacion.and(ProductoSpecifications.ordenadoDespuesDe(
+                ordenarPor,
+                descendente,
+                cursor != null ? cursor.valorTipado() : null,
+                cursor != null ? cursor.id() : null
+            )),
+            consulta -> consulta.limit(tamano + 1).all()
+        );
+
+        boolean hayMas = productos.size() > tamano;
+        List<Producto> pagina = hayMas ? productos.subList(0, tamano) : productos;
+        String siguiente = hayMas
+            ? ProductoCursor.despuesDe(pagina.get(pagina.size() - 1), ordenarPor, descendente).codificar()
+            : null;
+        return new CursorPageDTO<>(pagina.stream().map(this::convertirADTO).toList(), tamano, siguiente, hayMas);
+    }
+
+    //recorre el ranking del índice desde la posicion del cursor por bloques de ids: cada bloque se filtra en una
+    //consulta que solo lee ids y se para al completar la pagina, que es lo único que se carga
+    private CursorPageDTO<ProductoResponseDTO> paginarRankingPorCursor(ProductoFilterDTO filtros, Map<Long, Integer> rangos,
+                                                                      ProductoCursor cursor, int tamano) {
+        Long[] ranking = new Long[rangos.size()];
+        rangos.forEach((id, rango) -> ranking[rango] = id);
+
+        Producto.Genero genero = convertirGenero(filtros.getGenero());
+        int bloque = (tamano + 1) * 4;
+        List<Long> pagina = new ArrayList<>();
+        int siguiente = cursor != null ? cursor.posicion() : 0;
+        int despuesDeLaPagina = siguiente;
+        while (pagina.size() <= tamano && siguiente < ranking.length) {
+            List<Long> ids = Arrays.asList(ranking).subList(siguiente, Math.min(siguiente + bloque, ranking.length));
+            Set<Long> validos = new HashSet<>(productoListadoRepository.buscarIds(
+                ProductoSpecifications.conFiltros(filtros, genero, null, null, ids)));
+            for (Long id : ids) {
+                siguiente++;
+                if (validos.contains(id) && pagina.size() <= tamano) {
+                    pagina.add(id);
+                    if (pagina.size() == tamano) {
+                        despuesDeLaPagina = siguiente;
+                    }
+                }
             }
         }
 
-        //aplicar filtros y obtener productos
-        Page<Producto> productos = productoRepository.findProductosConFiltros(
-            busquedaLike,
-            filtros.getCategoriaIds(),
-            marcaLike,
-            filtros.getPrecioMin(),
-            filtros.getPrecioMax(),
-            filtros.getTallas(),
-            filtros.getColores(),
-            generoEnum,
-            filtros.getMateriales(),
-            filtros.getSoloDisponibles(),
-            filtros.getPesoMin(),
-            filtros.getPesoMax(),
-            pageable
+        boolean hayMas = pagina.size() > tamano;
+        return new CursorPageDTO<>(
+            cargarProductos(hayMas ? pagina.subList(0, tamano) : pagina),
+            tamano,
+            hayMas ? ProductoCursor.enPosicion(despuesDeLaPagina).codificar() : null,
+            hayMas
+        );
+    }
+
+    //texto completo mientras el índice no está listo: busca despues de (relevancia, id) de la ultima fila
+    private CursorPageDTO<ProductoResponseDTO> paginarRelevanciaPorCursor(Specification<Producto> especificacion,
+                                                                         String consultaTexto, ProductoCursor cursor,
+                                                                         int tamano) {
+        List<ProductoListadoRepository.IdRango> filas = productoListadoRepository.buscarRangos(
+            especificacion.and(ProductoSpecifications.relevanciaDespuesDe(
+                consultaTexto,
+                cursor != null ? cursor.rango() : null,
+                cursor != null ? cursor.id() : null
+            )),
+            consultaTexto,
+            tamano + 1
         );
+
+        boolean hayMas = filas.size() > tamano;
+        List<ProductoListadoRepository.IdRango> pagina = hayMas ? filas.subList(0, tamano) : filas;
+        ProductoListadoRepository.IdRango ultima = hayMas ? pagina.get(pagina.size() - 1) : null;
+        return new CursorPageDTO<>(
+            cargarProductos(pagina.stream().map(ProductoListadoRepository.IdRango::id).toList()),
+            tamano,
+            ultima != null ? ProductoCursor.despuesDeRango(ultima.rango(), ultima.id()).codificar() : null,
+            hayMas
+        );
+    }
+
+    //busqueda de texto resuelta con el motor disponible; como mucho uno de los tres campos viene informado
+    private record Busqueda(String like, String consultaTexto, Map<Long, Integer> rangoIndice) {
+
+        boolean sinResultados() {
+            return rangoIndice != null && rangoIndice.isEmpty();
+        }
+    }
+
+    //índice en memoria si está listo, si no texto completo y LIKE mientras tanto.
+    //solo el listado por relevancia se queda con los max-results mejores; ordenado por otro campo la
+    //búsqueda es un filtro y debe incluir todas las coincidencias, o se perderían filas y el total
+    private Busqueda prepararBusqueda(String termino, boolean porRelevancia) {
+        if (termino == null || termino.isEmpty()) {
+            return new Busqueda(null, null, null);
+        }
+        if (indiceBusqueda.isListo()) {
+            List<IndiceBusquedaService.Resultado> resultados = porRelevancia
+                ? indiceBusqueda.buscar(termino, false)
+                : indiceBusqueda.coincidencias(termino, false);
+            return new Busqueda(null, null, rangosPorProducto(resultados));
+        }
+        if (busquedaTexto.isDisponible()) {
+            return new Busqueda(null, construirConsultaTexto(termino), null);
+        }
+        return new Busqueda("%" + termino + "%", null, null);
+    }
+
+    //campo de ordenamiento validado; la relevancia solo existe con búsqueda de texto, sin ella se ordena por nombre
+    private static String campoOrden(String ordenarPor, Busqueda busqueda) {
+        if (ordenarPor == null || !CAMPOS_ORDEN.contains(ordenarPor)) {
+            return "nombre"; //campo por defecto
+        }
+        if ("relevancia".equals(ordenarPor) && busqueda.consultaTexto() == null && busqueda.rangoIndice() == null) {
+            return "nombre";
+        }
+        return ordenarPor;
+    }
+
+    private Specification<Producto> especificacionFiltros(ProductoFilterDTO filtros, Busqueda busqueda) {
+        return ProductoSpecifications.conFiltros(
+            filtros,
+            convertirGenero(filtros.getGenero()),
+            busqueda.like(),
+            busqueda.consultaTexto(),
+            busqueda.rangoIndice() != null ? busqueda.rangoIndice().keySet() : null
+        );
+    }
+
+    // Convertir genero a Enum; un valor no válido no filtra
+    private Producto.Genero convertirGenero(String genero) {
+        if (genero == null) {
+            return null;
+        }
+        try {
+            return Producto.Genero.valueOf(genero.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Valor de genero no válido: {}", genero);
+            return null;
+        }
+    }
+
+    //CUENTA LOS PRODUCTOS POR FACETA (categoria, marca, talla, color, material, genero y rango de precio)
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS_FACETAS, key = CatalogoRevisionService.PREFIJO_CLAVE + "#filtros.firmaFiltros()")
+    @Transactional(readOnly = true)
+    public FacetasResponseDTO obtenerFacetas(ProductoFilterDTO filtros) {
+        log.debug("Obteniendo facetas con filtros: {}", filtros);
         
-        return productos.map(this::convertirADTO);
+        FacetasResponseDTO facetas = new FacetasResponseDTO();
+        Busqueda busqueda = prepararBusqueda(filtros.getBusqueda(), false);
+        if (busqueda.sinResultados()) {
+            return facetas;
+        }
+
+        Producto.Genero genero = convertirGenero(filtros.getGenero());
+        String nombreGenero = genero != null ? genero.name() : null;
+        Collection<Long> idsBusqueda = busqueda.rangoIndice() != null ? busqueda.rangoIndice().keySet() : null;
+        //el catálogo en memoria solo sirve sin búsqueda SQL (LIKE o texto completo)
+        Optional<List<ProductoFacetasRepository.Conteo>> enMemoria = busqueda.like() == null && busqueda.consultaTexto() == null
+            ? catalogoColumnar.contarFacetas(filtros, nombreGenero, idsBusqueda)
+            : Optional.empty();
+        List<ProductoFacetasRepository.Conteo> conteos = enMemoria.orElseGet(() -> productoFacetasRepository.contarFacetas(
+            filtros,
+            nombreGenero,
+            busqueda.like(),
+            busqueda.consultaTexto(),
+            idsBusqueda,
+            limitesPrecioFacetas
+        ));
+
+        Map<Long, String> nombresCategoria = new HashMap<>();
+        List<Long> categoriaIds = conteos.stream()
+            .filter(conteo -> "categoria".equals(conteo.faceta()))
+            .map(conteo -> Long.valueOf(conteo.valor()))
+            .toList();
+        categoriaRepository.findAllById(categoriaIds)
+            .forEach(categoria -> nombresCategoria.put(categoria.getId(), categoria.getNombre()));
+
+        for (ProductoFacetasRepository.Conteo conteo : conteos) {
+            switch (conteo.faceta()) {
+                case "categoria" -> {
+                    Long id = Long.valueOf(conteo.valor());
+                    facetas.getCategorias().add(new FacetasResponseDTO.CategoriaFacetaDTO(id, nombresCategoria.get(id), conteo.cantidad()));
+                }
+                case "marca" -> facetas.getMarcas().add(valorFaceta(conteo));
+                case "talla" -> facetas.getTallas().add(valorFaceta(conteo));
+                case "color" -> facetas.getColores().add(valorFaceta(conteo));
+                case "material" -> facetas.getMateriales().add(valorFaceta(conteo));
+                case "genero" -> facetas.getGeneros().add(valorFaceta(conteo));
+                case "precio" -> {
+                    int rango = Integer.parseInt(conteo.valor());
+                    facetas.getPrecios().add(new FacetasResponseDTO.RangoPrecioFacetaDTO(
+                        rango > 0 ? limitesPrecioFacetas.get(rango - 1) : null,
+                        rango < limitesPrecioFacetas.size() ? limitesPrecioFacetas.get(rango) : null,
+                        conteo.cantidad()
+                    ));
+                }
+                default -> log.warn("Faceta desconocida: {}", conteo.faceta());
+            }
+        }
+
+        //valores mas frecuentes primero; los rangos de precio en su orden natural
+        Comparator<FacetasResponseDTO.ValorFacetaDTO> porCantidad =
+            Comparator.comparing(FacetasResponseDTO.ValorFacetaDTO::getCantidad).reversed()
+                .thenComparing(FacetasResponseDTO.ValorFacetaDTO::getValor);
+        facetas.getCategorias().sort(Comparator.comparing(FacetasResponseDTO.CategoriaFacetaDTO::getCantidad).reversed());
+        facetas.getMarcas().sort(porCantidad);
+        facetas.getTallas().sort(porCantidad);
+        facetas.getColores().sort(porCantidad);
+        facetas.getMateriales().sort(porCantidad);
+        facetas.getGeneros().sort(porCantidad);
+        facetas.getPrecios().sort(Comparator.comparing(FacetasResponseDTO.RangoPrecioFacetaDTO::getDesde,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+        return facetas;
+    }
+
+    private static FacetasResponseDTO.ValorFacetaDTO valorFaceta(ProductoFacetasRepository.Conteo conteo) {
+        return new FacetasResponseDTO.ValorFacetaDTO(conteo.valor(), conteo.cantidad());
     }
 
     //OBTIENE PRODUCTO POR ID
+    @Cacheable(cacheNames = CacheConfig.PRODUCTO, key = "#id", unless = "#result == null")
     @Transactional(readOnly = true)
     public Optional<ProductoResponseDTO> obtenerProductoPorId(Long id) {
         log.debug("Obteniendo producto con ID: {}", id);
@@ -121,7 +516,30 @@ public class ProductoService {
             .map(this::convertirADTO);
     }
 
+    //version del detalle de un producto para peticiones condicionales
+    public record VersionProducto(String etag, long ultimaModificacion) {
+    }
+
+    //OBTIENE LA VERSION DE UN PRODUCTO SIN CARGARLO (solo sus fechas de actualizacion y las de su categoria)
+    @Transactional(readOnly = true)
+    public Optional<VersionProducto> obtenerVersionProducto(Long id) {
+        return productoRepository.findFechasActualizacionById(id).stream()
+            .findFirst()
+            .map(fechas -> {
+                long producto = milisegundos((LocalDateTime) fechas[0]);
+                long categoria = milisegundos((LocalDateTime) fechas[1]);
+                String etag = "\"p" + id + "-" + Long.toString(producto, 36) + "-" + Long.toString(categoria, 36) + "\"";
+                return new VersionProducto(etag, Math.max(producto, categoria));
+            });
+    }
+
+    private static long milisegundos(LocalDateTime fecha) {
+        return fecha != null ? fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
     //CREAR UN NUEVO PRODUCTO
+    @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.PRODUCTOS_FACETAS,
+            CacheConfig.RESPUESTAS_JSON}, allEntries = true)
     @Transactional
     public ProductoResponseDTO crearProducto(ProductoRequestDTO request) {
         log.info("Creando nuevo producto: {}", request.getNombre());
@@ -158,12 +576,18 @@ public class ProductoService {
         producto.setActivo(true);
         
         Producto productoGuardado = productoRepository.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.de(productoGuardado.getId(), ProductoCambiadoEvent.Tipo.CREADO));
         log.info("Producto creado exitosamente con ID: {}", productoGuardado.getId());
         
         return convertirADTO(productoGuardado);
     }
 
     //ACTUALIZA UN PRODUCTO EXISTENTE
+    @Caching(evict = {
+        @CacheEvict(cacheNames = CacheConfig.PRODUCTO, key = "#id"),
+        @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.PRODUCTOS_FACETAS,
+            CacheConfig.RESPUESTAS_JSON}, allEntries = true)
+    })
     @Transactional
     public ProductoResponseDTO actualizarProducto(Long id, ProductoRequestDTO request) {
         log.info("Actualizando producto con ID: {}", id);
@@ -187,6 +611,10 @@ public class ProductoService {
         producto.setDescripcion(request.getDescripcion());
         producto.setPrecio(request.getPrecio());
         producto.setStock(request.getStock());
+        if (!Objects.equals(producto.getImagenUrl(), request.getImagenUrl())) {
+            //las variantes eran de la imagen anterior
+            producto.setImagenVariantes(null);
+        }
         producto.setImagenUrl(request.getImagenUrl());
         producto.setCategoria(categoria);
         producto.setProveedor(proveedor);
@@ -201,12 +629,18 @@ public class ProductoService {
         producto.setCaracteristicas(request.getCaracteristicas());
         
         Producto productoActualizado = productoRepository.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.de(id, ProductoCambiadoEvent.Tipo.ACTUALIZADO));
         log.info("Producto actualizado exitosamente con ID: {}", productoActualizado.getId());
         
         return convertirADTO(productoActualizado);
     }
 
     //ELIMINA UN PRODUCTO
+    @Caching(evict = {
+        @CacheEvict(cacheNames = CacheConfig.PRODUCTO, key = "#id"),
+        @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.PRODUCTOS_FACETAS,
+            CacheConfig.RESPUESTAS_JSON}, allEntries = true)
+    })
     @Transactional
     public void eliminarProducto(Long id) {
         log.info("Eliminando producto con ID: {}", id);
@@ -216,6 +650,7 @@ public class ProductoService {
         
         producto.setActivo(false);
         productoRepository.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.de(id, ProductoCambiadoEvent.Tipo.ELIMINADO));
         
         log.info("Producto eliminado exitosamente con ID: {}", id);
     }
@@ -225,22 +660,22 @@ public class ProductoService {
     public List<ProductoResponseDTO> obtenerProductosPorCategoria(Long categoriaId) {
         log.debug("Obteniendo productos para categoría ID: {}", categoriaId);
         
-        return productoRepository.findByCategoriaIdAndActivoTrue(categoriaId)
-            .stream()
-            .map(this::convertirADTO)
-            .collect(Collectors.toList());
+        return convertirFilas(productoRepository.findFilasActivasByCategoriaId(categoriaId));
     }
 
 
     //OBTIENE PRODUCTOS DESTACADOS
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS_DESTACADOS, key = CatalogoRevisionService.PREFIJO_CLAVE + "#limite")
     @Transactional(readOnly = true)
     public List<ProductoResponseDTO> obtenerProductosDestacados(int limite) {
         log.debug("Obteniendo {} productos destacados", limite);
-        
-        return productoRepository.findProductosDestacados(limite)
-            .stream()
-            .map(this::convertirADTO)
-            .collect(Collectors.toList());
+
+        if (limite <= 0) {
+            return List.of();
+        }
+        return destacados.obtener(limite)
+            .map(this::cargarProductos)
+            .orElseGet(() -> convertirFilas(productoRepository.findFilasDestacadas(PageRequest.of(0, limite))));
     }
 
     //BUSCA PRODUCTOS POR TERMINO DE BUSQUEDA
@@ -248,12 +683,67 @@ public class ProductoService {
     public Page<ProductoResponseDTO> buscarProductos(String termino, Pageable pageable) {
         log.debug("Buscando productos con término: {}", termino);
         
-        Page<Producto> productos = productoRepository.findByNombreContainingIgnoreCaseAndActivoTrue(termino, pageable);
-        return productos.map(this::convertirADTO);
+        if (indiceBusqueda.isListo()) {
+            return buscarEnIndice(termino, pageable);
+        }
+        
+        if (!busquedaTexto.isDisponible()) {
+            return convertirPagina(productoRepository.buscarFilasPorNombre(patronContiene(termino), pageable));
+        }
+        
+        String consulta = construirConsultaTexto(termino);
+        if (consulta == null) {
+            return Page.empty(pageable);
+        }
+        
+        return convertirPagina(productoRepository.buscarFilasPorTextoCompleto(consulta, pageable));
+    }
+
+    //BUSCA EN EL INDICE EN MEMORIA Y CARGA SOLO LOS PRODUCTOS DE LA PAGINA PEDIDA
+    private Page<ProductoResponseDTO> buscarEnIndice(String termino, Pageable pageable) {
+        List<Long> ids = indiceBusqueda.buscar(termino, true).stream()
+            .map(IndiceBusquedaService.Resultado::productoId)
+            .toList();
+        Page<Long> pagina = paginar(ids, pageable);
+        Map<Long, ProductoResponseDTO> productos = convertirFilas(productoRepository.findFilasByIds(pagina.getContent())).stream()
+            .collect(Collectors.toMap(ProductoResponseDTO::getId, producto -> producto));
+        List<ProductoResponseDTO> contenido = pagina.getContent().stream()
+            .map(productos::get)
+            .filter(Objects::nonNull)
+            .toList();
+        return new PageImpl<>(contenido, pageable, pagina.getTotalElements());
+    }
+
+    //posicion de cada producto en el ranking del indice
+    private static Map<Long, Integer> rangosPorProducto(List<IndiceBusquedaService.Resultado> resultados) {
+        Map<Long, Integer> rangos = new HashMap<>();
+        for (int i = 0; i < resultados.size(); i++) {
+            rangos.put(resultados.get(i).productoId(), i);
+        }
+        return rangos;
+    }
+
+    private static <T> Page<T> paginar(List<T> elementos, Pageable pageable) {
+        int desde = (int) Math.min(pageable.getOffset(), elementos.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), elementos.size());
+        return new PageImpl<>(elementos.subList(desde, hasta), pageable, elementos.size());
     }
 
+    //CONVIERTE EL TERMINO DEL USUARIO EN UNA CONSULTA to_tsquery SEGURA
+    //solo letras y números; todas las palabras deben aparecer y cada una acepta prefijos ("zapat" -> "zapatillas")
+    private static String construirConsultaTexto(String termino) {
+        String consulta = Arrays.stream(termino.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+            .filter(palabra -> !palabra.isEmpty())
+            .map(palabra -> palabra + ":*")
+            .collect(Collectors.joining(" & "));
+        return consulta.isEmpty() ? null : consulta;
+    }
 
 
+    @Caching(evict = {
+        @CacheEvict(cacheNames = CacheConfig.PRODUCTO, key = "#productoId"),
+        @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS, CacheConfig.RESPUESTAS_JSON}, allEntries = true)
+    })
     public String saveProductImage(Long productoId, MultipartFile file) throws IOException {
         // 1. Validar que el archivo no esté vacío
         if (file.isEmpty()) {
@@ -277,41 +767,80 @@ public class ProductoService {
         Producto producto = productoRepository.findById(productoId)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + productoId));
 
-        // 5. Generar un nombre de archivo único para evitar colisiones y Path Traversal
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExtension = "";
-        int lastIndex = originalFileName.lastIndexOf(".");
-        if (lastIndex >= 0) {
-            fileExtension = originalFileName.substring(lastIndex);
-        }
-        
-        // Forzar extensión basada en el tipo si no tiene una válida
-        if (fileExtension.isEmpty()) {
-            fileExtension = "." + contentType.split("/")[1];
-        }
-
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+        // 5. Guardar el archivo con su hash como nombre (una imagen repetida se reutiliza)
+        String fileExtension = "." + contentType.split("/")[1];
+        String imageUrl = imagenAlmacen.guardar(file.getInputStream(), fileExtension);
 
-        // 6. Definir la ruta de guardado
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        Path filePath = uploadPath.resolve(uniqueFileName);
-
-        // 7. Guardar el archivo en el servidor
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-        // 8. Construir la URL pública y actualizar el producto
-        String imageUrl = baseUrl + "/" + uniqueFileName;
+        // 6. Actualizar el producto
         producto.setImagenUrl(imageUrl);
+        producto.setImagenVariantes(null); //las genera ImagenVariantesService despues del commit
         productoRepository.save(producto);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.de(productoId, ProductoCambiadoEvent.Tipo.IMAGEN));
 
-        log.info("Imagen guardada exitosamente para el producto {}: {}", productoId, uniqueFileName);
+        log.info("Imagen guardada exitosamente para el producto {}: {}", productoId, imageUrl);
         return imageUrl;
     }
 
 
+    //patron LIKE "contiene" en minusculas para buscarFilasPorNombre, con % y _ del usuario escapados
+    private static String patronContiene(String termino) {
+        String escapado = termino.toLowerCase()
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+        return "%" + escapado + "%";
+    }
+
+    private Page<ProductoResponseDTO> convertirPagina(Page<ProductoFila> filas) {
+        return new PageImpl<>(convertirFilas(filas.getContent()), filas.getPageable(), filas.getTotalElements());
+    }
+
+    //convierte filas proyectadas a DTOs; las caracteristicas de todas se leen en una sola consulta
+    private List<ProductoResponseDTO> convertirFilas(List<ProductoFila> filas) {
+        if (filas.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<String>> caracteristicas = new HashMap<>();
+        List<Long> ids = filas.stream().map(ProductoFila::id).toList();
+        for (Object[] fila : productoRepository.findCaracteristicasByProductoIds(ids)) {
+            caracteristicas.computeIfAbsent((Long) fila[0], id -> new ArrayList<>()).add((String) fila[1]);
+        }
+        return filas.stream()
+            .map(fila -> convertirADTO(fila, caracteristicas.getOrDefault(fila.id(), new ArrayList<>())))
+            .toList();
+    }
+
+    private ProductoResponseDTO convertirADTO(ProductoFila fila, List<String> caracteristicas) {
+        ProductoResponseDTO dto = new ProductoResponseDTO();
+        dto.setId(fila.id());
+        dto.setNombre(fila.nombre());
+        dto.setDescripcion(fila.descripcion());
+        dto.setPrecio(fila.precio());
+        dto.setStock(fila.stock());
+        dto.setImagenUrl(fila.imagenUrl());
+        dto.setImagenVariantes(ImagenVariantesService.urls(fila.imagenUrl(), fila.imagenVariantes()));
+        dto.setMarca(fila.marca());
+        dto.setModelo(fila.modelo());
+        dto.setTalla(fila.talla());
+        dto.setColor(fila.color());
+        dto.setGenero(fila.genero() != null ? fila.genero().name() : null);
+        dto.setMaterial(fila.material());
+        dto.setPeso(fila.peso());
+        dto.setCaracteristicas(caracteristicas);
+        dto.setDisponible(Boolean.TRUE.equals(fila.activo()) && fila.stock() > 0);
+
+        dto.setCategoria(new ProductoResponseDTO.CategoriaSimpleDTO(
+            fila.categoriaId(),
+            fila.categoriaNombre(),
+            fila.categoriaTipo() != null ? fila.categoriaTipo().name() : null,
+            fila.categoriaIconoUrl()
+        ));
+        if (fila.proveedorId() != null) {
+            dto.setProveedor(new ProductoResponseDTO.ProveedorSimpleDTO(fila.proveedorId(), fila.proveedorNombre(), fila.proveedorEmail()));
+        }
+        return dto;
+    }
+
     //CONVIERTE UN PRODUCTO A ProductoResponseDTO
     private ProductoResponseDTO convertirADTO(Producto producto) {
         ProductoResponseDTO dto = new ProductoResponseDTO();
@@ -321,6 +850,7 @@ public class ProductoService {
         dto.setPrecio(producto.getPrecio());
         dto.setStock(producto.getStock());
         dto.setImagenUrl(producto.getImagenUrl());
+        dto.setImagenVariantes(ImagenVariantesService.urls(producto.getImagenUrl(), producto.getImagenVariantes()));
         dto.setMarca(producto.getMarca());
         dto.setModelo(producto.getModelo());
         dto.setTalla(producto.getTalla());
@@ -328,7 +858,8 @@ public class ProductoService {
         dto.setGenero(producto.getGenero() != null ? producto.getGenero().name() : null);
         dto.setMaterial(producto.getMaterial());
         dto.setPeso(producto.getPeso());
-        dto.setCaracteristicas(producto.getCaracteristicas());
+        //copia dentro de la transaccion: el DTO se cachea y no debe quedar ligado a la coleccion lazy
+        dto.setCaracteristicas(producto.getCaracteristicas() != null ? new ArrayList<>(producto.getCaracteristicas()) : null);
         dto.setDisponible(producto.isDisponible());
         dto.setEstadoStock(producto.getEstadoStock());
         
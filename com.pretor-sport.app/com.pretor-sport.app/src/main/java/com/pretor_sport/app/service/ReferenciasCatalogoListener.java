@@ -0,0 +1,39 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.CacheConfig;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//listener JPA de Categoria y Proveedor: los productos cacheados, los listados y sus respuestas JSON incluyen
+//el nombre de la categoria y del proveedor, asi que cualquier edicion los invalida y avanza la revision del
+//catalogo (ETag de los listados) al confirmar, venga de donde venga la escritura
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenciasCatalogoListener {
+
+    private final CacheManager cacheManager;
+    private final CatalogoRevisionService catalogoRevision;
+
+    @PostUpdate
+    @PostRemove
+    public void onReferenciaCambiada(Object entidad) {
+        log.debug("Referencia del catálogo modificada: {}", entidad.getClass().getSimpleName());
+        //la cache es transaccional: el vaciado se aplica tras el commit
+        for (String nombre : List.of(CacheConfig.PRODUCTO, CacheConfig.PRODUCTOS_LISTADO, CacheConfig.PRODUCTOS_DESTACADOS,
+                CacheConfig.PRODUCTOS_FACETAS, CacheConfig.RESPUESTAS_JSON)) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+        catalogoRevision.avanzarTrasCommit();
+    }
+}
@@ -0,0 +1,94 @@
+package com.pretor_sport.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretor_sport.app.config.CacheConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+//respuestas JSON del catalogo ya serializadas (y comprimidas con gzip) para los endpoints publicos mas pedidos.
+//un acierto devuelve los bytes tal cual, sin construir DTOs ni pasar por Jackson. la cache RESPUESTAS_JSON
+//se invalida con las mismas escrituras que los listados (ProductoService y VentaService) y, como ellos, lleva
+//en la clave la revision del catalogo leida antes de calcular el cuerpo: un cuerpo calculado antes de una
+//invalidacion y guardado despues queda con la revision anterior y no se vuelve a servir
+@Service
+@RequiredArgsConstructor
+public class RespuestasJsonService {
+
+    //por debajo de este tamaño la compresion no compensa
+    private static final int MINIMO_GZIP = 1024;
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final CatalogoRevisionService catalogoRevision;
+
+    //gzip es null si la respuesta es pequeña
+    public record RespuestaJson(byte[] json, byte[] gzip) {
+
+        public int tamano() {
+            return json.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+
+    //RESPUESTA SERIALIZADA PARA LA CLAVE (endpoint y parametros normalizados); vacio si el cuerpo es null
+    public Optional<RespuestaJson> obtener(String clave, Supplier<?> cuerpo) {
+        Cache cache = cacheManager.getCache(CacheConfig.RESPUESTAS_JSON);
+        String claveRevision = catalogoRevision.revision() + "|" + clave;
+        RespuestaJson guardada = cache != null ? cache.get(claveRevision, RespuestaJson.class) : null;
+        if (guardada != null) {
+            return Optional.of(guardada);
+        }
+
+        Object valor = cuerpo.get();
+        if (valor == null) {
+            return Optional.empty();
+        }
+        RespuestaJson respuesta = serializar(valor);
+        if (cache != null) {
+            cache.put(claveRevision, respuesta);
+        }
+        return Optional.of(respuesta);
+    }
+
+    //true si el cliente acepta gzip (y no lo excluye con q=0)
+    public static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                return partes.length == 1 || !partes[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private RespuestaJson serializar(Object valor) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(valor);
+            return new RespuestaJson(json, json.length >= MINIMO_GZIP ? comprimir(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+    }
+
+    private static byte[] comprimir(byte[] json) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.repository.UltimoAccesoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//ultimo acceso de los usuarios con escritura diferida: el login solo anota la fecha en memoria y una tarea
+//periodica las guarda todas en un lote. varios logins del mismo usuario entre dos volcados se quedan en una
+//sola fila (la fecha mas reciente), y el login no escribe en la base de datos
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UltimoAccesoService {
+
+    private final UltimoAccesoRepository ultimoAccesoRepository;
+
+    private final ConcurrentHashMap<Long, LocalDateTime> pendientes = new ConcurrentHashMap<>();
+
+    //metricas
+    private final AtomicLong registrados = new AtomicLong();
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong volcados = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private volatile long ultimaDuracionMs;
+
+    //ANOTA EL ACCESO (se queda la fecha mas reciente por usuario)
+    public void registrar(Long usuarioId, LocalDateTime fecha) {
+        pendientes.merge(usuarioId, fecha, (anterior, nueva) -> nueva.isAfter(anterior) ? nueva : anterior);
+        registrados.incrementAndGet();
+    }
+
+    //acceso anotado y todavia sin guardar, si lo hay
+    public Optional<LocalDateTime> pendiente(Long usuarioId) {
+        return Optional.ofNullable(pendientes.get(usuarioId));
+    }
+
+    //GUARDA LOS ACCESOS PENDIENTES EN UN LOTE. una entrada solo se quita si no cambio mientras se guardaba;
+    //si el lote falla se conservan para el siguiente volcado
+    @Scheduled(fixedDelayString = "${app.auth.last-access.flush-ms:10000}",
+               initialDelayString = "${app.auth.last-access.flush-ms:10000}")
+    public synchronized int volcar() {
+        if (pendientes.isEmpty()) {
+            return 0;
+        }
+        long inicio = System.currentTimeMillis();
+        Map<Long, LocalDateTime> lote = new HashMap<>(pendientes);
+        try {
+            ultimoAccesoRepository.actualizar(lote);
+        } catch (RuntimeException e) {
+            fallos.incrementAndGet();
+            log.error("No se pudieron guardar {} accesos de usuarios: {}", lote.size(), e.getMessage());
+            return 0;
+        }
+        lote.forEach(pendientes::remove);
+        escritos.addAndGet(lote.size());
+        volcados.incrementAndGet();
+        ultimaDuracionMs = System.currentTimeMillis() - inicio;
+        log.debug("Guardados {} accesos de usuarios en {} ms", lote.size(), ultimaDuracionMs);
+        return lote.size();
+    }
+
+    //GUARDA LO PENDIENTE AL PARAR LA APLICACION
+    @PreDestroy
+    public void volcarAlParar() {
+        int guardados = volcar();
+        if (guardados > 0) {
+            log.info("Guardados {} accesos de usuarios pendientes al parar", guardados);
+        }
+    }
+
+    //METRICAS PARA /health/detailed
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("pendientes", pendientes.size());
+        estadisticas.put("registrados", registrados.get());
+        estadisticas.put("escritos", escritos.get());
+        estadisticas.put("volcados", volcados.get());
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("ultimaDuracionMs", ultimaDuracionMs);
+        return estadisticas;
+    }
+}
@@ -2,12 +2,13 @@ package com.pretor_sport.app.service;
 
 import com.pretor_sport.app.model.Usuario;
 import com.pretor_sport.app.repository.UsuarioRepository;
+import com.pretor_sport.app.security.UsuarioAutenticado;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -17,7 +18,7 @@ import java.util.Collections;
 
 @Service
 @Slf4j
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UsuarioRepository usuarioRepository;
@@ -40,17 +41,22 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         GrantedAuthority authority = new SimpleGrantedAuthority(usuario.getRol().name());
 
-        UserDetails userDetails = User.builder()
-                .username(usuario.getEmail())
-                .password(usuario.getPassword())
-                .authorities(Collections.singletonList(authority))
-                .accountExpired(false)
-                .accountLocked(!usuario.getActivo())
-                .credentialsExpired(false)
-                .disabled(!usuario.getEmailVerificado())
-                .build();
+        //bloqueado si no esta activo, deshabilitado si no ha verificado el email
+        UserDetails userDetails = new UsuarioAutenticado(usuario, Collections.singletonList(authority));
 
         log.debug("Usuario cargado exitosamente: {} con rol: {}", email, usuario.getRol());
         return userDetails;
     }
-}
\ No newline at end of file
+
+    //GUARDA EL HASH REHECHO CON EL COSTE ACTUAL (lo llama DaoAuthenticationProvider tras un login correcto)
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        usuarioRepository.actualizarPassword(user.getUsername(), newPassword);
+        log.info("Contraseña de {} cifrada de nuevo con el coste configurado", user.getUsername());
+
+        Usuario usuario = ((UsuarioAutenticado) user).getUsuario();
+        usuario.setPassword(newPassword);
+        return new UsuarioAutenticado(usuario, user.getAuthorities());
+    }
+}
@@ -1,9 +1,11 @@
 package com.pretor_sport.app.service;
 
 import com.pretor_sport.app.dto.request.UsuarioRequestDTO;
+import com.pretor_sport.app.event.UsuarioCambiadoEvent;
 import com.pretor_sport.app.model.Usuario;
 import com.pretor_sport.app.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +19,7 @@ public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Usuario crearUsuario(UsuarioRequestDTO dto) {
@@ -59,7 +62,22 @@ public class UsuarioService {
         usuarioExistente.setDireccion(datosActualizados.getDireccion());
         usuarioExistente.setTelefono(datosActualizados.getTelefono());
 
-        return usuarioRepository.save(usuarioExistente);
+        Usuario usuarioGuardado = usuarioRepository.save(usuarioExistente);
+        eventPublisher.publishEvent(new UsuarioCambiadoEvent(id, UsuarioCambiadoEvent.Tipo.ACTUALIZADO));
+        return usuarioGuardado;
+    }
+
+    //desactiva la cuenta: no puede iniciar sesion y sus tokens dejan de aceptarse tras el commit
+    @Transactional
+    public Usuario desactivarUsuario(Long id) {
+        Usuario usuario = usuarioRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado con id: " + id));
+
+        usuario.setActivo(false);
+
+        Usuario usuarioGuardado = usuarioRepository.save(usuario);
+        eventPublisher.publishEvent(new UsuarioCambiadoEvent(id, UsuarioCambiadoEvent.Tipo.DESACTIVADO));
+        return usuarioGuardado;
     }
 
     public Optional<Usuario> buscarPorEmail(String email) {
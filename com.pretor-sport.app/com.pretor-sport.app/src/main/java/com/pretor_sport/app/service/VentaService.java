@@ -1,30 +1,52 @@
 package com.pretor_sport.app.service;
 
+import com.pretor_sport.app.config.CacheConfig;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
 import com.pretor_sport.app.model.*;
 import com.pretor_sport.app.repository.*;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class VentaService {
 
+    //origen de la escala de popularidad; solo importa que sea fijo
+    private static final LocalDateTime EPOCA_POPULARIDAD = LocalDateTime.of(2025, 1, 1, 0, 0);
+
     private final VentaRepository ventaRepository;
     private final PedidoRepository pedidoRepository;
     private final ProductoRepository productoRepository;
     private final PagoRepository pagoRepository;
     private final UsuarioRepository usuarioRepository; // Añadido para buscar el historial
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    //dias en que el peso de una venta en la popularidad se reduce a la mitad. no se puede cambiar sin recalcular
+    //la columna: las ventas ya sumadas quedarian con la escala de la vida media anterior
+    @Value("${app.catalog.popularity.half-life-days:30}")
+    private double vidaMediaPopularidad;
 
     public VentaService(VentaRepository ventaRepository, PedidoRepository pedidoRepository,
                         ProductoRepository productoRepository, PagoRepository pagoRepository,
-                        UsuarioRepository usuarioRepository) {
+                        UsuarioRepository usuarioRepository, CacheManager cacheManager,
+                        ApplicationEventPublisher eventPublisher) {
         this.ventaRepository = ventaRepository;
         this.pedidoRepository = pedidoRepository;
         this.productoRepository = productoRepository;
         this.pagoRepository = pagoRepository;
         this.usuarioRepository = usuarioRepository;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
     }
 
 
@@ -54,6 +76,7 @@ public class VentaService {
             }
             producto.setStock(producto.getStock() - cantidadSolicitada);
             productoRepository.save(producto);
+            sumarPopularidad(producto.getId(), cantidadSolicitada);
         }
 
         // 3. Crear el registro de Pago (simulando un pago exitoso)
@@ -75,10 +98,58 @@ public class VentaService {
         pedido.setEstado("COMPLETADO");
         pedidoRepository.save(pedido);
 
+        // 6. Invalidar la cache del catalogo para los productos cuyo stock cambió (se aplica tras el commit)
+        invalidarCacheCatalogo(pedido.getDetalles());
+        eventPublisher.publishEvent(new ProductoCambiadoEvent(
+            pedido.getDetalles().stream().map(detalle -> detalle.getProducto().getId()).collect(Collectors.toSet()),
+            ProductoCambiadoEvent.Tipo.STOCK
+        ));
+
         // Se retorna la venta recién creada
         return ventaGuardada;
     }
 
+    //SUMA LA VENTA A LA POPULARIDAD DEL PRODUCTO
+    //en lugar de reducir periodicamente la popularidad de todos los productos, cada venta pesa 2^(t/vida media)
+    //desde EPOCA_POPULARIDAD: el orden por la columna es el mismo que el de las ventas con decaimiento exponencial
+    //(todas quedan multiplicadas por el mismo factor) y cada venta solo actualiza su fila.
+    //la suma se guarda en log2 porque 2^(t/vida media) desborda un double tras 1024 vidas medias (84 años con 30
+    //dias); en log2 crece una unidad por vida media. el 0 inicial equivale a una unidad vendida en
+    //EPOCA_POPULARIDAD en todos los productos, que no cambia el orden
+    private void sumarPopularidad(Long productoId, int cantidad) {
+        double dias = Duration.between(EPOCA_POPULARIDAD, LocalDateTime.now()).toMinutes() / 1440.0;
+        productoRepository.sumarPopularidad(productoId, dias / vidaMediaPopularidad + Math.log(cantidad) / Math.log(2));
+    }
+
+    //INVALIDA LOS PRODUCTOS VENDIDOS Y LOS LISTADOS QUE PUEDEN MOSTRAR SU STOCK
+    private void invalidarCacheCatalogo(List<DetallePedido> detalles) {
+        Cache productos = cacheManager.getCache(CacheConfig.PRODUCTO);
+        if (productos != null) {
+            detalles.forEach(detalle -> productos.evict(detalle.getProducto().getId()));
+        }
+
+        Cache listados = cacheManager.getCache(CacheConfig.PRODUCTOS_LISTADO);
+        if (listados != null) {
+            listados.clear();
+        }
+
+        Cache destacados = cacheManager.getCache(CacheConfig.PRODUCTOS_DESTACADOS);
+        if (destacados != null) {
+            destacados.clear();
+        }
+
+        //los conteos por faceta dependen del stock cuando se listan solo productos disponibles
+        Cache facetas = cacheManager.getCache(CacheConfig.PRODUCTOS_FACETAS);
+        if (facetas != null) {
+            facetas.clear();
+        }
+
+        Cache respuestas = cacheManager.getCache(CacheConfig.RESPUESTAS_JSON);
+        if (respuestas != null) {
+            respuestas.clear();
+        }
+    }
+
     //OBTIENE EL HISTORIAL DE COMPRAS DE UN CLIENTE ESPECIFICO
     public List<Venta> obtenerHistorialDeCompras(Usuario usuario) {
         return ventaRepository.findByPedido_Usuario(usuario);
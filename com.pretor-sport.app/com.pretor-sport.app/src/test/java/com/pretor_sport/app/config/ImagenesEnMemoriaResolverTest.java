@@ -0,0 +1,99 @@
+package com.pretor_sport.app.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "app.images.upload-dir=target/test-imagenes")
+@AutoConfigureMockMvc
+class ImagenesEnMemoriaResolverTest {
+
+    private static final Path CARPETA = Paths.get("target/test-imagenes");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void borrarImagenes() throws IOException {
+        FileSystemUtils.deleteRecursively(CARPETA);
+    }
+
+    @Test
+    void sirveLaImagenComoInmutableYLaMantieneEnMemoria() throws Exception {
+        byte[] contenido = new byte[4096];
+        Arrays.fill(contenido, (byte) 7);
+        String nombre = guardar(contenido);
+
+        MockHttpServletResponse respuesta = mockMvc.perform(get("/images/" + nombre)).andReturn().getResponse();
+        assertEquals(200, respuesta.getStatus());
+        assertArrayEquals(contenido, respuesta.getContentAsByteArray());
+        assertTrue(respuesta.getContentType().startsWith("image/png"));
+        assertTrue(respuesta.getHeader("Cache-Control").contains("immutable"));
+        assertEquals("nosniff", respuesta.getHeader("X-Content-Type-Options"));
+        String etag = respuesta.getHeader("ETag");
+        assertNotNull(etag);
+
+        //ya esta en memoria: se sigue sirviendo aunque el fichero desaparezca del disco
+        Files.delete(CARPETA.resolve(nombre));
+        respuesta = mockMvc.perform(get("/images/" + nombre)).andReturn().getResponse();
+        assertEquals(200, respuesta.getStatus());
+        assertArrayEquals(contenido, respuesta.getContentAsByteArray());
+        assertEquals(etag, respuesta.getHeader("ETag"));
+    }
+
+    @Test
+    void respondeAPeticionesCondicionalesYDeRango() throws Exception {
+        byte[] contenido = new byte[1000];
+        for (int i = 0; i < contenido.length; i++) {
+            contenido[i] = (byte) i;
+        }
+        String nombre = guardar(contenido);
+        String etag = mockMvc.perform(get("/images/" + nombre)).andReturn().getResponse().getHeader("ETag");
+
+        MockHttpServletResponse noModificada = mockMvc.perform(get("/images/" + nombre)
+            .header("If-None-Match", etag)).andReturn().getResponse();
+        assertEquals(304, noModificada.getStatus());
+        assertEquals(0, noModificada.getContentAsByteArray().length);
+
+        MockHttpServletResponse rango = mockMvc.perform(get("/images/" + nombre)
+            .header("Range", "bytes=100-199")).andReturn().getResponse();
+        assertEquals(206, rango.getStatus());
+        assertEquals("bytes 100-199/1000", rango.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(contenido, 100, 200), rango.getContentAsByteArray());
+    }
+
+    @Test
+    void noSirveRutasFueraDeLaCarpetaDeImagenes() throws Exception {
+        guardar(new byte[] {1});
+
+        //el cortafuegos de Spring Security sigue rechazando estas rutas aunque /images/** se salte la cadena
+        assertEquals(400, mockMvc.perform(get("/images/../pom.xml")).andReturn().getResponse().getStatus());
+        assertEquals(400, mockMvc.perform(get("/images/..%2Fpom.xml")).andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/images/no-existe.png")).andReturn().getResponse().getStatus());
+    }
+
+    private static String guardar(byte[] contenido) throws IOException {
+        Files.createDirectories(CARPETA);
+        String nombre = UUID.randomUUID() + ".png";
+        Files.write(CARPETA.resolve(nombre), contenido);
+        return nombre;
+    }
+}
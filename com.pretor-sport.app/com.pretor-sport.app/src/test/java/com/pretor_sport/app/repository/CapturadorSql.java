@@ -0,0 +1,30 @@
+package com.pretor_sport.app.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//registra el sql que prepara hibernate en el hilo del test (las tareas @Async no se mezclan).
+//se activa con spring.jpa.properties.hibernate.session_factory.statement_inspector
+public class CapturadorSql implements StatementInspector {
+
+    public static final String PROPIEDAD =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.pretor_sport.app.repository.CapturadorSql";
+
+    private static final ThreadLocal<List<String>> SENTENCIAS = ThreadLocal.withInitial(ArrayList::new);
+
+    public static void reiniciar() {
+        SENTENCIAS.get().clear();
+    }
+
+    public static List<String> sentencias() {
+        return List.copyOf(SENTENCIAS.get());
+    }
+
+    @Override
+    public String inspect(String sql) {
+        SENTENCIAS.get().add(sql);
+        return sql;
+    }
+}
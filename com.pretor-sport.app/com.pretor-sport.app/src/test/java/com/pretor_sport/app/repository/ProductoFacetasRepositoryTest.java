@@ -0,0 +1,169 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//los conteos se limitan a los productos de la prueba con idsBusqueda, que es un filtro comun a todas las facetas
+@SpringBootTest
+@Transactional
+class ProductoFacetasRepositoryTest {
+
+    //rangos: 0 = menos de 50, 1 = de 50 a 100, 2 = de 100 a 200, 3 = de 200 a 500, 4 = 500 o mas
+    private static final List<BigDecimal> LIMITES_PRECIO = List.of(
+        new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("200"), new BigDecimal("500"));
+
+    @Autowired
+    private ProductoFacetasRepository facetasRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Categoria futbol;
+    private Categoria tenis;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void crearProductos() {
+        futbol = categoria("Fútbol");
+        tenis = categoria("Tenis");
+
+        crear(futbol, "Alfa", "M", "Rojo", "Algodón", Producto.Genero.HOMBRE, "10", 5, true);
+        crear(futbol, "Alfa", "L", "Azul", "Poliéster", Producto.Genero.MUJER, "60", 5, true);
+        crear(tenis, "Beta", "M", "Rojo", "Algodón", Producto.Genero.HOMBRE, "150", 5, true);
+        crear(tenis, "Beta", "L", "Rojo", "Algodón", Producto.Genero.UNISEX, "600", 5, true);
+        //no disponibles: agotado e inactivo
+        crear(futbol, "Alfa", "M", "Rojo", "Algodón", Producto.Genero.HOMBRE, "20", 0, true);
+        crear(futbol, "Alfa", "S", "Verde", "Algodón", Producto.Genero.NIÑO, "30", 5, false);
+        entityManager.flush();
+    }
+
+    @Test
+    void sinFiltrosCuentaCadaFacetaEnUnaSolaConsulta() {
+        Map<String, Map<String, Long>> conteos = contar(new ProductoFilterDTO(), null);
+
+        assertEquals(Map.of(futbol.getId().toString(), 2L, tenis.getId().toString(), 2L), conteos.get("categoria"));
+        assertEquals(Map.of("Alfa", 2L, "Beta", 2L), conteos.get("marca"));
+        assertEquals(Map.of("M", 2L, "L", 2L), conteos.get("talla"));
+        assertEquals(Map.of("Rojo", 3L, "Azul", 1L), conteos.get("color"));
+        assertEquals(Map.of("Algodón", 3L, "Poliéster", 1L), conteos.get("material"));
+        assertEquals(Map.of("HOMBRE", 2L, "MUJER", 1L, "UNISEX", 1L), conteos.get("genero"));
+        assertEquals(Map.of("0", 1L, "1", 1L, "2", 1L, "4", 1L), conteos.get("precio"));
+    }
+
+    @Test
+    void cadaFacetaIgnoraSuPropioFiltroYAplicaLosDemas() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setMarca("Alfa");
+        filtros.setTallas(List.of("M"));
+
+        Map<String, Map<String, Long>> conteos = contar(filtros, null);
+
+        //marca: solo talla M; talla: solo marca Alfa; el resto con los dos
+        assertEquals(Map.of("Alfa", 1L, "Beta", 1L), conteos.get("marca"));
+        assertEquals(Map.of("M", 1L, "L", 1L), conteos.get("talla"));
+        assertEquals(Map.of("Rojo", 1L), conteos.get("color"));
+        assertEquals(Map.of(futbol.getId().toString(), 1L), conteos.get("categoria"));
+        assertEquals(Map.of("HOMBRE", 1L), conteos.get("genero"));
+        assertEquals(Map.of("0", 1L), conteos.get("precio"));
+    }
+
+    @Test
+    void losFiltrosDeCategoriaColorMaterialYGeneroNoRecortanSuFaceta() {
+        ProductoFilterDTO porCategoria = new ProductoFilterDTO();
+        porCategoria.setCategoriaIds(List.of(tenis.getId()));
+        Map<String, Map<String, Long>> conteos = contar(porCategoria, null);
+        assertEquals(Map.of(futbol.getId().toString(), 2L, tenis.getId().toString(), 2L), conteos.get("categoria"));
+        assertEquals(Map.of("Beta", 2L), conteos.get("marca"));
+
+        ProductoFilterDTO porColorYMaterial = new ProductoFilterDTO();
+        porColorYMaterial.setColores(List.of("Azul"));
+        porColorYMaterial.setMateriales(List.of("Algodón"));
+        conteos = contar(porColorYMaterial, null);
+        //ningun producto azul es de algodon: solo color y material, que ignoran su filtro, tienen valores
+        assertEquals(Map.of("Rojo", 3L), conteos.get("color"));
+        assertEquals(Map.of("Poliéster", 1L), conteos.get("material"));
+        assertNull(conteos.get("marca"));
+
+        conteos = contar(new ProductoFilterDTO(), "HOMBRE");
+        assertEquals(Map.of("HOMBRE", 2L, "MUJER", 1L, "UNISEX", 1L), conteos.get("genero"));
+        assertEquals(Map.of("Alfa", 1L, "Beta", 1L), conteos.get("marca"));
+    }
+
+    @Test
+    void elFiltroDePrecioNoRecortaLosRangosPeroSiLasDemasFacetas() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setPrecioMin(new BigDecimal("50"));
+        filtros.setPrecioMax(new BigDecimal("200"));
+
+        Map<String, Map<String, Long>> conteos = contar(filtros, null);
+
+        assertEquals(Map.of("0", 1L, "1", 1L, "2", 1L, "4", 1L), conteos.get("precio"));
+        assertEquals(Map.of("Alfa", 1L, "Beta", 1L), conteos.get("marca"));
+        assertEquals(Map.of("Azul", 1L, "Rojo", 1L), conteos.get("color"));
+    }
+
+    @Test
+    void sinSoloDisponiblesCuentaAgotadosEInactivos() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setSoloDisponibles(false);
+
+        Map<String, Map<String, Long>> conteos = contar(filtros, null);
+
+        assertEquals(Map.of("Alfa", 4L, "Beta", 2L), conteos.get("marca"));
+        assertEquals(Map.of("M", 3L, "L", 2L, "S", 1L), conteos.get("talla"));
+        assertEquals(Map.of("0", 3L, "1", 1L, "2", 1L, "4", 1L), conteos.get("precio"));
+        assertEquals(Map.of("HOMBRE", 3L, "MUJER", 1L, "UNISEX", 1L, "NIÑO", 1L), conteos.get("genero"));
+    }
+
+    //faceta -> valor -> cantidad
+    private Map<String, Map<String, Long>> contar(ProductoFilterDTO filtros, String genero) {
+        Map<String, Map<String, Long>> conteos = new HashMap<>();
+        for (ProductoFacetasRepository.Conteo conteo
+                : facetasRepository.contarFacetas(filtros, genero, null, null, ids, LIMITES_PRECIO)) {
+            conteos.computeIfAbsent(conteo.faceta(), faceta -> new HashMap<>()).put(conteo.valor(), conteo.cantidad());
+        }
+        return conteos;
+    }
+
+    private Categoria categoria(String nombre) {
+        Categoria categoria = new Categoria();
+        categoria.setNombre(nombre + " " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+        return categoria;
+    }
+
+    private void crear(Categoria categoria, String marca, String talla, String color, String material,
+                       Producto.Genero genero, String precio, int stock, boolean activo) {
+        Producto producto = new Producto();
+        producto.setNombre("Faceta " + marca + " " + talla);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        producto.setTalla(talla);
+        producto.setColor(color);
+        producto.setMaterial(material);
+        producto.setGenero(genero);
+        producto.setPrecio(new BigDecimal(precio));
+        producto.setStock(stock);
+        producto.setActivo(activo);
+        entityManager.persist(producto);
+        ids.add(producto.getId());
+    }
+}
@@ -0,0 +1,154 @@
+package com.pretor_sport.app.repository;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.model.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//comprueba con EXPLAIN que cada combinacion de filtros habituales usa los indices de productos. se cargan filas
+//suficientes con valores repartidos como en un catalogo real, se ejecuta ANALYZE y se pide el plan generico de la
+//sentencia preparada, el que usa postgresql al reutilizarla. todo se deshace al terminar la prueba
+@SpringBootTest(properties = CapturadorSql.PROPIEDAD)
+@Transactional
+class ProductoSpecificationsTest {
+
+    private static final int PRODUCTOS = 20_000;
+    private static final int CATEGORIAS = 100;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cargarCatalogo() {
+        String prefijo = "Plan " + UUID.randomUUID().toString().substring(0, 8) + " ";
+        jdbcTemplate.update(
+            "INSERT INTO categorias (nombre, tipo, orden, activa) " +
+            "SELECT ? || g, 'EQUIPAMIENTO', 0, true FROM generate_series(1, ?) g", prefijo, CATEGORIAS);
+
+        //200 marcas, 5 generos, 10 tallas y 20 colores; precios de 1 a 500
+        jdbcTemplate.update(
+            "INSERT INTO productos (nombre, precio, stock, activo, categoria_id, marca, genero, talla, color) " +
+            "SELECT 'Producto ' || g, 1 + g % 500, 1 + g % 50, true, c.ids[1 + g % ?], " +
+            "'Marca ' || (g % 200), (ARRAY['HOMBRE','MUJER','NIÑO','NIÑA','UNISEX'])[1 + g % 5], " +
+            "'T' || (g % 10), 'Color ' || (g % 20) " +
+            "FROM generate_series(1, ?) g, " +
+            "(SELECT array_agg(id) AS ids FROM categorias WHERE nombre LIKE ? || '%') c",
+            CATEGORIAS, PRODUCTOS, prefijo);
+
+        jdbcTemplate.execute("ANALYZE productos");
+        jdbcTemplate.execute("ANALYZE categorias");
+    }
+
+    @Test
+    void categoriaYPrecioUsanIndice() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(1L, 2L));
+        filtros.setPrecioMin(new BigDecimal("50"));
+        filtros.setPrecioMax(new BigDecimal("60"));
+
+        String plan = planDe(filtros, null);
+
+        assertTrue(plan.contains("idx_producto_categoria") || plan.contains("idx_producto_precio"), plan);
+        assertFalse(plan.contains("Seq Scan on productos"), plan);
+    }
+
+    @Test
+    void marcaYGeneroUsanIndice() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setMarca("Marca 7");
+
+        //el genero no es selectivo (una quinta parte del catalogo): el indice que importa es el de marca
+        String plan = planDe(filtros, Producto.Genero.HOMBRE);
+
+        assertTrue(plan.contains("idx_producto_marca"), plan);
+        assertFalse(plan.contains("Seq Scan on productos"), plan);
+    }
+
+    @Test
+    void tallasYColoresUsanIndice() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setTallas(List.of("T1", "T2"));
+        filtros.setColores(List.of("Color 1", "Color 2"));
+
+        String plan = planDe(filtros, null);
+
+        assertTrue(plan.contains("idx_producto_talla_color"), plan);
+        assertFalse(plan.contains("Seq Scan on productos"), plan);
+    }
+
+    @Test
+    void losFiltrosNoEnvuelvenLasColumnasEnFunciones() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(1L));
+        filtros.setMarca("Marca 7");
+        filtros.setTallas(List.of("T1"));
+        filtros.setColores(List.of("Color 1"));
+
+        String sql = sqlDe(filtros, Producto.Genero.HOMBRE);
+        String where = sql.substring(sql.indexOf(" where "), sql.indexOf(" order by "));
+        for (String funcion : List.of("lower(", "upper(", "cast(", "coalesce(")) {
+            assertFalse(where.contains(funcion), where);
+        }
+    }
+
+    //plan generico de la consulta de la pagina
+    private String planDe(ProductoFilterDTO filtros, Producto.Genero genero) {
+        String sql = sqlDe(filtros, genero);
+        jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+
+        int parametros = (int) sql.chars().filter(c -> c == '?').count();
+        jdbcTemplate.execute("PREPARE consulta_filtros AS " + numerarParametros(sql));
+        try {
+            List<String> plan = jdbcTemplate.queryForList(
+                "EXPLAIN EXECUTE consulta_filtros(" + String.join(", ", Collections.nCopies(parametros, "NULL")) + ")",
+                String.class);
+            return String.join("\n", plan);
+        } finally {
+            jdbcTemplate.execute("DEALLOCATE consulta_filtros");
+        }
+    }
+
+    //ejecuta la consulta de la pagina y devuelve el sql que ha generado hibernate
+    private String sqlDe(ProductoFilterDTO filtros, Producto.Genero genero) {
+        CapturadorSql.reiniciar();
+        productoRepository.findAll(
+            ProductoSpecifications.conFiltros(filtros, genero, null, null, null),
+            PageRequest.of(0, 20, Sort.by("nombre"))
+        );
+
+        return CapturadorSql.sentencias().stream()
+            .filter(sentencia -> sentencia.contains("order by"))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private static String numerarParametros(String sql) {
+        StringBuilder resultado = new StringBuilder();
+        int parametro = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                resultado.append('$').append(++parametro);
+            } else {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.pretor_sport.app.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BCryptEncoderLimitadoTest {
+
+    private BCryptEncoderLimitado encoder;
+
+    @AfterEach
+    void detener() {
+        if (encoder != null) {
+            encoder.detener();
+        }
+    }
+
+    @Test
+    void cifraYVerificaEnElPoolYMideEsperaYCalculo() {
+        encoder = new BCryptEncoderLimitado(4, 1, 10, Duration.ofSeconds(10));
+
+        String cifrada = encoder.encode("secreta123");
+        assertTrue(cifrada.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("secreta123", cifrada));
+        assertFalse(encoder.matches("incorrecta", cifrada));
+
+        Map<String, Object> estadisticas = encoder.estadisticas();
+        assertEquals(1L, estadisticas.get("cifrados"));
+        assertEquals(2L, estadisticas.get("verificaciones"));
+        assertEquals(0L, estadisticas.get("rechazadas"));
+    }
+
+    @Test
+    void conLaColaLlenaRechazaAlMomento() {
+        //un hilo y un hueco en cola: de cuatro peticiones a la vez al menos dos se rechazan sin esperar
+        encoder = new BCryptEncoderLimitado(12, 1, 1, Duration.ofSeconds(30));
+        ExecutorService clientes = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<String>> peticiones = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                peticiones.add(CompletableFuture.supplyAsync(() -> encoder.encode("secreta123"), clientes));
+            }
+
+            int rechazadas = 0;
+            for (CompletableFuture<String> peticion : peticiones) {
+                try {
+                    peticion.join();
+                } catch (CompletionException e) {
+                    assertInstanceOf(HashContrasenasSaturadoException.class, e.getCause());
+                    rechazadas++;
+                }
+            }
+            assertTrue(rechazadas >= 2, "rechazadas: " + rechazadas);
+            assertEquals((long) rechazadas, encoder.estadisticas().get("rechazadas"));
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    @Test
+    void pideRehacerLosHashesConOtroCoste() {
+        encoder = new BCryptEncoderLimitado(10, 1, 1, Duration.ofSeconds(10));
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secreta123")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(12).encode("secreta123")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(10).encode("secreta123")));
+        assertFalse(encoder.upgradeEncoding("no-es-bcrypt"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+}
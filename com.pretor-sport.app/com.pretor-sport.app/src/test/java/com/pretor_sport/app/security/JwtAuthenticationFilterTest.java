@@ -0,0 +1,127 @@
+package com.pretor_sport.app.security;
+
+import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.repository.CapturadorSql;
+import com.pretor_sport.app.repository.UsuarioRepository;
+import com.pretor_sport.app.service.UsuarioService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+//sin @Transactional: la invalidacion de EstadoUsuarioCache se hace tras el commit de UsuarioService
+@SpringBootTest(properties = CapturadorSql.PROPIEDAD)
+@AutoConfigureMockMvc
+class JwtAuthenticationFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    private Usuario usuario;
+
+    @BeforeEach
+    void crearUsuario() {
+        usuario = nuevoUsuario(Usuario.Rol.ROLE_CLIENTE);
+    }
+
+    @AfterEach
+    void borrarUsuario() {
+        usuarioRepository.deleteById(usuario.getId());
+    }
+
+    @Test
+    void autenticaConLosClaimsYSoloConsultaElEstadoLaPrimeraVez() throws Exception {
+        String token = token(usuario.getRol().name());
+
+        assertEquals(200, validar(token));
+        assertEquals(1, consultasDeUsuarios());
+
+        assertEquals(200, validar(token));
+        assertEquals(0, consultasDeUsuarios());
+
+        //un cambio del usuario descarta el estado guardado
+        usuarioService.actualizarPerfil(usuario.getId(), usuario);
+        assertEquals(200, validar(token));
+        assertEquals(1, consultasDeUsuarios());
+    }
+
+    @Test
+    void rechazaLosTokensDeUsuariosDesactivadosOConOtroRol() throws Exception {
+        String token = token(usuario.getRol().name());
+        assertEquals(200, validar(token));
+
+        //el rol del token tiene que seguir siendo el del usuario
+        assertEquals(401, validar(token(Usuario.Rol.ROLE_ADMIN.name())));
+
+        //solo un administrador puede desactivar la cuenta, y el token deja de valer al momento
+        assertEquals(403, desactivar(token));
+        assertEquals(200, validar(token));
+        Usuario admin = nuevoUsuario(Usuario.Rol.ROLE_ADMIN);
+        try {
+            assertEquals(200, desactivar(token(admin, admin.getRol().name())));
+        } finally {
+            usuarioRepository.deleteById(admin.getId());
+        }
+        assertEquals(401, validar(token));
+    }
+
+    private Usuario nuevoUsuario(Usuario.Rol rol) {
+        Usuario nuevo = new Usuario();
+        nuevo.setNombre("Cliente");
+        nuevo.setApellidos("De Prueba");
+        nuevo.setEmail("filtro-" + UUID.randomUUID().toString().substring(0, 8) + "@pretor.com");
+        nuevo.setPassword("no-se-usa");
+        nuevo.setRol(rol);
+        nuevo.setActivo(true);
+        nuevo.setEmailVerificado(true);
+        return usuarioRepository.save(nuevo);
+    }
+
+    private String token(String rol) {
+        return token(usuario, rol);
+    }
+
+    private String token(Usuario titular, String rol) {
+        return jwtUtil.generateToken(User.withUsername(titular.getEmail()).password("").build(), titular.getId(), rol);
+    }
+
+    private int desactivar(String token) throws Exception {
+        return mockMvc.perform(delete("/usuarios/" + usuario.getId()).header("Authorization", "Bearer " + token))
+            .andReturn()
+            .getResponse()
+            .getStatus();
+    }
+
+    private int validar(String token) throws Exception {
+        CapturadorSql.reiniciar();
+        return mockMvc.perform(post("/auth/validate-token").header("Authorization", "Bearer " + token))
+            .andReturn()
+            .getResponse()
+            .getStatus();
+    }
+
+    private static long consultasDeUsuarios() {
+        return CapturadorSql.sentencias().stream()
+            .filter(sql -> sql.toLowerCase().contains("from usuarios"))
+            .count();
+    }
+}
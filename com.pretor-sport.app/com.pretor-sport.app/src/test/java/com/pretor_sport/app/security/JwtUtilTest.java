@@ -0,0 +1,83 @@
+package com.pretor_sport.app.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class JwtUtilTest {
+
+    private static final UserDetails CLIENTE = User.withUsername("cliente@pretor.com")
+        .password("x")
+        .roles("CLIENTE")
+        .build();
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Value("${JWT_SECRET:pretorSportSecretKeyForJWTTokenGenerationThatShouldBeLongEnoughForHS512Algorithm}")
+    private String secret;
+
+    @Test
+    void verificaUnaVezYDevuelveLosClaims() {
+        TokenJwt token = jwtUtil.verificar(jwtUtil.generateToken(CLIENTE, 42L, "CLIENTE")).orElseThrow();
+
+        assertEquals("cliente@pretor.com", token.username());
+        assertEquals(42L, token.userId());
+        assertEquals("CLIENTE", token.rol());
+        assertEquals(TokenJwt.TIPO_ACCESS, token.tipo());
+        assertFalse(token.isRefresh());
+        assertFalse(token.isExpirado());
+        assertTrue(token.emitido().before(token.expiracion()));
+    }
+
+    @Test
+    void rechazaTokensManipuladosCaducadosOFirmadosConOtraClave() {
+        String valido = jwtUtil.generateToken(CLIENTE, 42L, "CLIENTE");
+        String[] partes = valido.split("\\.");
+        String otroPayload = Jwts.builder().subject("admin@pretor.com").compact().split("\\.")[1];
+
+        assertTrue(jwtUtil.verificar(partes[0] + "." + otroPayload + "." + partes[2]).isEmpty());
+        assertTrue(jwtUtil.verificar(firmar(secret, Instant.now().minusSeconds(60))).isEmpty());
+        assertTrue(jwtUtil.verificar(firmar(secret.replace('a', 'b') + "!", Instant.now().plusSeconds(60))).isEmpty());
+        assertTrue(jwtUtil.verificar("no-es-un-jwt").isEmpty());
+        assertTrue(jwtUtil.verificar(null).isEmpty());
+    }
+
+    @Test
+    void soloRenuevaDesdeUnRefreshTokenVerificado() {
+        TokenJwt refresh = jwtUtil.verificar(jwtUtil.generateRefreshToken(CLIENTE, 42L, "CLIENTE")).orElseThrow();
+        TokenJwt access = jwtUtil.verificar(jwtUtil.generateToken(CLIENTE, 42L, "CLIENTE")).orElseThrow();
+
+        assertTrue(refresh.isRefresh());
+        TokenJwt renovado = jwtUtil.verificar(jwtUtil.refreshAccessToken(refresh)).orElseThrow();
+        assertEquals(TokenJwt.TIPO_ACCESS, renovado.tipo());
+        assertEquals(42L, renovado.userId());
+        assertEquals("CLIENTE", renovado.rol());
+
+        assertThrows(IllegalArgumentException.class, () -> jwtUtil.refreshAccessToken(access));
+    }
+
+    private static String firmar(String clave, Instant expiracion) {
+        return Jwts.builder()
+            .subject("cliente@pretor.com")
+            .claim("type", TokenJwt.TIPO_ACCESS)
+            .issuedAt(Date.from(expiracion.minusSeconds(3600)))
+            .expiration(Date.from(expiracion))
+            .signWith(Keys.hmacShaKeyFor(clave.getBytes()), Jwts.SIG.HS512)
+            .compact();
+    }
+}
@@ -0,0 +1,140 @@
+package com.pretor_sport.app.security;
+
+import com.pretor_sport.app.model.TokenRevocado;
+import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.repository.CapturadorSql;
+import com.pretor_sport.app.repository.TokenRevocadoRepository;
+import com.pretor_sport.app.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+//sin @Transactional: el logout se confirma y la tabla se limpia al final
+@SpringBootTest(properties = CapturadorSql.PROPIEDAD)
+@AutoConfigureMockMvc
+class TokensRevocadosTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokensRevocados tokensRevocados;
+
+    @Autowired
+    private TokenRevocadoRepository tokenRevocadoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private Usuario usuario;
+    private final List<String> jtis = new ArrayList<>();
+
+    @BeforeEach
+    void crearUsuario() {
+        usuario = new Usuario();
+        usuario.setNombre("Cliente");
+        usuario.setApellidos("De Prueba");
+        usuario.setEmail("logout-" + UUID.randomUUID().toString().substring(0, 8) + "@pretor.com");
+        usuario.setPassword("no-se-usa");
+        usuario.setRol(Usuario.Rol.ROLE_CLIENTE);
+        usuario.setActivo(true);
+        usuario.setEmailVerificado(true);
+        usuario = usuarioRepository.save(usuario);
+    }
+
+    @AfterEach
+    void limpiar() {
+        tokenRevocadoRepository.deleteAllById(jtis);
+        usuarioRepository.deleteById(usuario.getId());
+    }
+
+    @Test
+    void elLogoutRevocaElTokenYLaComprobacionNoConsultaLaBase() throws Exception {
+        String token = token();
+        String otroToken = token();
+        assertNotEquals(jwtUtil.verificar(token).orElseThrow().id(), jwtUtil.verificar(otroToken).orElseThrow().id());
+
+        assertEquals(200, peticion("/auth/validate-token", token));
+        assertEquals(200, peticion("/auth/logout", token));
+        jtis.add(jwtUtil.verificar(token).orElseThrow().id());
+        assertTrue(tokenRevocadoRepository.existsById(jtis.get(0)));
+
+        assertEquals(401, peticion("/auth/validate-token", token));
+        assertEquals(List.of(), CapturadorSql.sentencias());
+
+        //las demas sesiones del usuario siguen abiertas
+        assertEquals(200, peticion("/auth/validate-token", otroToken));
+    }
+
+    @Test
+    void recogeLasRevocacionesDeOtrosNodosYPodaLasCaducadas() {
+        String vigente = UUID.randomUUID().toString();
+        String caducado = UUID.randomUUID().toString();
+        jtis.addAll(List.of(vigente, caducado));
+        LocalDateTime ahora = LocalDateTime.now();
+        tokenRevocadoRepository.save(new TokenRevocado(vigente, usuario.getId(), ahora.plusHours(1), ahora));
+        tokenRevocadoRepository.save(new TokenRevocado(caducado, usuario.getId(), ahora.minusMinutes(1), ahora));
+        assertFalse(tokensRevocados.estaRevocado(vigente));
+
+        tokensRevocados.sincronizar();
+        assertTrue(tokensRevocados.estaRevocado(vigente));
+        assertFalse(tokensRevocados.estaRevocado(caducado));
+
+        tokensRevocados.podar();
+        assertTrue(tokensRevocados.estaRevocado(vigente));
+        assertFalse(tokenRevocadoRepository.existsById(caducado));
+    }
+
+    @Test
+    void elFiltroDeBloomNoDaFalsosNegativos() {
+        FiltroBloom filtro = new FiltroBloom(1000, 0.01);
+        List<String> anadidos = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String jti = UUID.randomUUID().toString();
+            filtro.anadir(jti);
+            anadidos.add(jti);
+        }
+        anadidos.forEach(jti -> assertTrue(filtro.puedeContener(jti)));
+
+        int falsosPositivos = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filtro.puedeContener(UUID.randomUUID().toString())) {
+                falsosPositivos++;
+            }
+        }
+        //1% esperado; margen amplio para que el test no dependa del azar
+        assertTrue(falsosPositivos < 300, "falsos positivos: " + falsosPositivos);
+    }
+
+    private String token() {
+        return jwtUtil.generateToken(User.withUsername(usuario.getEmail()).password("").build(),
+            usuario.getId(), usuario.getRol().name());
+    }
+
+    private int peticion(String ruta, String token) throws Exception {
+        CapturadorSql.reiniciar();
+        return mockMvc.perform(post(ruta).header("Authorization", "Bearer " + token))
+            .andReturn()
+            .getResponse()
+            .getStatus();
+    }
+}
@@ -0,0 +1,116 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.LoginRequestDTO;
+import com.pretor_sport.app.dto.response.AuthResponseDTO;
+import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.repository.CapturadorSql;
+import com.pretor_sport.app.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//sin @Transactional: el volcado del ultimo acceso escribe con JDBC fuera de la transaccion del test
+@SpringBootTest(properties = {CapturadorSql.PROPIEDAD, "app.auth.last-access.flush-ms=3600000"})
+class AuthServiceLoginTest {
+
+    private static final String PASSWORD = "secreta123";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UltimoAccesoService ultimoAccesoService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private Usuario usuario;
+
+    @BeforeEach
+    void crearUsuario() {
+        usuario = new Usuario();
+        usuario.setNombre("Cliente");
+        usuario.setApellidos("De Prueba");
+        usuario.setEmail("login-" + UUID.randomUUID().toString().substring(0, 8) + "@pretor.com");
+        usuario.setPassword(passwordEncoder.encode(PASSWORD));
+        usuario.setRol(Usuario.Rol.ROLE_CLIENTE);
+        usuario.setActivo(true);
+        usuario.setEmailVerificado(true);
+        usuario = usuarioRepository.save(usuario);
+    }
+
+    @AfterEach
+    void borrarUsuario() {
+        ultimoAccesoService.volcar();
+        usuarioRepository.deleteById(usuario.getId());
+    }
+
+    @Test
+    void elLoginCargaElUsuarioUnaVezYNoEscribe() {
+        CapturadorSql.reiniciar();
+        AuthResponseDTO respuesta = authService.login(new LoginRequestDTO(usuario.getEmail(), PASSWORD, false));
+
+        assertEquals(usuario.getId(), respuesta.getUsuario().getId());
+        List<String> sentencias = CapturadorSql.sentencias();
+        assertEquals(1, sentencias.size(), sentencias.toString());
+        String sql = sentencias.get(0);
+        assertTrue(sql.contains("select") && sql.contains("from usuarios"), sql);
+
+        assertThrows(BadCredentialsException.class,
+            () -> authService.login(new LoginRequestDTO(usuario.getEmail(), "incorrecta", false)));
+    }
+
+    @Test
+    void losAccesosSeAgrupanYSeGuardanEnElVolcado() {
+        authService.login(new LoginRequestDTO(usuario.getEmail(), PASSWORD, false));
+        LocalDateTime primero = ultimoAccesoService.pendiente(usuario.getId()).orElseThrow();
+        authService.login(new LoginRequestDTO(usuario.getEmail(), PASSWORD, false));
+        LocalDateTime segundo = ultimoAccesoService.pendiente(usuario.getId()).orElseThrow();
+        assertTrue(!segundo.isBefore(primero));
+
+        //todavia no se ha escrito nada
+        assertNull(usuarioRepository.findById(usuario.getId()).orElseThrow().getUltimoAcceso());
+
+        assertTrue(ultimoAccesoService.volcar() >= 1);
+        assertTrue(ultimoAccesoService.pendiente(usuario.getId()).isEmpty());
+        LocalDateTime guardado = usuarioRepository.findById(usuario.getId()).orElseThrow().getUltimoAcceso();
+        assertEquals(segundo.truncatedTo(ChronoUnit.MILLIS), guardado.truncatedTo(ChronoUnit.MILLIS));
+
+        //un acceso anterior (p. ej. de otra instancia que vuelca tarde) no retrocede la fecha
+        ultimoAccesoService.registrar(usuario.getId(), segundo.minusHours(1));
+        ultimoAccesoService.volcar();
+        assertEquals(guardado, usuarioRepository.findById(usuario.getId()).orElseThrow().getUltimoAcceso());
+    }
+
+    @Test
+    void rehaceElHashConElCosteConfiguradoEnElLogin() {
+        usuario.setPassword(new BCryptPasswordEncoder(4).encode(PASSWORD));
+        usuario = usuarioRepository.save(usuario);
+
+        authService.login(new LoginRequestDTO(usuario.getEmail(), PASSWORD, false));
+
+        String rehecha = usuarioRepository.findById(usuario.getId()).orElseThrow().getPassword();
+        assertTrue(rehecha.startsWith("$2a$12$"), rehecha);
+        assertFalse(passwordEncoder.upgradeEncoding(rehecha));
+        assertTrue(passwordEncoder.matches(PASSWORD, rehecha));
+    }
+}
@@ -0,0 +1,169 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.repository.ProductoFacetasRepository;
+import com.pretor_sport.app.repository.ProductoFila;
+import com.pretor_sport.app.repository.ProductoListadoRepository;
+import com.pretor_sport.app.repository.ProductoSpecifications;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//el catalogo en memoria debe devolver lo mismo que las consultas SQL. contexto propio (enabled=false explicito):
+//el catalogo queda construido al terminar y no debe servir los listados de otras pruebas
+@SpringBootTest(properties = "app.catalog.columnar.enabled=false")
+@Transactional
+class CatalogoColumnarServiceTest {
+
+    private static final List<BigDecimal> LIMITES_PRECIO = List.of(
+        new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("200"), new BigDecimal("500"));
+
+    @Autowired
+    private CatalogoColumnarService catalogoColumnar;
+
+    @Autowired
+    private ProductoListadoRepository productoListadoRepository;
+
+    @Autowired
+    private ProductoFacetasRepository productoFacetasRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void crearProductos() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Paridad " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        //nombres, marcas y modelos que ordenan distinto segun la collation: mayusculas, acentos, ñ, espacios y signos
+        crear(categoria, "Zapatilla", "Alfa", "Z1", "M", "Rojo", Producto.Genero.HOMBRE, "10.50", "0.300", 5, true);
+        crear(categoria, "agua", "alfa", null, "L", "Azul", Producto.Genero.MUJER, "60", null, 3, true);
+        crear(categoria, "Águila", "Ácido", "a-1", "M", "Rojo", Producto.Genero.UNISEX, "150", "1.250", 8, true);
+        crear(categoria, "balón", null, "b 2", "S", "Verde", Producto.Genero.NIÑO, "600", "0.450", 1, true);
+        crear(categoria, "Balón", "Beta", "B2", "M", "Azul", Producto.Genero.HOMBRE, "49.99", "2.000", 0, true);
+        crear(categoria, "Ñandú", "Ñu", "ñ", "L", "Rojo", Producto.Genero.NIÑA, "100", "0.100", 7, true);
+        crear(categoria, "nube", "Beta", "10", "XL", "Blanco", null, "200", "0.800", 2, false);
+        crear(categoria, "b b", "beta", "9", "M", "Rojo", Producto.Genero.MUJER, "99.95", "0.500", 4, true);
+        crear(categoria, "a-b", "Alfa", null, "S", null, Producto.Genero.HOMBRE, "75", "1.000", 6, true);
+        crear(categoria, "10 km", "Ácido", "Z1", "L", "Verde", Producto.Genero.UNISEX, "10.50", null, 9, true);
+        entityManager.flush();
+
+        catalogoColumnar.reconstruir();
+    }
+
+    @Test
+    void listaLoMismoQueSqlParaCadaFiltroYOrden() {
+        for (ProductoFilterDTO filtros : filtros()) {
+            String genero = filtros.getGenero();
+            for (String campo : CatalogoColumnar.CAMPOS_ORDEN) {
+                for (boolean descendente : List.of(false, true)) {
+                    CatalogoColumnarService.ResultadoListado enMemoria = catalogoColumnar
+                        .listar(filtros, genero, ids, null, campo, descendente)
+                        .orElseThrow();
+
+                    //el catalogo desempata por id en el mismo sentido que el campo
+                    Sort.Direction direccion = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+                    Page<ProductoFila> sql = productoListadoRepository.buscar(
+                        ProductoSpecifications.conFiltros(filtros, generoEnum(genero), null, null, ids),
+                        PageRequest.of(filtros.getPagina(), filtros.getTamanoPagina(), Sort.by(direccion, campo, "id")));
+
+                    String caso = filtros + " orden " + campo + (descendente ? " desc" : " asc");
+                    assertEquals(sql.map(ProductoFila::id).getContent(), enMemoria.productoIds(), caso);
+                    assertEquals(sql.getTotalElements(), enMemoria.total(), caso);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cuentaLasMismasFacetasQueSql() {
+        for (ProductoFilterDTO filtros : filtros()) {
+            List<ProductoFacetasRepository.Conteo> enMemoria = catalogoColumnar
+                .contarFacetas(filtros, filtros.getGenero(), ids)
+                .orElseThrow();
+            List<ProductoFacetasRepository.Conteo> sql = productoFacetasRepository
+                .contarFacetas(filtros, filtros.getGenero(), null, null, ids, LIMITES_PRECIO);
+
+            assertEquals(new HashSet<>(sql), new HashSet<>(enMemoria), filtros.toString());
+            assertEquals(sql.size(), enMemoria.size(), filtros.toString());
+        }
+    }
+
+    private static List<ProductoFilterDTO> filtros() {
+        List<ProductoFilterDTO> filtros = new ArrayList<>();
+        filtros.add(new ProductoFilterDTO());
+
+        ProductoFilterDTO todos = new ProductoFilterDTO();
+        todos.setSoloDisponibles(false);
+        filtros.add(todos);
+
+        ProductoFilterDTO marcaYPrecio = new ProductoFilterDTO();
+        marcaYPrecio.setMarca("Alfa");
+        marcaYPrecio.setPrecioMin(new BigDecimal("10.50"));
+        marcaYPrecio.setPrecioMax(new BigDecimal("100"));
+        filtros.add(marcaYPrecio);
+
+        ProductoFilterDTO tallasYColores = new ProductoFilterDTO();
+        tallasYColores.setSoloDisponibles(false);
+        tallasYColores.setTallas(List.of("M", "L"));
+        tallasYColores.setColores(List.of("Rojo", "Azul"));
+        filtros.add(tallasYColores);
+
+        ProductoFilterDTO generoYPeso = new ProductoFilterDTO();
+        generoYPeso.setGenero("HOMBRE");
+        generoYPeso.setPesoMin(new BigDecimal("0.3"));
+        generoYPeso.setPesoMax(new BigDecimal("1.0"));
+        filtros.add(generoYPeso);
+
+        //segunda pagina
+        ProductoFilterDTO pagina = new ProductoFilterDTO();
+        pagina.setSoloDisponibles(false);
+        pagina.setTamanoPagina(3);
+        pagina.setPagina(1);
+        filtros.add(pagina);
+        return filtros;
+    }
+
+    private static Producto.Genero generoEnum(String genero) {
+        return genero != null ? Producto.Genero.valueOf(genero) : null;
+    }
+
+    private void crear(Categoria categoria, String nombre, String marca, String modelo, String talla, String color,
+                       Producto.Genero genero, String precio, String peso, int stock, boolean activo) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        producto.setModelo(modelo);
+        producto.setTalla(talla);
+        producto.setColor(color);
+        producto.setMaterial("Algodón");
+        producto.setGenero(genero);
+        producto.setPrecio(new BigDecimal(precio));
+        producto.setPeso(peso != null ? new BigDecimal(peso) : null);
+        producto.setStock(stock);
+        producto.setActivo(activo);
+        entityManager.persist(producto);
+        ids.add(producto.getId());
+    }
+}
@@ -0,0 +1,60 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogoColumnarTest {
+
+    @Test
+    void losLimitesFueraDeRangoSeRecortanEnLugarDeFallar() {
+        assertEquals(List.of(1L, 2L), listar(filtros("1e30", null, "1e30", null)));
+        assertEquals(List.of(1L, 2L), listar(filtros(null, "-1e30", "1E+2147483647", null)));
+        assertEquals(List.of(), listar(filtros(null, "1e30", null, null)));
+        assertEquals(List.of(), listar(filtros(null, null, null, "1e30")));
+        assertEquals(List.of(2L), listar(filtros("1E+2147483647", "50", null, null)));
+    }
+
+    @Test
+    void ordenaElTextoComoLaCollationDeLaBaseDeDatos() {
+        List<String> nombres = List.of("balón", "Zapatilla", "Águila", "agua", "Ñandú", "nube");
+
+        //C y C.UTF-8: orden de code points, mayusculas antes que minusculas y letras acentuadas al final
+        assertEquals(List.of("Zapatilla", "agua", "balón", "nube", "Águila", "Ñandú"),
+            nombres.stream().sorted(CatalogoColumnar.ordenTexto("C.UTF-8")).toList());
+        assertEquals(List.of("Zapatilla", "agua", "balón", "nube", "Águila", "Ñandú"),
+            nombres.stream().sorted(CatalogoColumnar.ordenTexto("C")).toList());
+
+        //con idioma: sin distinguir mayusculas ni acentos en primer nivel y la ñ detras de la n
+        List<String> espanol = List.of("agua", "Águila", "balón", "nube", "Ñandú", "Zapatilla");
+        assertEquals(espanol, nombres.stream().sorted(CatalogoColumnar.ordenTexto("es_ES.UTF-8")).toList());
+        assertEquals(espanol, nombres.stream().sorted(CatalogoColumnar.ordenTexto("es-x-icu")).toList());
+    }
+
+    private static List<Long> listar(ProductoFilterDTO filtros) {
+        CatalogoColumnar catalogo = new CatalogoColumnar(List.of(new BigDecimal("50")), "C.UTF-8");
+        catalogo.cargar(List.of(fila(1L, "10.00", "0.500"), fila(2L, "80.00", "1.200")));
+        catalogo.ordenar();
+        return catalogo.listar(filtros, null, null, null, "precio", false, 0, 10).productoIds();
+    }
+
+    private static ProductoFilterDTO filtros(String precioMax, String precioMin, String pesoMax, String pesoMin) {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setSoloDisponibles(false);
+        filtros.setPrecioMax(precioMax != null ? new BigDecimal(precioMax) : null);
+        filtros.setPrecioMin(precioMin != null ? new BigDecimal(precioMin) : null);
+        filtros.setPesoMax(pesoMax != null ? new BigDecimal(pesoMax) : null);
+        filtros.setPesoMin(pesoMin != null ? new BigDecimal(pesoMin) : null);
+        return filtros;
+    }
+
+    private static CatalogoColumnar.Fila fila(Long id, String precio, String peso) {
+        return new CatalogoColumnar.Fila(id, 1L, "Marca", "M", "rojo", "algodon", null,
+            new BigDecimal(precio), new BigDecimal(peso), 5, true, "Producto " + id, null, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,69 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.repository.CategoriaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//sin @Transactional: la revision avanza al confirmar
+@SpringBootTest
+class CatalogoRevisionServiceTest {
+
+    @Autowired
+    private CatalogoRevisionService catalogoRevision;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void unListadoGuardadoConUnaRevisionNoSeSirveConLaSiguiente() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setMarca("revision-" + UUID.randomUUID());
+
+        Page<ProductoResponseDTO> primero = productoService.listarProductos(filtros);
+        assertSame(primero, productoService.listarProductos(filtros));
+
+        //sin vaciar la cache: como si el listado anterior se hubiera guardado despues de la invalidacion
+        catalogoRevision.avanzar();
+        assertNotSame(primero, productoService.listarProductos(filtros));
+    }
+
+    @Test
+    void editarUnaCategoriaAvanzaLaRevisionAlConfirmar() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Revision " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        Long id = categoriaRepository.save(categoria).getId();
+
+        try {
+            long antes = catalogoRevision.revision();
+            transactionTemplate.executeWithoutResult(estado -> {
+                Categoria guardada = categoriaRepository.findById(id).orElseThrow();
+                guardada.setNombre(guardada.getNombre() + " editada");
+                categoriaRepository.saveAndFlush(guardada);
+                assertEquals(antes, catalogoRevision.revision());
+            });
+            assertTrue(catalogoRevision.revision() > antes);
+        } finally {
+            categoriaRepository.deleteById(id);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.CacheConfig;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.DetallePedido;
+import com.pretor_sport.app.model.Pedido;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.model.Venta;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//el ranking de destacados prioriza las ventas recientes y deja fuera los productos eliminados
+@SpringBootTest
+@Transactional
+class DestacadosServiceTest {
+
+    @Autowired
+    private DestacadosService destacadosService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void productoMasVendidoEncabezaElRanking() {
+        Producto nuevo = crearProducto("Nuevo sin ventas");
+        Producto vendido = crearProducto("Vendido");
+        registrarVenta(vendido, 1_000_000);
+        entityManager.flush();
+
+        destacadosService.refrescar();
+
+        List<Long> ranking = destacadosService.obtener(1).orElseThrow();
+        assertEquals(vendido.getId(), ranking.get(0));
+        //dentro de la transaccion la cache solo se vacia al confirmar
+        cacheManager.getCache(CacheConfig.PRODUCTOS_DESTACADOS).invalidate();
+        assertEquals(vendido.getId(), productoService.obtenerProductosDestacados(1).get(0).getId());
+        assertTrue(destacadosService.obtener(2).orElseThrow().contains(nuevo.getId()));
+    }
+
+    @Test
+    void productoEliminadoSaleDelRanking() {
+        Producto vendido = crearProducto("Vendido y eliminado");
+        registrarVenta(vendido, 1_000_000);
+        entityManager.flush();
+        destacadosService.refrescar();
+
+        assertEquals(vendido.getId(), destacadosService.obtener(1).orElseThrow().get(0));
+
+        //la prueba no llega al commit, asi que el evento se entrega directamente
+        destacadosService.onProductoCambiado(ProductoCambiadoEvent.de(vendido.getId(), ProductoCambiadoEvent.Tipo.ELIMINADO));
+
+        assertFalse(destacadosService.obtener(1).map(ids -> ids.contains(vendido.getId())).orElse(false));
+    }
+
+    //el ranking calculado dentro de la transaccion de la prueba contiene productos que ya no existen
+    @AfterTransaction
+    void recalcular() {
+        destacadosService.refrescar();
+    }
+
+    private Producto crearProducto(String nombre) {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Destacados " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStock(50);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+        return producto;
+    }
+
+    private void registrarVenta(Producto producto, int cantidad) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Cliente");
+        usuario.setApellidos("Destacados");
+        usuario.setEmail("destacados-" + UUID.randomUUID() + "@test.com");
+        usuario.setPassword("x");
+        entityManager.persist(usuario);
+
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(usuario);
+        pedido.setEstado("COMPLETADO");
+        DetallePedido detalle = new DetallePedido();
+        detalle.setPedido(pedido);
+        detalle.setProducto(producto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(producto.getPrecio());
+        pedido.getDetalles().add(detalle);
+        entityManager.persist(pedido);
+
+        Venta venta = new Venta();
+        venta.setPedido(pedido);
+        venta.setTotalVenta(pedido.getSubtotal());
+        entityManager.persist(venta);
+    }
+}
@@ -0,0 +1,136 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.images.upload-dir=target/test-almacen")
+@Transactional
+class ImagenAlmacenServiceTest {
+
+    private static final Path CARPETA = Paths.get("target/test-almacen");
+
+    @Autowired
+    private ImagenAlmacenService imagenAlmacenService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Value("${app.images.base-url}")
+    private String baseUrl;
+
+    @AfterEach
+    void borrarImagenes() throws IOException {
+        FileSystemUtils.deleteRecursively(CARPETA);
+    }
+
+    @Test
+    void laMismaImagenSubidaParaVariosProductosSeGuardaUnaVez() throws Exception {
+        byte[] contenido = "la misma foto del proveedor".getBytes();
+        Producto rojo = crearProducto();
+        Producto azul = crearProducto();
+
+        String urlRojo = productoService.saveProductImage(rojo.getId(),
+            new MockMultipartFile("file", "rojo.png", "image/png", contenido));
+        String urlAzul = productoService.saveProductImage(azul.getId(),
+            new MockMultipartFile("file", "azul.PNG", "image/png", contenido));
+
+        assertEquals(urlRojo, urlAzul);
+        assertTrue(urlRojo.endsWith("/" + sha256(contenido) + ".png"));
+        assertEquals(List.of(urlRojo.substring(urlRojo.lastIndexOf('/') + 1)), ficheros());
+    }
+
+    @Test
+    void elBarridoBorraSoloLoQueNingunProductoUsaYaPasadoElPeriodoDeGracia() throws Exception {
+        Producto producto = crearProducto();
+        String url = productoService.saveProductImage(producto.getId(),
+            new MockMultipartFile("file", "foto.png", "image/png", new byte[] {1, 2, 3}));
+        String usada = url.substring(url.lastIndexOf('/') + 1);
+        String varianteUsada = usada.replace(".png", "-thumbnail.webp");
+        entityManager.flush();
+
+        Files.write(CARPETA.resolve(varianteUsada), new byte[] {4});
+        Files.write(CARPETA.resolve("huerfana.jpeg"), new byte[] {5});
+        Files.write(CARPETA.resolve("huerfana-medium.jpg"), new byte[] {6});
+        Files.write(CARPETA.resolve(".subida-abandonada.tmp"), new byte[] {7});
+        Files.write(CARPETA.resolve(".gitkeep"), new byte[0]);
+        Files.write(CARPETA.resolve("reciente.png"), new byte[] {8});
+        for (String nombre : List.of(usada, varianteUsada, "huerfana.jpeg", "huerfana-medium.jpg",
+                                     ".subida-abandonada.tmp", ".gitkeep")) {
+            envejecer(nombre);
+        }
+
+        assertEquals(3, imagenAlmacenService.barrer());
+        assertEquals(List.of(".gitkeep", usada, varianteUsada, "reciente.png").stream().sorted().toList(), ficheros());
+
+        //una subida que reutiliza un fichero huerfano lo protege del siguiente barrido
+        byte[] contenido = {9, 9, 9};
+        String huerfana = sha256(contenido) + ".png";
+        Files.write(CARPETA.resolve(huerfana), contenido);
+        envejecer(huerfana);
+        assertEquals(baseUrl + "/" + huerfana,
+            imagenAlmacenService.guardar(new ByteArrayInputStream(contenido), ".png"));
+        assertEquals(0, imagenAlmacenService.barrer());
+        assertTrue(Files.exists(CARPETA.resolve(huerfana)));
+    }
+
+    private Producto crearProducto() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Almacen " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        Producto producto = new Producto();
+        producto.setNombre("Camiseta");
+        producto.setPrecio(new BigDecimal("19.90"));
+        producto.setStock(5);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+        entityManager.flush();
+        return producto;
+    }
+
+    private static void envejecer(String nombre) throws IOException {
+        Files.setLastModifiedTime(CARPETA.resolve(nombre), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+    }
+
+    private static List<String> ficheros() throws IOException {
+        try (Stream<Path> ficheros = Files.list(CARPETA)) {
+            return ficheros.map(fichero -> fichero.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String sha256(byte[] contenido) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+    }
+}
@@ -0,0 +1,123 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = "app.images.upload-dir=target/test-uploads")
+@Transactional
+class ImagenVariantesServiceTest {
+
+    private static final Path CARPETA = Paths.get("target/test-uploads");
+
+    @Autowired
+    private ImagenVariantesService imagenVariantesService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @AfterEach
+    void borrarImagenes() throws IOException {
+        FileSystemUtils.deleteRecursively(CARPETA);
+    }
+
+    @Test
+    void generaLasVariantesSinAmpliarYLasRegistraEnElProducto() throws IOException {
+        Producto producto = crearProducto();
+        productoService.saveProductImage(producto.getId(),
+            new MockMultipartFile("file", "foto.png", "image/png", png(1000, 500)));
+
+        imagenVariantesService.procesar(producto.getId());
+        entityManager.clear();
+
+        Producto guardado = entityManager.find(Producto.class, producto.getId());
+        Map<String, Map<String, String>> urls = ImagenVariantesService.urls(guardado.getImagenUrl(), guardado.getImagenVariantes());
+        assertNotNull(urls);
+        assertEquals(List.of("thumbnail", "medium", "large"), List.copyOf(urls.keySet()));
+
+        @SuppressWarnings("unchecked")
+        List<String> formatos = (List<String>) imagenVariantesService.estadisticas().get("formatos");
+        for (String formato : formatos) {
+            assertDimensiones(urls.get("thumbnail").get(formato), 200, 100);
+            assertDimensiones(urls.get("medium").get(formato), 600, 300);
+            //la original es menor que 'large': se recomprime sin ampliarla
+            assertDimensiones(urls.get("large").get(formato), 1000, 500);
+        }
+    }
+
+    @Test
+    void unaImagenNuevaDescartaLasVariantesAnteriores() throws IOException {
+        Producto producto = crearProducto();
+        productoService.saveProductImage(producto.getId(),
+            new MockMultipartFile("file", "foto.png", "image/png", png(300, 300)));
+        imagenVariantesService.procesar(producto.getId());
+
+        productoService.saveProductImage(producto.getId(),
+            new MockMultipartFile("file", "otra.png", "image/png", png(400, 300)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertNull(entityManager.find(Producto.class, producto.getId()).getImagenVariantes());
+    }
+
+    private Producto crearProducto() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Imagenes " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        Producto producto = new Producto();
+        producto.setNombre("Camiseta");
+        producto.setPrecio(new BigDecimal("19.90"));
+        producto.setStock(5);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+        entityManager.flush();
+        return producto;
+    }
+
+    private static byte[] png(int ancho, int alto) throws IOException {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D grafico = imagen.createGraphics();
+        grafico.setColor(Color.RED);
+        grafico.fillRect(0, 0, ancho / 2, alto);
+        grafico.dispose();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(imagen, "png", salida);
+        return salida.toByteArray();
+    }
+
+    private static void assertDimensiones(String url, int ancho, int alto) throws IOException {
+        BufferedImage imagen = ImageIO.read(CARPETA.resolve(url.substring(url.lastIndexOf('/') + 1)).toFile());
+        assertNotNull(imagen, url);
+        assertEquals(ancho, imagen.getWidth(), url);
+        assertEquals(alto, imagen.getHeight(), url);
+    }
+}
@@ -0,0 +1,156 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.CursorPageDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Proveedor;
+import com.pretor_sport.app.repository.CategoriaRepository;
+import com.pretor_sport.app.repository.ProductoRepository;
+import com.pretor_sport.app.repository.ProveedorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//sin @Transactional: el indice se construye y se actualiza leyendo datos confirmados
+@SpringBootTest(properties = "app.search.index.max-results=3")
+class IndiceBusquedaServiceTest {
+
+    private static final int PRODUCTOS = 5;
+
+    @Autowired
+    private IndiceBusquedaService indiceBusqueda;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProveedorRepository proveedorRepository;
+
+    private String termino;
+    private Categoria categoria;
+    private Proveedor proveedor;
+    private final List<Producto> productos = new ArrayList<>();
+
+    @BeforeEach
+    void crearProductos() {
+        termino = "raqueta" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+
+        categoria = new Categoria();
+        categoria.setNombre("Indice " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        categoria = categoriaRepository.save(categoria);
+
+        proveedor = new Proveedor();
+        proveedor.setNombre("Proveedor indice");
+        proveedor = proveedorRepository.save(proveedor);
+
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Raqueta " + termino + " " + i);
+            producto.setPrecio(new BigDecimal(10 + i));
+            producto.setStock(5);
+            producto.setCategoria(categoria);
+            producto.setProveedor(proveedor);
+            productos.add(productoRepository.save(producto));
+        }
+        indiceBusqueda.reconstruir();
+    }
+
+    @AfterEach
+    void borrarProductos() {
+        Set<Long> ids = new HashSet<>(productos.stream().map(Producto::getId).toList());
+        productoRepository.deleteAllById(ids);
+        indiceBusqueda.onProductoCambiado(new ProductoCambiadoEvent(ids, ProductoCambiadoEvent.Tipo.ELIMINADO));
+        proveedorRepository.deleteById(proveedor.getId());
+        categoriaRepository.deleteById(categoria.getId());
+    }
+
+    @Test
+    void ordenadoPorOtroCampoLaBusquedaNoSeCortaEnMaxResults() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setBusqueda(termino);
+        filtros.setOrdenarPor("precio");
+
+        assertEquals(PRODUCTOS, productoService.listarProductos(filtros).getTotalElements());
+
+        //por relevancia solo cuentan los max-results mejores
+        filtros.setOrdenarPor("relevancia");
+        assertEquals(3, productoService.listarProductos(filtros).getTotalElements());
+    }
+
+    @Test
+    void editarUnProductoNoCambiaLaPuntuacionYLaCompactacionQuitaLosEliminados() {
+        double antes = puntuacion(productos.get(0).getId());
+
+        Set<Long> editado = Set.of(productos.get(0).getId());
+        for (int i = 0; i < 10; i++) {
+            indiceBusqueda.onProductoCambiado(new ProductoCambiadoEvent(editado, ProductoCambiadoEvent.Tipo.ACTUALIZADO));
+        }
+        assertEquals(antes, puntuacion(productos.get(0).getId()), 1e-9);
+
+        indiceBusqueda.compactar();
+        assertEquals(0, indiceBusqueda.estadisticas().get("eliminados"));
+        assertEquals(antes, puntuacion(productos.get(0).getId()), 1e-9);
+        assertEquals(PRODUCTOS, indiceBusqueda.coincidencias(termino, false).size());
+
+        //un producto borrado de la base de datos sale del indice
+        productoRepository.deleteById(productos.get(4).getId());
+        indiceBusqueda.onProductoCambiado(ProductoCambiadoEvent.de(productos.get(4).getId(), ProductoCambiadoEvent.Tipo.ELIMINADO));
+        assertTrue(indiceBusqueda.coincidencias(termino, false).stream()
+            .noneMatch(resultado -> resultado.productoId().equals(productos.get(4).getId())));
+    }
+
+    @Test
+    void porRelevanciaElCursorRecorreElRankingFiltrado() {
+        Long excluido = productos.get(4).getId();
+        List<Long> esperados = indiceBusqueda.buscar(termino, false).stream()
+            .map(IndiceBusquedaService.Resultado::productoId)
+            .filter(id -> !id.equals(excluido))
+            .toList();
+
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setBusqueda(termino);
+        filtros.setOrdenarPor("relevancia");
+        filtros.setPrecioMax(new BigDecimal("13"));
+        filtros.setTamanoPagina(1);
+
+        List<Long> recorridos = new ArrayList<>();
+        CursorPageDTO<ProductoResponseDTO> pagina;
+        do {
+            pagina = productoService.listarProductosPorCursor(filtros);
+            pagina.getContent().forEach(producto -> recorridos.add(producto.getId()));
+            filtros.setCursor(pagina.getNextCursor());
+        } while (pagina.isHasNext());
+
+        assertEquals(esperados, recorridos);
+    }
+
+    private double puntuacion(Long productoId) {
+        return indiceBusqueda.coincidencias(termino, false).stream()
+            .filter(resultado -> resultado.productoId().equals(productoId))
+            .findFirst()
+            .orElseThrow()
+            .puntuacion();
+    }
+}
@@ -0,0 +1,37 @@
+package com.pretor_sport.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductoCursorTest {
+
+    @Test
+    void laPosicionDelRankingSeConservaAlDecodificar() {
+        String cursor = ProductoCursor.enPosicion(40).codificar();
+        assertEquals(40, ProductoCursor.decodificar(cursor, "relevancia", false).posicion());
+    }
+
+    @Test
+    void laRelevanciaDeTextoCompletoSeConservaExactaAlDecodificar() {
+        float rango = 0.0607927f;
+        ProductoCursor cursor = ProductoCursor.decodificar(ProductoCursor.despuesDeRango(rango, 9L).codificar(), "relevancia", false);
+        assertEquals((double) rango, cursor.rango());
+        assertEquals(9L, cursor.id());
+    }
+
+    @Test
+    void unaPosicionNegativaNoNumericaODemasiadoGrandeNoEsValida() {
+        for (String posicion : new String[]{"-1", "abc", "", "2147483647", "99999999999"}) {
+            String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("relevancia:asc:0:=" + posicion).getBytes(StandardCharsets.UTF_8));
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> ProductoCursor.decodificar(cursor, "relevancia", false), posicion);
+            assertEquals("Cursor no válido", error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.event.ProductoCambiadoEvent;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+//sin el refresco periodico: la tarea programada no ve los datos sin confirmar de la transaccion del test
+@SpringBootTest(properties = "app.catalog.stats.check-ms=3600000")
+@Transactional
+class ProductoEstadisticasServiceTest {
+
+    @Autowired
+    private ProductoEstadisticasService estadisticasService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Categoria categoria;
+
+    @BeforeEach
+    void crearProductos() {
+        categoria = new Categoria();
+        categoria.setNombre("Estadisticas " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        //sin stock, bajo (<= 5), medio (<= 20), alto y dos inactivos (eliminados) sin stock y con stock bajo
+        crearProducto(0, "10.00", true);
+        crearProducto(3, "20.00", true);
+        crearProducto(10, "5.50", true);
+        crearProducto(30, "1.00", true);
+        crearProducto(5, "2.00", false);
+        crearProducto(0, "4.00", false);
+        entityManager.flush();
+    }
+
+    @Test
+    void agregaElInventarioPorCategoriaYEnTotal() {
+        Map<String, Object> antes = estadisticasService.refrescar();
+        Map<String, Object> categoriaCreada = porCategoria(antes);
+
+        //productos cuenta tambien los inactivos; el stock y el valor solo los activos
+        assertEquals(6L, categoriaCreada.get("productos"));
+        assertEquals(4L, categoriaCreada.get("productosActivos"));
+        assertEquals(1L, categoriaCreada.get("productosSinStock"));
+        assertEquals(1L, categoriaCreada.get("productosConStockBajo"));
+        //3*20 + 10*5.50 + 30*1
+        assertEquals(0, new BigDecimal("145.00").compareTo((BigDecimal) categoriaCreada.get("valorInventario")));
+
+        long activos = (Long) antes.get("productosActivos");
+        long porEstado = (Long) antes.get("productosSinStock") + (Long) antes.get("productosConStockBajo")
+            + (Long) antes.get("productosConStockMedio") + (Long) antes.get("productosConStockAlto");
+        assertEquals(activos, porEstado);
+    }
+
+    @Test
+    void sirveLaInstantaneaHastaQueUnCambioLaMarcaComoPendiente() {
+        Map<String, Object> instantanea = estadisticasService.refrescar();
+
+        estadisticasService.refrescarSiHaCambiado();
+        assertSame(instantanea, estadisticasService.obtener());
+
+        //los cambios de imagen no afectan al inventario
+        estadisticasService.onProductoCambiado(ProductoCambiadoEvent.de(1L, ProductoCambiadoEvent.Tipo.IMAGEN));
+        estadisticasService.refrescarSiHaCambiado();
+        assertSame(instantanea, estadisticasService.obtener());
+
+        crearProducto(7, "3.00", true);
+        entityManager.flush();
+        estadisticasService.onProductoCambiado(ProductoCambiadoEvent.de(1L, ProductoCambiadoEvent.Tipo.STOCK));
+        estadisticasService.refrescarSiHaCambiado();
+
+        Map<String, Object> nueva = estadisticasService.obtener();
+        assertNotSame(instantanea, nueva);
+        assertEquals(7L, porCategoria(nueva).get("productos"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> porCategoria(Map<String, Object> estadisticas) {
+        return ((List<Map<String, Object>>) estadisticas.get("productosPorCategoria")).stream()
+            .filter(fila -> categoria.getId().equals(fila.get("categoriaId")))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private void crearProducto(int stock, String precio, boolean activo) {
+        Producto producto = new Producto();
+        producto.setNombre("Producto " + stock);
+        producto.setPrecio(new BigDecimal(precio));
+        producto.setStock(stock);
+        producto.setActivo(activo);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+    }
+}
@@ -0,0 +1,126 @@
+package com.pretor_sport.app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = "app.export.fetch-size=2")
+@Transactional
+class ProductoExportacionServiceTest {
+
+    @Autowired
+    private ProductoExportacionService exportacionService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Producto producto;
+
+    @BeforeEach
+    void crearProducto() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Exportacion " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        producto = new Producto();
+        producto.setNombre("Balón \"pro\", talla 5");
+        producto.setDescripcion("Cosido a mano\ny termosellado");
+        producto.setPrecio(new BigDecimal("29.90"));
+        producto.setStock(10);
+        producto.setCategoria(categoria);
+        producto.setCaracteristicas(List.of("ligero", "resistente"));
+        entityManager.persist(producto);
+        entityManager.flush();
+    }
+
+    @Test
+    void exportaCsvQueSeLeeConLaMismaCabeceraQueLaImportacion() throws IOException {
+        String csv = exportar(ProductoExportacionService.Formato.CSV);
+
+        LectorCsv lector = new LectorCsv(new StringReader(csv));
+        List<String> cabecera = lector.siguiente();
+        List<String> fila = null;
+        List<String> registro;
+        while ((registro = lector.siguiente()) != null) {
+            if (registro.get(0).equals(producto.getId().toString())) {
+                fila = registro;
+            }
+        }
+
+        assertNotNull(fila);
+        assertEquals(cabecera.size(), fila.size());
+        assertEquals("Balón \"pro\", talla 5", fila.get(cabecera.indexOf("nombre")));
+        assertEquals("Cosido a mano\ny termosellado", fila.get(cabecera.indexOf("descripcion")));
+        assertEquals("29.90", fila.get(cabecera.indexOf("precio")));
+        assertEquals(producto.getCategoria().getNombre(), fila.get(cabecera.indexOf("categoria")));
+        assertEquals("ligero|resistente", fila.get(cabecera.indexOf("caracteristicas")));
+    }
+
+    @Test
+    void exportaUnProductoPorLineaEnNdjson() throws IOException {
+        String ndjson = exportar(ProductoExportacionService.Formato.NDJSON);
+
+        JsonNode fila = null;
+        for (String linea : ndjson.split("\n")) {
+            JsonNode nodo = objectMapper.readTree(linea);
+            if (nodo.get("id").asLong() == producto.getId()) {
+                fila = nodo;
+            }
+        }
+
+        assertNotNull(fila);
+        assertEquals("Cosido a mano\ny termosellado", fila.get("descripcion").asText());
+        assertEquals(producto.getCategoria().getId(), fila.get("categoria_id").asLong());
+        assertEquals(List.of("ligero", "resistente"),
+            List.of(fila.get("caracteristicas").get(0).asText(), fila.get("caracteristicas").get(1).asText()));
+    }
+
+    @Test
+    void unaCaracteristicaNulaNoCortaLaExportacion() throws IOException {
+        //filas anteriores a la validacion de la importacion pueden tener caracteristicas nulas
+        entityManager.createNativeQuery("INSERT INTO producto_caracteristicas (producto_id, caracteristica) VALUES (?1, NULL)")
+            .setParameter(1, producto.getId())
+            .executeUpdate();
+
+        String csv = exportar(ProductoExportacionService.Formato.CSV);
+
+        LectorCsv lector = new LectorCsv(new StringReader(csv));
+        List<String> cabecera = lector.siguiente();
+        String caracteristicas = null;
+        List<String> registro;
+        while ((registro = lector.siguiente()) != null) {
+            if (registro.get(0).equals(producto.getId().toString())) {
+                caracteristicas = registro.get(cabecera.indexOf("caracteristicas"));
+            }
+        }
+        assertEquals("ligero|resistente", caracteristicas);
+    }
+
+    private String exportar(ProductoExportacionService.Formato formato) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacionService.exportar(salida, formato);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.import.chunk-size=2")
+@Transactional
+class ProductoImportacionServiceTest {
+
+    private static final String IMAGEN = "https://cdn.pretor.test/balon.jpg";
+
+    @Autowired
+    private ProductoImportacionService importacionService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Categoria categoria;
+
+    @BeforeEach
+    void crearCategoria() {
+        categoria = new Categoria();
+        categoria.setNombre("Importacion " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+        entityManager.flush();
+    }
+
+    @Test
+    void importaCsvPorLotesEInformaLasFilasNoValidas() throws IOException {
+        String csv = "nombre,descripcion,precio,stock,imagen_url,categoria,caracteristicas\n" +
+            "Balón oficial,\"Cosido a mano, talla 5\",29.90,10," + IMAGEN + "," + categoria.getNombre() + ",ligero|resistente\n" +
+            "Red de portería,\"Incluye \"\"ganchos\"\"\ny bolsa\",45,3," + IMAGEN + "," + categoria.getNombre() + ",\n" +
+            "\n" +
+            "Sin precio,,,5," + IMAGEN + "," + categoria.getNombre() + ",\n" +
+            "Conos,,9.5,20," + IMAGEN + ",Categoria inexistente,\n" +
+            "Silbato,,4.5,50," + IMAGEN + "," + categoria.getNombre() + ",\n";
+
+        ProductoImportacionService.ResultadoImportacion resultado = importar(csv, ProductoImportacionService.Formato.CSV);
+
+        assertEquals(5, resultado.filas());
+        assertEquals(3, resultado.importados());
+        assertEquals(2, resultado.errores());
+        assertEquals(List.of(6L, 7L), resultado.detalleErrores().stream().map(ProductoImportacionService.ErrorFila::fila).toList());
+        assertTrue(resultado.detalleErrores().get(1).mensaje().contains("Categoria inexistente"));
+
+        List<Producto> productos = productosImportados();
+        assertEquals(List.of("Balón oficial", "Red de portería", "Silbato"), productos.stream().map(Producto::getNombre).toList());
+        assertEquals("Cosido a mano, talla 5", productos.get(0).getDescripcion());
+        assertEquals(List.of("ligero", "resistente"), productos.get(0).getCaracteristicas());
+        assertEquals("Incluye \"ganchos\"\ny bolsa", productos.get(1).getDescripcion());
+    }
+
+    @Test
+    void importaNdjsonConIdsYSaltaLineasNoValidas() throws IOException {
+        String ndjson = "{\"nombre\":\"Raqueta\",\"precio\":120.5,\"stock\":4,\"imagen_url\":\"" + IMAGEN + "\"," +
+            "\"categoria_id\":" + categoria.getId() + ",\"genero\":\"UNISEX\",\"caracteristicas\":[\"grafito\"]}\n" +
+            "{\"nombre\":\"Roto\",\n" +
+            "{\"nombre\":\"Pelotas\",\"precio\":6,\"stock\":30,\"imagen_url\":\"" + IMAGEN + "\",\"categoria_id\":" + categoria.getId() +
+            ",\"genero\":\"OTRO\"}\n";
+
+        ProductoImportacionService.ResultadoImportacion resultado = importar(ndjson, ProductoImportacionService.Formato.NDJSON);
+
+        assertEquals(3, resultado.filas());
+        assertEquals(1, resultado.importados());
+        assertEquals(List.of(2L, 3L), resultado.detalleErrores().stream().map(ProductoImportacionService.ErrorFila::fila).toList());
+
+        List<Producto> productos = productosImportados();
+        assertEquals(1, productos.size());
+        assertEquals(Producto.Genero.UNISEX, productos.get(0).getGenero());
+        assertEquals(List.of("grafito"), productos.get(0).getCaracteristicas());
+    }
+
+    @Test
+    void descartaCaracteristicasNulasYLineasDemasiadoLargas() throws IOException {
+        String ndjson = "{\"nombre\":\"Raqueta\",\"precio\":120.5,\"stock\":4,\"imagen_url\":\"" + IMAGEN + "\"," +
+            "\"categoria_id\":" + categoria.getId() + ",\"caracteristicas\":[\"grafito\",null,\" \"]}\r\n" +
+            "{\"nombre\":\"" + "x".repeat(200_000) + "\"}\n" +
+            "{\"nombre\":\"Pelotas\",\"precio\":6,\"stock\":30,\"imagen_url\":\"" + IMAGEN + "\",\"categoria_id\":" +
+            categoria.getId() + "}";
+
+        ProductoImportacionService.ResultadoImportacion resultado = importar(ndjson, ProductoImportacionService.Formato.NDJSON);
+
+        assertEquals(3, resultado.filas());
+        assertEquals(2, resultado.importados());
+        assertEquals(List.of(2L), resultado.detalleErrores().stream().map(ProductoImportacionService.ErrorFila::fila).toList());
+
+        List<Producto> productos = productosImportados();
+        assertEquals(List.of("Raqueta", "Pelotas"), productos.stream().map(Producto::getNombre).toList());
+        assertEquals(List.of("grafito"), productos.get(0).getCaracteristicas());
+    }
+
+    private ProductoImportacionService.ResultadoImportacion importar(String contenido,
+                                                                    ProductoImportacionService.Formato formato) throws IOException {
+        return importacionService.importar(new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8)), formato);
+    }
+
+    private List<Producto> productosImportados() {
+        entityManager.clear();
+        return entityManager.createQuery("SELECT p FROM Producto p WHERE p.categoria.id = :categoria ORDER BY p.id", Producto.class)
+            .setParameter("categoria", categoria.getId())
+            .getResultList();
+    }
+}
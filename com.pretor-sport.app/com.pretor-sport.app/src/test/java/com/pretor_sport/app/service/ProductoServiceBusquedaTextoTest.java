@@ -0,0 +1,116 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.config.BusquedaTextoInitializer;
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//sin el indice en memoria la busqueda va por texto completo: search_vector lo rellenan los triggers, fts_coincide y
+//fts_rango los registra BusquedaTextoFunctionContributor y la configuracion pretor_es ignora los acentos
+@SpringBootTest(properties = "app.search.index.enabled=false")
+@Transactional
+class ProductoServiceBusquedaTextoTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private BusquedaTextoInitializer busquedaTexto;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Categoria categoria;
+    private Producto enNombre;
+    private Producto enMarca;
+    private Producto enDescripcion;
+    private Producto enCaracteristicas;
+    private Producto sinCoincidencia;
+
+    @BeforeEach
+    void crearProductos() {
+        categoria = new Categoria();
+        categoria.setNombre("Texto " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        //el mismo termino con cada peso del vector: A nombre, B marca, C descripcion, D caracteristicas
+        enNombre = crear("Camiseta NIÑO", null, null, List.of());
+        enMarca = crear("Camiseta", "Niño Sport", null, List.of());
+        enDescripcion = crear("Camiseta", null, "Talla de niño", List.of());
+        enCaracteristicas = crear("Camiseta", null, null, List.of("Para niño"));
+        sinCoincidencia = crear("Camiseta adulto", "Adulto Sport", "Talla de adulto", List.of("Para adulto"));
+        entityManager.flush();
+
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+    }
+
+    @Test
+    void sinAcentosEncuentraLasCoincidenciasOrdenadasPorElPesoDelCampo() {
+        assertTrue(busquedaTexto.isDisponible());
+
+        assertEquals(
+            List.of(enNombre.getId(), enMarca.getId(), enDescripcion.getId(), enCaracteristicas.getId()),
+            buscar("nino"));
+    }
+
+    @Test
+    void variasPalabrasConPrefijoDebenCoincidirTodas() {
+        assertEquals(List.of(enMarca.getId()), buscar("nin spor"));
+        assertEquals(List.of(), buscar("nino adulto"));
+    }
+
+    @Test
+    void elTriggerActualizaElVectorAlEditarElProductoYSusCaracteristicas() {
+        enNombre.setNombre("Camiseta adulto");
+        enCaracteristicas.getCaracteristicas().clear();
+        enCaracteristicas.getCaracteristicas().add("Para adulto");
+        sinCoincidencia.getCaracteristicas().add("Niño pequeño");
+        entityManager.flush();
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+
+        //sale por nombre y por caracteristica; entra con la caracteristica nueva, con el menor peso
+        assertEquals(List.of(enMarca.getId(), enDescripcion.getId(), sinCoincidencia.getId()), buscar("nino"));
+    }
+
+    //ids del listado por relevancia restringido a la categoria de la prueba
+    private List<Long> buscar(String termino) {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setBusqueda(termino);
+        filtros.setOrdenarPor("relevancia");
+        filtros.setCategoriaIds(List.of(categoria.getId()));
+        return productoService.listarProductos(filtros).map(ProductoResponseDTO::getId).getContent();
+    }
+
+    private Producto crear(String nombre, String marca, String descripcion, List<String> caracteristicas) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setMarca(marca);
+        producto.setDescripcion(descripcion);
+        producto.setCaracteristicas(new ArrayList<>(caracteristicas));
+        producto.setPrecio(new BigDecimal("20.00"));
+        producto.setStock(5);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+        return producto;
+    }
+}
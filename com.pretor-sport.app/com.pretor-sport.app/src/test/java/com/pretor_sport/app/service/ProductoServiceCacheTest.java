@@ -0,0 +1,228 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.request.ProductoRequestDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.DetallePedido;
+import com.pretor_sport.app.model.Pedido;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Usuario;
+import com.pretor_sport.app.repository.CategoriaRepository;
+import com.pretor_sport.app.repository.PedidoRepository;
+import com.pretor_sport.app.repository.ProductoRepository;
+import com.pretor_sport.app.repository.UsuarioRepository;
+import com.pretor_sport.app.repository.VentaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//sin @Transactional: las invalidaciones se aplican al confirmar. misma carpeta de imagenes que
+//ImagenAlmacenServiceTest para compartir el contexto
+@SpringBootTest(properties = "app.images.upload-dir=target/test-almacen")
+class ProductoServiceCacheTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ProductoImportacionService importacionService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Categoria categoria;
+    private final List<Usuario> usuarios = new ArrayList<>();
+
+    @BeforeEach
+    void crearCategoria() {
+        categoria = new Categoria();
+        categoria.setNombre("Cache " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        categoria = categoriaRepository.save(categoria);
+    }
+
+    @AfterEach
+    void borrarDatos() throws IOException {
+        transactionTemplate.executeWithoutResult(estado -> {
+            ventaRepository.findAll().stream()
+                .filter(venta -> usuarios.stream().anyMatch(usuario -> usuario.getId().equals(venta.getPedido().getUsuario().getId())))
+                .forEach(ventaRepository::delete);
+            pedidoRepository.findAll().stream()
+                .filter(pedido -> usuarios.stream().anyMatch(usuario -> usuario.getId().equals(pedido.getUsuario().getId())))
+                .forEach(pedidoRepository::delete);
+        });
+        usuarioRepository.deleteAll(usuarios);
+        productoRepository.deleteAll(productoRepository.findAll().stream()
+            .filter(producto -> producto.getCategoria().getId().equals(categoria.getId()))
+            .toList());
+        categoriaRepository.deleteById(categoria.getId());
+        FileSystemUtils.deleteRecursively(Paths.get("target/test-almacen"));
+    }
+
+    @Test
+    void losMismosFiltrosSeSirvenDeLaCacheYOtrosNo() {
+        ProductoResponseDTO producto = crear("Balón");
+
+        ProductoFilterDTO filtros = filtrosCategoria();
+        filtros.setTallas(List.of("M", "L"));
+        filtros.setPrecioMin(new BigDecimal("5.0"));
+        Page<ProductoResponseDTO> primero = productoService.listarProductos(filtros);
+
+        //mismas filas escritas de otra forma: misma clave
+        ProductoFilterDTO equivalente = filtrosCategoria();
+        equivalente.setTallas(List.of("L", "M", "L"));
+        equivalente.setPrecioMin(new BigDecimal("5"));
+        assertSame(primero, productoService.listarProductos(equivalente));
+
+        Page<ProductoResponseDTO> catalogo = productoService.listarProductos(filtrosCategoria());
+        assertNotSame(primero, catalogo);
+        assertEquals(List.of(producto.getId()), ids(catalogo));
+    }
+
+    @Test
+    void elTextoNullNoComparteClaveConElValorAusente() {
+        crear("Balón");
+
+        ProductoFilterDTO textoNull = filtrosCategoria();
+        textoNull.setMarca("null");
+        assertEquals(0, productoService.listarProductos(textoNull).getTotalElements());
+        assertEquals(List.of(), productoService.obtenerFacetas(textoNull).getTallas());
+
+        //la pagina vacia de marca=null no tapa el listado sin filtrar
+        assertEquals(1, productoService.listarProductos(filtrosCategoria()).getTotalElements());
+        assertEquals(1, productoService.obtenerFacetas(filtrosCategoria()).getTallas().size());
+
+        ProductoFilterDTO unaTalla = new ProductoFilterDTO();
+        unaTalla.setTallas(List.of("a,b"));
+        ProductoFilterDTO dosTallas = new ProductoFilterDTO();
+        dosTallas.setTallas(List.of("a", "b"));
+        assertNotEquals(unaTalla.firma(), dosTallas.firma());
+
+        ProductoFilterDTO busquedaConSeparador = new ProductoFilterDTO();
+        busquedaConSeparador.setBusqueda("x|null");
+        ProductoFilterDTO busquedaYMarca = new ProductoFilterDTO();
+        busquedaYMarca.setBusqueda("x");
+        busquedaYMarca.setMarca("null");
+        assertNotEquals(busquedaConSeparador.firmaFiltros(), busquedaYMarca.firmaFiltros());
+    }
+
+    @Test
+    void cadaEscrituraInvalidaLosListadosAlConfirmar() throws IOException {
+        ProductoFilterDTO filtros = filtrosCategoria();
+        assertEquals(List.of(), ids(productoService.listarProductos(filtros)));
+
+        //alta
+        ProductoResponseDTO producto = crear("Balón");
+        assertEquals(List.of(producto.getId()), ids(productoService.listarProductos(filtros)));
+
+        //edicion
+        ProductoRequestDTO cambios = peticion("Balón oficial");
+        productoService.actualizarProducto(producto.getId(), cambios);
+        assertEquals("Balón oficial", productoService.listarProductos(filtros).getContent().get(0).getNombre());
+
+        //venta: baja el stock
+        ventaService.procesarVenta(crearCarrito(producto.getId(), 3), "TARJETA_CREDITO");
+        assertEquals(7, productoService.listarProductos(filtros).getContent().get(0).getStock());
+
+        //imagen
+        String url = productoService.saveProductImage(producto.getId(),
+            new MockMultipartFile("file", "balon.png", "image/png", new byte[] {1, 2, 3}));
+        assertEquals(url, productoService.listarProductos(filtros).getContent().get(0).getImagenUrl());
+
+        //importacion
+        String csv = "nombre,descripcion,precio,stock,imagen_url,categoria,caracteristicas\n" +
+            "Conos,,9.5,20,https://cdn.pretor.test/conos.jpg," + categoria.getNombre() + ",\n";
+        importacionService.importar(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+            ProductoImportacionService.Formato.CSV);
+        assertEquals(2, productoService.listarProductos(filtros).getTotalElements());
+
+        //baja
+        productoService.eliminarProducto(producto.getId());
+        assertTrue(ids(productoService.listarProductos(filtros)).stream().noneMatch(producto.getId()::equals));
+    }
+
+    private ProductoResponseDTO crear(String nombre) {
+        return productoService.crearProducto(peticion(nombre));
+    }
+
+    private ProductoRequestDTO peticion(String nombre) {
+        ProductoRequestDTO peticion = new ProductoRequestDTO();
+        peticion.setNombre(nombre);
+        peticion.setPrecio(new BigDecimal("10.00"));
+        peticion.setStock(10);
+        peticion.setCategoriaId(categoria.getId());
+        peticion.setTalla("M");
+        return peticion;
+    }
+
+    private ProductoFilterDTO filtrosCategoria() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(categoria.getId()));
+        return filtros;
+    }
+
+    private Long crearCarrito(Long productoId, int cantidad) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Cliente");
+        usuario.setApellidos("Cache");
+        usuario.setEmail("cache-" + UUID.randomUUID() + "@test.com");
+        usuario.setPassword("x");
+        usuarios.add(usuarioRepository.save(usuario));
+
+        Producto producto = productoRepository.findById(productoId).orElseThrow();
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(usuario);
+        pedido.setEstado("CARRITO");
+        DetallePedido detalle = new DetallePedido();
+        detalle.setPedido(pedido);
+        detalle.setProducto(producto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(producto.getPrecio());
+        pedido.getDetalles().add(detalle);
+        return pedidoRepository.save(pedido).getId();
+    }
+
+    private static List<Long> ids(Page<ProductoResponseDTO> pagina) {
+        return pagina.getContent().stream().map(ProductoResponseDTO::getId).toList();
+    }
+}
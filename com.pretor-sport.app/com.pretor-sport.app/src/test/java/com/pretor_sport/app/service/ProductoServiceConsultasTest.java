@@ -0,0 +1,104 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Proveedor;
+import com.pretor_sport.app.repository.CapturadorSql;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//cada listado debe resolverse con un numero fijo de sentencias, sin una consulta por producto
+//para categoria, proveedor o caracteristicas (N+1)
+@SpringBootTest(properties = CapturadorSql.PROPIEDAD)
+@Transactional
+class ProductoServiceConsultasTest {
+
+    private static final int PRODUCTOS = 25;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Categoria categoria;
+
+    @BeforeEach
+    void crearProductos() {
+        categoria = new Categoria();
+        categoria.setNombre("Consultas " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Proveedor proveedor = new Proveedor();
+            proveedor.setNombre("Proveedor " + i);
+            entityManager.persist(proveedor);
+
+            Producto producto = new Producto();
+            producto.setNombre("Producto " + i);
+            producto.setPrecio(new BigDecimal("10.00"));
+            producto.setStock(5);
+            producto.setCategoria(categoria);
+            producto.setProveedor(proveedor);
+            producto.setCaracteristicas(List.of("ligero", "resistente"));
+            entityManager.persist(producto);
+        }
+
+        //sin entidades en el contexto de persistencia, como en una peticion nueva
+        entityManager.flush();
+        entityManager.clear();
+        cacheManager.getCacheNames().forEach(nombre -> cacheManager.getCache(nombre).clear());
+        CapturadorSql.reiniciar();
+    }
+
+    @Test
+    void listarProductosUsaPaginaConteoYCaracteristicas() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(categoria.getId()));
+
+        Page<ProductoResponseDTO> pagina = productoService.listarProductos(filtros);
+
+        assertEquals(20, pagina.getNumberOfElements());
+        assertEquals(3, CapturadorSql.sentencias().size(), String.join("\n", CapturadorSql.sentencias()));
+    }
+
+    @Test
+    void listarProductosSinConteoUsaPaginaYCaracteristicas() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(categoria.getId()));
+        filtros.setTotal("ninguno");
+
+        assertEquals(20, productoService.listarProductosSinConteo(filtros).getContent().size());
+        assertEquals(2, CapturadorSql.sentencias().size(), String.join("\n", CapturadorSql.sentencias()));
+    }
+
+    @Test
+    void productosPorCategoriaUsaConsultaYCaracteristicas() {
+        assertEquals(PRODUCTOS, productoService.obtenerProductosPorCategoria(categoria.getId()).size());
+        assertEquals(2, CapturadorSql.sentencias().size(), String.join("\n", CapturadorSql.sentencias()));
+    }
+
+    @Test
+    void productosDestacadosUsaConsultaYCaracteristicas() {
+        assertEquals(PRODUCTOS, productoService.obtenerProductosDestacados(PRODUCTOS).size());
+        assertEquals(2, CapturadorSql.sentencias().size(), String.join("\n", CapturadorSql.sentencias()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.CursorPageDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.repository.CapturadorSql;
+import com.pretor_sport.app.repository.ProductoFila;
+import com.pretor_sport.app.repository.ProductoRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//sin el indice en memoria la relevancia sale del texto completo de postgresql
+@SpringBootTest(properties = {"app.search.index.enabled=false", CapturadorSql.PROPIEDAD})
+@Transactional
+class ProductoServiceCursorTest {
+
+    private static final int PRODUCTOS = 7;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private String termino;
+
+    @BeforeEach
+    void crearProductos() {
+        termino = "cursor" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Cursor " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        //relevancias repetidas: el id desempata
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Raqueta " + termino + " " + i);
+            producto.setDescripcion(i % 3 == 0 ? termino + " " + termino : "Raqueta de pádel");
+            producto.setPrecio(new BigDecimal("10.00"));
+            producto.setStock(5);
+            producto.setCategoria(categoria);
+            entityManager.persist(producto);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void porRelevanciaDeTextoCompletoRecorreTodasLasPaginasSinRepetirNiSaltarFilas() {
+        List<Long> esperados = productoRepository.buscarFilasPorTextoCompleto(termino + ":*", PageRequest.of(0, 100))
+            .map(ProductoFila::id)
+            .getContent();
+        assertEquals(PRODUCTOS, esperados.size());
+
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setBusqueda(termino);
+        filtros.setOrdenarPor("relevancia");
+        filtros.setTamanoPagina(2);
+
+        List<Long> recorridos = new ArrayList<>();
+        CursorPageDTO<ProductoResponseDTO> pagina;
+        do {
+            CapturadorSql.reiniciar();
+            pagina = productoService.listarProductosPorCursor(filtros);
+            pagina.getContent().forEach(producto -> recorridos.add(producto.getId()));
+            filtros.setCursor(pagina.getNextCursor());
+
+            //cada pagina busca despues de la ultima fila: sin OFFSET
+            assertFalse(CapturadorSql.sentencias().stream().anyMatch(sentencia -> sentencia.contains(" offset ")),
+                String.join("\n", CapturadorSql.sentencias()));
+        } while (pagina.isHasNext());
+
+        assertEquals(esperados, recorridos);
+    }
+
+    @Test
+    void unCursorDeRelevanciaNoValidoSeRechaza() {
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setBusqueda(termino);
+        filtros.setOrdenarPor("relevancia");
+        filtros.setCursor(ProductoCursor.despuesDeRango(Double.NaN, 5L).codificar());
+
+        assertThrows(IllegalArgumentException.class, () -> productoService.listarProductosPorCursor(filtros));
+    }
+}
@@ -0,0 +1,40 @@
+package com.pretor_sport.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class RespuestasJsonServiceTest {
+
+    @Autowired
+    private RespuestasJsonService respuestasJson;
+
+    @Autowired
+    private CatalogoRevisionService catalogoRevision;
+
+    @Test
+    void unCuerpoCalculadoAntesDeUnCambioNoQuedaCacheadoParaLaRevisionNueva() {
+        String clave = "prueba|" + UUID.randomUUID();
+
+        //el cambio se confirma mientras se calcula el cuerpo anterior
+        respuestasJson.obtener(clave, () -> {
+            catalogoRevision.avanzar();
+            return Map.of("version", "anterior");
+        });
+
+        assertEquals("{\"version\":\"nueva\"}", json(clave, "nueva"));
+        assertEquals("{\"version\":\"nueva\"}", json(clave, "otra"));
+    }
+
+    private String json(String clave, String version) {
+        return new String(respuestasJson.obtener(clave, () -> Map.of("version", version)).orElseThrow().json(),
+            StandardCharsets.UTF_8);
+    }
+}
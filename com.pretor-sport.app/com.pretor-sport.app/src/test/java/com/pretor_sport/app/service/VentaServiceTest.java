@@ -0,0 +1,134 @@
+package com.pretor_sport.app.service;
+
+import com.pretor_sport.app.dto.request.ProductoFilterDTO;
+import com.pretor_sport.app.dto.response.ProductoResponseDTO;
+import com.pretor_sport.app.model.Categoria;
+import com.pretor_sport.app.model.DetallePedido;
+import com.pretor_sport.app.model.Pedido;
+import com.pretor_sport.app.model.Producto;
+import com.pretor_sport.app.model.Usuario;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Transactional
+class VentaServiceTest {
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void procesarVentaSumaPopularidadYOrdenaElListado() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Popularidad " + UUID.randomUUID().toString().substring(0, 8));
+        categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+        entityManager.persist(categoria);
+
+        Producto pocoVendido = crearProducto(categoria, "A poco vendido");
+        Producto masVendido = crearProducto(categoria, "B más vendido");
+        Producto sinVentas = crearProducto(categoria, "C sin ventas");
+        ventaService.procesarVenta(crearCarrito(pocoVendido, 1).getId(), "TARJETA_CREDITO");
+        ventaService.procesarVenta(crearCarrito(masVendido, 3).getId(), "TARJETA_CREDITO");
+        entityManager.flush();
+        entityManager.clear();
+
+        double popularidad = entityManager.find(Producto.class, masVendido.getId()).getPopularidad();
+        assertTrue(popularidad > entityManager.find(Producto.class, pocoVendido.getId()).getPopularidad());
+        assertEquals(0, entityManager.find(Producto.class, sinVentas.getId()).getPopularidad());
+
+        ProductoFilterDTO filtros = new ProductoFilterDTO();
+        filtros.setCategoriaIds(List.of(categoria.getId()));
+        filtros.setOrdenarPor("popularidad");
+        filtros.setDireccion("desc");
+        List<Long> ids = productoService.listarProductos(filtros).getContent().stream()
+            .map(ProductoResponseDTO::getId)
+            .toList();
+        assertEquals(List.of(masVendido.getId(), pocoVendido.getId(), sinVentas.getId()), ids);
+
+        //actualizar el producto desde la entidad no pisa la popularidad
+        Producto producto = entityManager.find(Producto.class, masVendido.getId());
+        producto.setNombre("B renombrado");
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(popularidad, entityManager.find(Producto.class, masVendido.getId()).getPopularidad());
+    }
+
+    @Test
+    void laPopularidadNoDesbordaTrasMilVeinticuatroVidasMedias() {
+        //con una vida media de ~1,4 minutos, desde EPOCA_POPULARIDAD han pasado cientos de miles
+        VentaService destino = AopTestUtils.getTargetObject(ventaService);
+        Object vidaMedia = ReflectionTestUtils.getField(destino, "vidaMediaPopularidad");
+        ReflectionTestUtils.setField(destino, "vidaMediaPopularidad", 0.001);
+        try {
+            Categoria categoria = new Categoria();
+            categoria.setNombre("Popularidad " + UUID.randomUUID().toString().substring(0, 8));
+            categoria.setTipo(Categoria.TipoCategoria.EQUIPAMIENTO);
+            entityManager.persist(categoria);
+
+            Producto pocoVendido = crearProducto(categoria, "A poco vendido");
+            Producto masVendido = crearProducto(categoria, "B más vendido");
+            ventaService.procesarVenta(crearCarrito(pocoVendido, 1).getId(), "TARJETA_CREDITO");
+            ventaService.procesarVenta(crearCarrito(masVendido, 3).getId(), "TARJETA_CREDITO");
+            ventaService.procesarVenta(crearCarrito(masVendido, 1).getId(), "TARJETA_CREDITO");
+            entityManager.flush();
+            entityManager.clear();
+
+            double poco = entityManager.find(Producto.class, pocoVendido.getId()).getPopularidad();
+            double mas = entityManager.find(Producto.class, masVendido.getId()).getPopularidad();
+            assertTrue(Double.isFinite(mas) && mas > 1024, "popularidad: " + mas);
+            //en log2: 4 unidades frente a 1 son al menos 2 puntos mas
+            assertTrue(mas - poco >= 2 - 1e-9, mas + " frente a " + poco);
+        } finally {
+            ReflectionTestUtils.setField(destino, "vidaMediaPopularidad", vidaMedia);
+        }
+    }
+
+    private Producto crearProducto(Categoria categoria, String nombre) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStock(10);
+        producto.setCategoria(categoria);
+        entityManager.persist(producto);
+        return producto;
+    }
+
+    private Pedido crearCarrito(Producto producto, int cantidad) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre("Cliente");
+        usuario.setApellidos("Popularidad");
+        usuario.setEmail("popularidad-" + UUID.randomUUID() + "@test.com");
+        usuario.setPassword("x");
+        entityManager.persist(usuario);
+
+        Pedido pedido = new Pedido();
+        pedido.setUsuario(usuario);
+        pedido.setEstado("CARRITO");
+        DetallePedido detalle = new DetallePedido();
+        detalle.setPedido(pedido);
+        detalle.setProducto(producto);
+        detalle.setCantidad(cantidad);
+        detalle.setPrecioUnitario(producto.getPrecio());
+        pedido.getDetalles().add(detalle);
+        entityManager.persist(pedido);
+        return pedido;
+    }
+}